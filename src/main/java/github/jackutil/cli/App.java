@@ -3,15 +3,33 @@ package github.jackutil.cli;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import github.jackutil.mapping.CompiledMapping;
+import github.jackutil.mapping.ConfigAnalysis;
+import github.jackutil.mapping.ConfigAnalyzer;
 import github.jackutil.mapping.ConfigLoader;
+import github.jackutil.mapping.EnvironmentWriter;
+import github.jackutil.mapping.ErrorSummary;
+import github.jackutil.mapping.InMemoryMappingMetrics;
 import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.MappingError;
 import github.jackutil.mapping.MappingResult;
+import github.jackutil.mapping.MappingTrace;
+import github.jackutil.mapping.PayloadGenerator;
 import github.jackutil.mapping.SchemaExporter;
 
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPOutputStream;
 
 public class App {
     public static void main(String[] args) throws Exception {
@@ -24,6 +42,10 @@ public class App {
         switch (command) {
             case "map" -> runMap(Arrays.copyOfRange(args, 1, args.length));
             case "schema" -> runSchema(Arrays.copyOfRange(args, 1, args.length));
+            case "bench" -> Bench.run(Arrays.copyOfRange(args, 1, args.length));
+            case "generate" -> runGenerate(Arrays.copyOfRange(args, 1, args.length));
+            case "analyze" -> runAnalyze(Arrays.copyOfRange(args, 1, args.length));
+            case "watch" -> Watch.run(Arrays.copyOfRange(args, 1, args.length));
             default -> {
                 System.err.println("Unknown command: " + command);
                 printHelp();
@@ -35,28 +57,105 @@ public class App {
     private static void runMap(String[] args) throws Exception {
         Path configPath = null;
         Path payloadPath = null;
+        String payloadsPath = null;
         Path outDir = null;
+        Path batchOut = null;
+        String metricsOut = null;
+        boolean explain = false;
+        boolean gzip = false;
+        boolean environment = false;
+        int parallelRules = 0;
+        List<String> only = null;
+        long rotateRecords = 0;
+        long rotateBytes = 0;
+        long fsyncMillis = 0;
+        Path checkpoint = null;
+        long checkpointMillis = Backfill.DEFAULT_INTERVAL_MILLIS;
+        int errorSamples = 10;
         for (int i = 0; i < args.length; i++) {
             switch (args[i]) {
                 case "--config" -> configPath = Path.of(args[++i]);
                 case "--payload" -> payloadPath = Path.of(args[++i]);
+                case "--payloads" -> payloadsPath = args[++i];
+                case "--out" -> batchOut = Path.of(args[++i]);
+                case "--gzip" -> gzip = true;
+                case "--environment" -> environment = true;
+                case "--parallel-rules" -> parallelRules = Integer.parseInt(args[++i]);
+                case "--only" -> only = Arrays.asList(args[++i].split(","));
+                case "--rotate-records" -> rotateRecords = Long.parseLong(args[++i]);
+                case "--rotate-bytes" -> rotateBytes = Long.parseLong(args[++i]);
+                case "--fsync-ms" -> fsyncMillis = Long.parseLong(args[++i]);
+                case "--checkpoint" -> checkpoint = Path.of(args[++i]);
+                case "--checkpoint-ms" -> checkpointMillis = Long.parseLong(args[++i]);
+                case "--error-samples" -> errorSamples = Integer.parseInt(args[++i]);
                 case "--outdir" -> outDir = Path.of(args[++i]);
+                case "--metrics" -> metricsOut = args[++i];
+                case "--explain" -> explain = true;
                 case "--help" -> {
                     printHelp();
                     return;
                 }
             }
         }
-        if (configPath == null || payloadPath == null) {
+        if (configPath == null || (payloadPath == null && payloadsPath == null)) {
             System.err.println("map: missing --config or --payload");
             System.exit(2);
             return;
         }
         JsonNode config = ConfigLoader.readConfig(configPath);
+        InMemoryMappingMetrics metrics = metricsOut != null ? new InMemoryMappingMetrics() : null;
+        MappingEngine engine = parallelRules > 0
+                ? new MappingEngine(metrics, null, ForkJoinPool.commonPool(), parallelRules)
+                : new MappingEngine(metrics);
+        CompiledMapping compiled = only != null ? engine.compile(config).select(only) : null;
+        if (payloadsPath != null) {
+            if (compiled == null) compiled = engine.compile(config);
+            PrintStream report = batchOut != null ? System.out : System.err;
+            if (explain || outDir != null) {
+                System.err.println("map: --explain and --outdir apply to --payload; with --payloads write to --out");
+                System.exit(2);
+                return;
+            }
+            if (checkpoint != null) {
+                if (environment || batchOut == null || "-".equals(payloadsPath)) {
+                    System.err.println("map: --checkpoint needs --payloads <file|dir> and --out <file>, without --environment");
+                    System.exit(2);
+                    return;
+                }
+                OutputSink sink = new OutputSink(batchOut, gzip, rotateRecords, rotateBytes, fsyncMillis);
+                Backfill job = new Backfill(engine, compiled, Path.of(payloadsPath), sink, batchOut, checkpoint, checkpointMillis,
+                        new ErrorSummary(errorSamples));
+                if (!job.run()) {
+                    report.println("Already complete according to " + checkpoint + "; delete it to map again");
+                } else {
+                    report.println((job.resumedAt >= 0 ? "Resumed at payload " + job.resumedAt + ". " : "")
+                            + "Mapped " + sink.stats().toText() + withErrors(job.failed) + ", " + job.checkpoints + " checkpoint(s)");
+                }
+            } else if (environment) {
+                if (rotateRecords > 0 || rotateBytes > 0) {
+                    System.err.println("map: --environment writes a single document; --rotate-records/--rotate-bytes do not apply");
+                    System.exit(2);
+                    return;
+                }
+                runEnvironment(engine, compiled, payloadsPath, errorSamples, batchOut, gzip, report);
+            } else {
+                OutputSink sink = batchOut != null
+                        ? new OutputSink(batchOut, gzip, rotateRecords, rotateBytes, fsyncMillis)
+                        : new OutputSink(System.out);
+                try (sink) {
+                    long failed = mapEach(engine, compiled, payloadsPath, errorSamples, r -> sink.write(r.getOutput()));
+                    report.println("Mapped " + sink.stats().toText() + withErrors(failed));
+                }
+            }
+            if (metrics != null) writeMetrics(metrics, metricsOut, report);
+            return;
+        }
         JsonNode payload = ConfigLoader.readJson(payloadPath);
 
-        MappingEngine engine = new MappingEngine();
-        MappingResult result = engine.map(config, payload);
+        MappingTrace trace = explain ? new MappingTrace() : null;
+        MappingResult result;
+        if (explain) result = engine.map(compiled != null ? compiled : engine.compile(config), payload, trace);
+        else result = compiled != null ? engine.map(compiled, payload) : engine.map(config, payload);
 
         String pretty = engine.toPrettyJson(result.getOutput());
         if (outDir != null) {
@@ -73,6 +172,103 @@ public class App {
             for (String e : result.getErrors())
                 System.err.println(" - " + e);
         }
+        if (trace != null) {
+            String traceJson = engine.toPrettyJson(trace.toJson());
+            if (outDir != null) {
+                Path traceFile = outDir.resolve(deriveBaseName(config) + ".trace.json");
+                Files.writeString(traceFile, traceJson, StandardCharsets.UTF_8);
+                System.out.println("Wrote trace: " + traceFile.toAbsolutePath());
+            } else {
+                System.err.println("Trace:");
+                System.err.println(traceJson);
+            }
+        }
+        if (metrics != null) writeMetrics(metrics, metricsOut, outDir != null ? System.out : System.err);
+    }
+
+    private interface ResultHandler {
+        void accept(MappingResult result) throws IOException;
+    }
+
+    // One payload per line in (stdin, a file, or a directory's files in name order), streamed, never held whole.
+    // A line that is not JSON or a mapping that throws is counted like any other error (as in Backfill) and the
+    // run goes on. Prints the first errorSamples errors of each kind and a summary; returns the number of payloads with errors
+    private static long mapEach(MappingEngine engine, CompiledMapping compiled, String payloadsPath, int errorSamples,
+                                ResultHandler handler) throws Exception {
+        long index = 0;
+        ErrorSummary errors = new ErrorSummary(errorSamples);
+        List<Path> inputs = "-".equals(payloadsPath) ? null : Backfill.inputs(Path.of(payloadsPath));
+        for (int i = 0; i < (inputs == null ? 1 : inputs.size()); i++) {
+            String name = inputs == null ? "stdin" : inputs.get(i).getFileName().toString();
+            try (InputStream in = inputs == null ? System.in : Files.newInputStream(inputs.get(i))) {
+                Backfill.Lines lines = new Backfill.Lines(in);
+                long offset = 0;
+                for (long n; (n = lines.next()) > 0; offset += n) {
+                    if (lines.isBlank()) continue;
+                    MappingResult result = Backfill.map(engine, compiled, lines, name, offset);
+                    handler.accept(result);
+                    for (MappingError e : errors.add(result))
+                        System.err.println(" - payload " + index + ": " + e);
+                    index++;
+                }
+            }
+        }
+        printSummary(errors);
+        return errors.payloadsWithErrors();
+    }
+
+    // Every payload's submodel(s) into one AAS Environment, written as they are mapped
+    private static void runEnvironment(MappingEngine engine, CompiledMapping compiled, String payloadsPath, int errorSamples, Path outFile,
+                                       boolean gzip, PrintStream report) throws Exception {
+        if (outFile != null && gzip && !outFile.getFileName().toString().endsWith(".gz"))
+            outFile = outFile.resolveSibling(outFile.getFileName() + ".gz");
+        if (outFile != null && outFile.toAbsolutePath().getParent() != null)
+            Files.createDirectories(outFile.toAbsolutePath().getParent());
+        long start = System.nanoTime();
+        long failed;
+        long submodels;
+        // stdout is flushed, never closed
+        OutputStream target = outFile != null ? Files.newOutputStream(outFile) : System.out;
+        try {
+            OutputStream buffered = new BufferedOutputStream(target, OutputSink.BUFFER_SIZE);
+            GZIPOutputStream compressor = gzip ? new GZIPOutputStream(buffered, 1 << 16) : null;
+            try (EnvironmentWriter env = new EnvironmentWriter(compressor != null ? compressor : buffered)) {
+                // a payload that failed (not JSON, or the mapping threw) has an empty output and adds no submodel
+                failed = mapEach(engine, compiled, payloadsPath, errorSamples, r -> {
+                    if (!r.getOutput().isEmpty()) env.add(r.getOutput());
+                });
+                submodels = env.submodels();
+            }
+            if (compressor != null) compressor.finish();
+            buffered.flush();
+        } finally {
+            if (outFile != null) target.close();
+        }
+        report.printf(Locale.ROOT, "Wrote environment with %d submodels in %.2f s%s%s%n", submodels,
+                (System.nanoTime() - start) / 1e9, outFile != null ? ": " + outFile.toAbsolutePath() : "", withErrors(failed));
+    }
+
+    // counts per kind and rule after the sampled error lines; everything else was only counted
+    static void printSummary(ErrorSummary errors) {
+        if (errors.errors() > 0) System.err.print("Errors: " + errors.toText(10));
+    }
+
+    private static String withErrors(long failed) {
+        return failed > 0 ? "; " + failed + " payload(s) with errors" : "";
+    }
+
+    // "-" prints Prometheus text to stderr so it does not mix with mapped JSON on stdout
+    // report is where the confirmation goes: stderr whenever stdout carries mapped data
+    private static void writeMetrics(InMemoryMappingMetrics metrics, String target, PrintStream report) throws Exception {
+        if ("-".equals(target)) {
+            System.err.print(metrics.toPrometheus());
+            return;
+        }
+        Path file = Path.of(target);
+        if (file.toAbsolutePath().getParent() != null)
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        Files.writeString(file, metrics.toPrometheus(), StandardCharsets.UTF_8);
+        report.println("Wrote metrics: " + file.toAbsolutePath());
     }
 
     private static void runSchema(String[] args) throws Exception {
@@ -108,14 +304,127 @@ public class App {
         }
     }
 
+    private static void runGenerate(String[] args) throws Exception {
+        Path configPath = null;
+        Path schemaPath = null;
+        Path outFile = null;
+        long count = 100;
+        long seed = 42;
+        int minItems = 1;
+        int maxItems = 5;
+        double missingRate = 0;
+        double invalidRate = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config" -> configPath = Path.of(args[++i]);
+                case "--schema" -> schemaPath = Path.of(args[++i]);
+                case "--out" -> outFile = Path.of(args[++i]);
+                case "--count" -> count = Long.parseLong(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--min-items" -> minItems = Integer.parseInt(args[++i]);
+                case "--max-items" -> maxItems = Integer.parseInt(args[++i]);
+                case "--missing-rate" -> missingRate = Double.parseDouble(args[++i]);
+                case "--invalid-rate" -> invalidRate = Double.parseDouble(args[++i]);
+                case "--help" -> {
+                    printHelp();
+                    return;
+                }
+            }
+        }
+        if (configPath == null && schemaPath == null) {
+            System.err.println("generate: missing --config or --schema");
+            System.exit(2);
+            return;
+        }
+        JsonNode schema = schemaPath != null
+                ? ConfigLoader.readJson(schemaPath)
+                : new SchemaExporter().exportPayloadSchema(ConfigLoader.readConfig(configPath));
+        PayloadGenerator generator = new PayloadGenerator(schema, seed)
+                .arraySize(minItems, maxItems)
+                .missingRate(missingRate)
+                .invalidRate(invalidRate);
+        if (outFile != null) {
+            if (outFile.toAbsolutePath().getParent() != null)
+                Files.createDirectories(outFile.toAbsolutePath().getParent());
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(outFile), 1 << 16)) {
+                generator.writeNdjson(out, count);
+            }
+            System.out.println("Wrote " + count + " payloads: " + outFile.toAbsolutePath());
+        } else {
+            generator.writeNdjson(System.out, count);
+            System.out.flush();
+        }
+    }
+
+    private static void runAnalyze(String[] args) throws Exception {
+        Path configPath = null;
+        Double budget = null;
+        int arraySize = 10;
+        int payloadNodes = 500;
+        boolean json = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config" -> configPath = Path.of(args[++i]);
+                case "--budget" -> budget = Double.parseDouble(args[++i]);
+                case "--array-size" -> arraySize = Integer.parseInt(args[++i]);
+                case "--payload-nodes" -> payloadNodes = Integer.parseInt(args[++i]);
+                case "--json" -> json = true;
+                case "--help" -> {
+                    printHelp();
+                    return;
+                }
+            }
+        }
+        if (configPath == null) {
+            System.err.println("analyze: missing --config");
+            System.exit(2);
+            return;
+        }
+        ConfigAnalysis analysis = new ConfigAnalyzer(arraySize, payloadNodes).analyze(ConfigLoader.readConfig(configPath));
+        System.out.println(json
+                ? new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(analysis.toJson())
+                : analysis.toText());
+        if (budget != null && analysis.getEstimatedCost() > budget) {
+            System.err.printf(Locale.ROOT, "Over budget: estimated cost %.0f > %.0f%n", analysis.getEstimatedCost(), budget);
+            System.exit(3);
+        }
+    }
+
     private static void printHelp() {
         System.out.println("AAS Mapping Language (AML) CLI\n" +
                 "\nCommands:\n" +
-                "  map    --config <config.(json|yaml|yml)> --payload <payload.json> [--outdir <dir>]\n" +
+                "  map    --config <config.(json|yaml|yml)> --payload <payload.json> [--outdir <dir>] [--metrics <file|->] [--explain]\n" +
+                "         [--parallel-rules N] [--only <target,...>]\n" +
+                "  map    --config <config> --payloads <payloads.ndjson|dir|-> [--out <file.ndjson>] [--gzip]\n" +
+                "         [--rotate-records N] [--rotate-bytes N] [--fsync-ms MS] [--environment] [--metrics <file|->]\n" +
+                "         [--only <target,...>] [--checkpoint <file>] [--checkpoint-ms MS] [--error-samples N]\n" +
                 "  schema --config <config.(json|yaml|yml)> [--out <schema.json>]\n" +
+                "  bench  --config <config.(json|yaml|yml)> --payload <payload.json> [--iterations N] [--threads T] [--warmup W] [--json]\n" +
+                "         [--parallel-rules N]\n" +
+                "  generate (--config <config> | --schema <schema.json>) [--count N] [--seed S] [--out <file.ndjson>]\n" +
+                "           [--min-items N] [--max-items N] [--missing-rate R] [--invalid-rate R]\n" +
+                "  analyze  --config <config.(json|yaml|yml)> [--budget COST] [--array-size N] [--payload-nodes N] [--json]\n" +
+                "  watch    --config <config> --input-dir <spool> --outdir <dir> --done-dir <dir> [--quarantine-dir <dir>]\n" +
+                "           [--workers N] [--strict] [--once]\n" +
                 "\nNotes:\n" +
                 "  - map: reads mapping config and payload; prints or writes mapped JSON (plain or AAS Submodel).\n" +
-                "  - schema: derives a best-effort JSON Schema for input data referenced by the config.\n");
+                "  - map --explain: records a per-rule trace (when, source/fallback used, value after each transform, time, constraint).\n" +
+                "  - map --payloads: maps newline-delimited payloads as a stream and writes one output per line\n" +
+                "           through a buffered, optionally gzip-compressed and rotated file; reports throughput.\n" +
+                "           --environment writes one AAS Environment holding every payload's submodels instead.\n" +
+                "           --checkpoint makes the run resumable: rerun the same command after a crash to continue.\n" +
+                "           Prints the first --error-samples errors of each kind (default 10), then counts per kind and rule.\n" +
+                "  - map/bench --parallel-rules N: evaluates the rules of configs with at least N top-level rules on\n" +
+                "           the common fork-join pool (same output as sequential); lowers single-payload latency.\n" +
+                "  - map --only Order/Id,Derived/*: evaluates only the rules writing these targets (and the variables they use).\n" +
+                "  - map --metrics: writes per-rule/per-transform counters and timings in Prometheus text format.\n" +
+                "  - schema: derives a best-effort JSON Schema for input data referenced by the config.\n" +
+                "  - bench: maps the payload repeatedly; reports throughput, p50/p99/p99.9 latency, allocation per mapping and GC counts.\n" +
+                "  - analyze: flags deep scans, filters in predicates, duplicate paths/targets and unused variables;\n" +
+                "             estimates per-payload cost and exits with 3 when it is above --budget.\n" +
+                "  - watch: maps payload files as they arrive in the spool; moves inputs to --done-dir, or to the quarantine\n" +
+                "           directory with <name>.errors.txt when they fail. --once maps what is there and exits.\n" +
+                "  - generate: writes randomized NDJSON payloads shaped by the config's derived schema (for load tests).\n");
     }
 
     private static String deriveBaseName(JsonNode config) {
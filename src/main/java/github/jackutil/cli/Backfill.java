@@ -0,0 +1,285 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import github.jackutil.mapping.CompiledMapping;
+import github.jackutil.mapping.ErrorSummary;
+import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.MappingError;
+import github.jackutil.mapping.MappingResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * {@code map --payloads ... --checkpoint <file>}: a batch run that can be killed at any point and restarted
+ * with the same arguments, continuing where it stopped without writing any output twice.
+ * <p>
+ * Every {@code interval}, the output is made durable ({@link OutputSink#checkpoint()}) and then a small JSON
+ * checkpoint is replaced atomically: the input file and byte offset after the last mapped payload, the
+ * payload and error counts, and the output {@link OutputSink.Position}. On restart the input is read from that
+ * offset and the output cut back to that position, so payloads mapped after the last checkpoint are mapped
+ * again and their earlier, possibly torn, output is discarded. The cost is one fsync per interval.
+ * <p>
+ * Payloads come from one NDJSON file or from every file of a directory in name order; files before the
+ * checkpointed one count as done, so a directory must only grow by names that sort after it. A finished run
+ * leaves its checkpoint marked complete; running again is a no-op until the checkpoint is deleted.
+ * <p>
+ * Input is split into lines before parsing, so a line that is not JSON, or a payload whose mapping throws, is
+ * counted as failed and reported (with its file and byte offset) like any other error, and the run moves on;
+ * a restart never stops at the same bad line again. Blank lines are skipped.
+ */
+final class Backfill {
+    static final long DEFAULT_INTERVAL_MILLIS = 5_000;
+
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectReader PAYLOAD = JSON.readerFor(JsonNode.class);
+
+    private final MappingEngine engine;
+    private final CompiledMapping compiled;
+    private final Path payloads;
+    private final OutputSink sink;
+    private final Path out;
+    private final Path checkpointFile;
+    private final long intervalNanos;
+    private final ErrorSummary errors;
+
+    long payloadsMapped;
+    long failed;
+    long checkpoints;
+    /** Payloads already mapped by earlier runs when this one started; -1 when it started from scratch. */
+    long resumedAt = -1;
+
+    Backfill(MappingEngine engine, CompiledMapping compiled, Path payloads, OutputSink sink, Path out,
+             Path checkpointFile, long intervalMillis, ErrorSummary errors) {
+        if (intervalMillis < 0) throw new IllegalArgumentException("checkpoint interval must not be negative");
+        this.engine = engine;
+        this.compiled = compiled;
+        this.payloads = payloads;
+        this.sink = sink;
+        this.out = out;
+        this.checkpointFile = checkpointFile;
+        this.intervalNanos = intervalMillis * 1_000_000;
+        this.errors = errors;
+    }
+
+    /** @return false when the checkpoint says the run already completed (nothing is mapped) */
+    boolean run() throws IOException {
+        String source = payloads.toAbsolutePath().normalize().toString();
+        String target = out.toAbsolutePath().normalize().toString();
+        List<Path> inputs = inputs(payloads);
+        int first = 0;
+        long offset = 0;
+        JsonNode state = Files.exists(checkpointFile) ? JSON.readTree(checkpointFile.toFile()) : null;
+        if (state != null) {
+            if (!source.equals(state.path("payloads").asText()) || !target.equals(state.path("out").asText())) {
+                throw new IllegalArgumentException("Checkpoint " + checkpointFile + " belongs to --payloads "
+                        + state.path("payloads").asText() + " --out " + state.path("out").asText());
+            }
+            if (state.path("complete").asBoolean()) return false;
+            first = indexOf(inputs, state.path("input").asText());
+            offset = state.path("offset").asLong();
+            payloadsMapped = resumedAt = state.path("mapped").asLong();
+            failed = state.path("failed").asLong();
+            JsonNode at = state.path("output");
+            sink.resume(new OutputSink.Position(at.path("file").asInt(), at.path("diskBytes").asLong(),
+                    at.path("fileRecords").asLong(), at.path("fileBytes").asLong()));
+        }
+        long lastCheckpoint = System.nanoTime();
+        for (int i = first; i < inputs.size(); i++) {
+            Path input = inputs.get(i);
+            long base = i == first ? offset : 0;
+            try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+                channel.position(base);
+                try (InputStream in = Channels.newInputStream(channel)) {
+                    Lines lines = new Lines(in);
+                    long consumed = base;
+                    for (long n; (n = lines.next()) > 0; ) {
+                        long at = consumed;
+                        consumed += n;
+                        if (lines.isBlank()) continue;
+                        MappingResult result = map(engine, compiled, lines, input.getFileName().toString(), at);
+                        sink.write(result.getOutput());
+                        if (result.hasErrors()) failed++;
+                        for (MappingError e : errors.add(result))
+                            System.err.println(" - payload " + payloadsMapped + ": " + e);
+                        payloadsMapped++;
+                        if (System.nanoTime() - lastCheckpoint >= intervalNanos) {
+                            save(source, target, input, consumed, false);
+                            lastCheckpoint = System.nanoTime();
+                        }
+                    }
+                }
+            }
+        }
+        sink.close();
+        save(source, target, null, 0, true);
+        App.printSummary(errors);
+        return true;
+    }
+
+    /**
+     * Maps the current line of {@code line}; never throws for one payload: a line that is not JSON or a failing
+     * mapping becomes a result with one error, naming {@code input} and the line's byte {@code offset}.
+     */
+    static MappingResult map(MappingEngine engine, CompiledMapping compiled, Lines line, String input, long offset) {
+        JsonNode payload;
+        try {
+            payload = PAYLOAD.readValue(line.bytes, line.start, line.length);
+        } catch (JsonProcessingException e) {
+            return MappingResult.invalidPayload(input + " at byte " + offset + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            return MappingResult.invalidPayload(input + " at byte " + offset + ": " + e);
+        }
+        try {
+            return engine.map(compiled, payload);
+        } catch (Throwable e) {
+            // an Error too (e.g. StackOverflowError on a deeply nested payload): rethrown, it would stop every restart here
+            return MappingResult.failed(e);
+        }
+    }
+
+    private void save(String source, String target, Path input, long offset, boolean complete) throws IOException {
+        ObjectNode state = JSON.createObjectNode();
+        state.put("payloads", source);
+        state.put("out", target);
+        state.put("mapped", payloadsMapped);
+        state.put("failed", failed);
+        if (complete) {
+            state.put("complete", true);
+        } else {
+            // output first: the checkpoint must never point past what is durable
+            OutputSink.Position at = sink.checkpoint();
+            state.put("input", input.getFileName().toString());
+            state.put("offset", offset);
+            ObjectNode output = state.putObject("output");
+            output.put("file", at.file());
+            output.put("diskBytes", at.diskBytes());
+            output.put("fileRecords", at.fileRecords());
+            output.put("fileBytes", at.fileBytes());
+        }
+        Path dir = checkpointFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, "." + checkpointFile.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(JSON.writeValueAsBytes(state)));
+                channel.force(false);
+            }
+            try {
+                Files.move(tmp, checkpointFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        checkpoints++;
+    }
+
+    /** The payload files of {@code path}: the file itself, or the directory's files in name order. */
+    static List<Path> inputs(Path path) throws IOException {
+        if (!Files.isDirectory(path)) return List.of(path);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(path)) {
+            for (Path p : dir) {
+                String name = p.getFileName().toString();
+                if (!name.startsWith(".") && !name.endsWith(".tmp") && !name.endsWith(".part") && Files.isRegularFile(p))
+                    files.add(p);
+            }
+        }
+        files.sort(null);
+        return files;
+    }
+
+    /**
+     * Splits the input at {@code '\n'}; the current line is {@code length} bytes of {@code bytes} from {@code start}.
+     * A line within one read chunk is not copied. A final line may lack the break.
+     */
+    static final class Lines {
+        private final InputStream in;
+        private final byte[] chunk = new byte[1 << 16];
+        private int pos;
+        private int end;
+        // holds a line that spans chunks
+        private byte[] spill = new byte[1 << 12];
+        byte[] bytes;
+        int start;
+        int length;
+
+        Lines(InputStream in) {
+            this.in = in;
+        }
+
+        /** @return the bytes the line took in the input, its break included; 0 at the end of the input */
+        long next() throws IOException {
+            int spilled = 0;
+            long consumed = 0;
+            while (true) {
+                if (pos == end) {
+                    int read = in.read(chunk);
+                    if (read <= 0) {
+                        line(spill, 0, spilled);
+                        return consumed;
+                    }
+                    pos = 0;
+                    end = read;
+                }
+                int nl = pos;
+                while (nl < end && chunk[nl] != '\n') nl++;
+                int n = nl - pos;
+                consumed += n;
+                if (nl < end && spilled == 0) {
+                    line(chunk, pos, n);
+                    pos = nl + 1;
+                    return consumed + 1;
+                }
+                if (spilled + n > spill.length) spill = Arrays.copyOf(spill, Math.max(spilled + n, 2 * spill.length));
+                System.arraycopy(chunk, pos, spill, spilled, n);
+                spilled += n;
+                if (nl < end) {
+                    line(spill, 0, spilled);
+                    pos = nl + 1;
+                    return consumed + 1;
+                }
+                pos = end;
+            }
+        }
+
+        private void line(byte[] bytes, int start, int length) {
+            this.bytes = bytes;
+            this.start = start;
+            this.length = length;
+        }
+
+        boolean isBlank() {
+            for (int i = start; i < start + length; i++) {
+                byte b = bytes[i];
+                if (b != ' ' && b != '\t' && b != '\r') return false;
+            }
+            return true;
+        }
+    }
+
+    private static int indexOf(List<Path> inputs, String name) {
+        for (int i = 0; i < inputs.size(); i++) {
+            if (inputs.get(i).getFileName().toString().equals(name)) return i;
+        }
+        throw new IllegalArgumentException("Input file " + name + " of the checkpoint is gone");
+    }
+}
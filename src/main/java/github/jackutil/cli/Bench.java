@@ -0,0 +1,278 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import github.jackutil.mapping.CompiledMapping;
+import github.jackutil.mapping.ConfigLoader;
+import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.MappingResult;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * {@code bench} command: maps one payload repeatedly with a compiled config and reports throughput,
+ * latency percentiles, allocation per mapping and GC activity, plus payload parse time and peak RSS
+ * (which is what large payloads are sized by). Meant for operators sizing their own configs.
+ */
+final class Bench {
+    private Bench() {}
+
+    static void run(String[] args) throws Exception {
+        Path configPath = null;
+        Path payloadPath = null;
+        int iterations = 10_000;
+        int threads = 1;
+        int warmup = 2_000;
+        boolean json = false;
+        int parallelRules = 0;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config" -> configPath = Path.of(args[++i]);
+                case "--payload" -> payloadPath = Path.of(args[++i]);
+                case "--iterations" -> iterations = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--warmup" -> warmup = Integer.parseInt(args[++i]);
+                case "--json" -> json = true;
+                case "--parallel-rules" -> parallelRules = Integer.parseInt(args[++i]);
+            }
+        }
+        if (configPath == null || payloadPath == null) {
+            System.err.println("bench: missing --config or --payload");
+            System.exit(2);
+            return;
+        }
+        if (iterations < 1 || threads < 1 || warmup < 0) {
+            System.err.println("bench: --iterations and --threads must be positive, --warmup non-negative");
+            System.exit(2);
+            return;
+        }
+        MappingEngine engine = parallelRules > 0
+                ? new MappingEngine(null, null, ForkJoinPool.commonPool(), parallelRules)
+                : new MappingEngine();
+        CompiledMapping compiled = engine.compile(ConfigLoader.readConfig(configPath));
+        long loadStart = System.nanoTime();
+        JsonNode payload = ConfigLoader.readJson(payloadPath);
+        long loadNanos = System.nanoTime() - loadStart;
+
+        Report report = measure(engine, compiled, payload, iterations, threads, warmup)
+                .withLoad(Files.size(payloadPath), loadNanos);
+        System.out.println(json ? new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(report.toJson()) : report.toText());
+    }
+
+    static Report measure(MappingEngine engine, CompiledMapping compiled, JsonNode payload, int iterations, int threads, int warmup) throws Exception {
+        MappingResult first = engine.map(compiled, payload);
+        for (int i = 0; i < warmup; i++) engine.map(compiled, payload);
+
+        long gcCount = gcCount();
+        long gcMillis = gcMillis();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        List<Future<Worker>> futures = new ArrayList<>(threads);
+        long start = System.nanoTime();
+        try {
+            for (int t = 0; t < threads; t++) {
+                int share = iterations / threads + (t < iterations % threads ? 1 : 0);
+                futures.add(pool.submit(() -> new Worker().run(engine, compiled, payload, share)));
+            }
+            Histogram latency = new Histogram();
+            long allocated = 0;
+            for (Future<Worker> f : futures) {
+                Worker w = f.get();
+                latency.add(w.latency);
+                allocated += w.allocated;
+            }
+            long wallNanos = System.nanoTime() - start;
+            return new Report(compiled.getName(), iterations, threads, warmup, wallNanos, latency,
+                    allocated < 0 ? -1 : allocated / iterations, gcCount() - gcCount, gcMillis() - gcMillis,
+                    first.getErrors().size(), -1, -1, peakRssBytes());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Peak resident set size of this process (VmHWM), -1 where /proc is not available
+    static long peakRssBytes() {
+        try {
+            for (String line : Files.readAllLines(Path.of("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        } catch (Exception ignored) {
+            // not Linux
+        }
+        return -1;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcMillis() {
+        long n = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    private static final class Worker {
+        private final Histogram latency = new Histogram();
+        private long allocated;
+
+        private Worker run(MappingEngine engine, CompiledMapping compiled, JsonNode payload, int iterations) {
+            long threadId = Thread.currentThread().threadId();
+            long allocStart = allocatedBytes(threadId);
+            for (int i = 0; i < iterations; i++) {
+                long t0 = System.nanoTime();
+                engine.map(compiled, payload);
+                latency.record(System.nanoTime() - t0);
+            }
+            long allocEnd = allocatedBytes(threadId);
+            allocated = allocStart < 0 || allocEnd < 0 ? -1 : allocEnd - allocStart;
+            return this;
+        }
+
+        // -1 when the JVM does not support per-thread allocation accounting
+        private static long allocatedBytes(long threadId) {
+            if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean mx && mx.isThreadAllocatedMemorySupported()) {
+                if (!mx.isThreadAllocatedMemoryEnabled()) mx.setThreadAllocatedMemoryEnabled(true);
+                return mx.getThreadAllocatedBytes(threadId);
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Log-linear latency histogram: 64 linear sub-buckets per power of two, so recorded values are
+     * accurate to about 1.5% with a fixed footprint regardless of iteration count.
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 6;
+        private static final int SUB = 1 << SUB_BITS;
+        private final long[] counts = new long[(64 - SUB_BITS + 1) * SUB];
+        private long total;
+        private long max;
+
+        void record(long nanos) {
+            long v = Math.max(0, nanos);
+            counts[index(v)]++;
+            total++;
+            if (v > max) max = v;
+        }
+
+        void add(Histogram other) {
+            for (int i = 0; i < counts.length; i++) counts[i] += other.counts[i];
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        long count() {
+            return total;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /** @return the upper bound of the bucket holding the given quantile (0..1) */
+        long percentile(double q) {
+            if (total == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        private static int index(long v) {
+            if (v < SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return (shift + 1) * SUB + (int) ((v >>> shift) - SUB);
+        }
+
+        private static long upperBound(int index) {
+            if (index < SUB) return index;
+            int shift = index / SUB - 1;
+            long sub = index % SUB + SUB;
+            return ((sub + 1) << shift) - 1;
+        }
+    }
+
+    record Report(String config, int iterations, int threads, int warmup, long wallNanos, Histogram latency,
+                  long bytesPerMapping, long gcCount, long gcMillis, int errors,
+                  long payloadBytes, long loadNanos, long peakRssBytes) {
+
+        /** Payload file size and the time {@link ConfigLoader#readJson} took to parse it (-1 when not loaded from a file). */
+        Report withLoad(long payloadBytes, long loadNanos) {
+            return new Report(config, iterations, threads, warmup, wallNanos, latency, bytesPerMapping, gcCount,
+                    gcMillis, errors, payloadBytes, loadNanos, peakRssBytes);
+        }
+
+        double throughput() {
+            return iterations / (wallNanos / 1e9);
+        }
+
+        String toText() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format(Locale.ROOT, "config      %s%n", config));
+            sb.append(String.format(Locale.ROOT, "iterations  %d (threads %d, warmup %d)%n", iterations, threads, warmup));
+            sb.append(String.format(Locale.ROOT, "throughput  %.1f mappings/s%n", throughput()));
+            sb.append(String.format(Locale.ROOT, "latency     p50 %s  p99 %s  p99.9 %s  max %s%n",
+                    micros(latency.percentile(0.50)), micros(latency.percentile(0.99)),
+                    micros(latency.percentile(0.999)), micros(latency.max())));
+            sb.append(String.format(Locale.ROOT, "allocation  %s%n", bytesPerMapping < 0 ? "n/a" : bytesPerMapping + " bytes/mapping"));
+            sb.append(String.format(Locale.ROOT, "gc          %d collections, %d ms%n", gcCount, gcMillis));
+            if (payloadBytes >= 0) {
+                sb.append(String.format(Locale.ROOT, "payload     %s parsed in %d ms%s%n", megabytes(payloadBytes), loadNanos / 1_000_000,
+                        payloadBytes >= ConfigLoader.MAPPED_READ_THRESHOLD ? " (memory-mapped)" : ""));
+            }
+            sb.append(String.format(Locale.ROOT, "peak RSS    %s%n", peakRssBytes < 0 ? "n/a" : megabytes(peakRssBytes)));
+            if (errors > 0) sb.append(String.format(Locale.ROOT, "errors      %d per mapping (results still measured)%n", errors));
+            return sb.toString().stripTrailing();
+        }
+
+        ObjectNode toJson() {
+            ObjectNode n = new ObjectMapper().createObjectNode();
+            n.put("config", config);
+            n.put("iterations", iterations);
+            n.put("threads", threads);
+            n.put("warmup", warmup);
+            n.put("throughputPerSecond", throughput());
+            ObjectNode lat = n.putObject("latencyNanos");
+            lat.put("p50", latency.percentile(0.50));
+            lat.put("p99", latency.percentile(0.99));
+            lat.put("p999", latency.percentile(0.999));
+            lat.put("max", latency.max());
+            n.put("bytesPerMapping", bytesPerMapping);
+            n.put("gcCount", gcCount);
+            n.put("gcMillis", gcMillis);
+            n.put("errorsPerMapping", errors);
+            n.put("payloadBytes", payloadBytes);
+            n.put("payloadLoadNanos", loadNanos);
+            n.put("peakRssBytes", peakRssBytes);
+            return n;
+        }
+
+        private static String megabytes(long bytes) {
+            return String.format(Locale.ROOT, "%.1f MB", bytes / 1_048_576.0);
+        }
+
+        private static String micros(long nanos) {
+            return String.format(Locale.ROOT, "%.1f us", nanos / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes mapping outputs as newline-delimited JSON through one large buffer that is reused for the whole run,
+ * serializing each tree straight into it (no String per output). Optionally gzip-compressed, rotated to a new
+ * file after a number of records or uncompressed bytes, and fsynced at an interval.
+ * <p>
+ * Rotated files are named {@code <stem>-00000.ndjson}, {@code <stem>-00001.ndjson}, ... next to the requested
+ * path; without rotation the path is used as given. {@code .gz} is appended when compressing. A file is
+ * complete (gzip trailer written, fsynced) once the next one has been opened or the sink is closed.
+ * <p>
+ * {@link #checkpoint()} makes the output durable up to the last record and returns a {@link Position} that
+ * {@link #resume(Position)} continues from after a crash, dropping whatever was written past it. Compressed
+ * files then consist of several gzip members, which gzip tools and {@code GZIPInputStream} read as one stream.
+ * Not thread-safe.
+ */
+final class OutputSink implements AutoCloseable {
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Path path;
+    private final boolean gzip;
+    private final long rotateRecords;
+    private final long rotateBytes;
+    private final long fsyncNanos;
+    private final ChannelOutput disk;
+    private final OutputStream stream;
+    private final long started = System.nanoTime();
+
+    private FileChannel channel;
+    private GZIPOutputStream compressor;
+    private Counting plain;
+    private JsonGenerator generator;
+    private long fileRecords;
+    private long lastSync = System.nanoTime();
+
+    private long records;
+    private long bytes;
+    private int files;
+    private long syncs;
+
+    /**
+     * @param rotateRecords start a new file after this many records (0: never)
+     * @param rotateBytes   start a new file after this many uncompressed bytes (0: never)
+     * @param fsyncMillis   fsync at most this often while writing (0: only when a file is finished)
+     */
+    OutputSink(Path path, boolean gzip, long rotateRecords, long rotateBytes, long fsyncMillis) {
+        this(path, gzip, rotateRecords, rotateBytes, fsyncMillis, null);
+    }
+
+    /** Uncompressed NDJSON to a stream that is flushed but not closed (stdout); no rotation or fsync. */
+    OutputSink(OutputStream out) throws IOException {
+        this(null, false, 0, 0, 0, out);
+        disk.target = Channels.newChannel(out);
+        open(disk);
+    }
+
+    private OutputSink(Path path, boolean gzip, long rotateRecords, long rotateBytes, long fsyncMillis, OutputStream stream) {
+        if (rotateRecords < 0 || rotateBytes < 0 || fsyncMillis < 0)
+            throw new IllegalArgumentException("rotation limits and fsync interval must not be negative");
+        this.path = path;
+        this.gzip = gzip;
+        this.rotateRecords = rotateRecords;
+        this.rotateBytes = rotateBytes;
+        this.fsyncNanos = fsyncMillis * 1_000_000;
+        this.disk = new ChannelOutput(BUFFER_SIZE);
+        this.stream = stream;
+    }
+
+    /**
+     * Where a checkpointed run continues: the index of the file being written (or to be opened next), its
+     * length on disk, and its records and uncompressed bytes so far (for rotation).
+     */
+    record Position(int file, long diskBytes, long fileRecords, long fileBytes) {}
+
+    /** {@code bytes} is the uncompressed NDJSON size, {@code diskBytes} what reached the file(s) after compression. */
+    record Stats(long records, int files, long bytes, long diskBytes, long syncs, long nanos) {
+        String toText() {
+            double seconds = nanos / 1e9;
+            String text = String.format(Locale.ROOT, "%d records in %.2f s (%.0f records/s, %.1f MB/s), %d file(s), %.1f MB",
+                    records, seconds, records / seconds, bytes / 1_048_576.0 / seconds, files, bytes / 1_048_576.0);
+            if (diskBytes < bytes) {
+                text += String.format(Locale.ROOT, " -> %.1f MB on disk (%.1fx)", diskBytes / 1_048_576.0, diskBytes == 0 ? 0 : (double) bytes / diskBytes);
+            }
+            return text;
+        }
+    }
+
+    void write(JsonNode output) throws IOException {
+        if (generator == null) openNext();
+        MAPPER.writeTree(generator, output);
+        generator.writeRaw('\n');
+        records++;
+        fileRecords++;
+        if ((rotateRecords > 0 && fileRecords >= rotateRecords)
+                || (rotateBytes > 0 && plain.count + generator.getOutputBuffered() >= rotateBytes)) {
+            finishFile();
+        } else if (fsyncNanos > 0 && System.nanoTime() - lastSync >= fsyncNanos) {
+            sync();
+        }
+    }
+
+    /** Makes everything written so far durable and returns the position to {@link #resume(Position)} from. */
+    Position checkpoint() throws IOException {
+        if (stream != null) throw new IllegalStateException("stdout output cannot be checkpointed");
+        if (generator == null) return new Position(files, 0, 0, 0);
+        generator.flush();
+        if (compressor != null) {
+            // end the gzip member: a deflate stream cut at a sync flush cannot be appended to after a restart
+            compressor.close();
+            compressor = null;
+        }
+        force();
+        Position at = new Position(files - 1, channel.position(), fileRecords, plain.count);
+        if (gzip) {
+            compressor = new GZIPOutputStream(disk, 1 << 16, true);
+            plain.out = compressor;
+        }
+        return at;
+    }
+
+    /**
+     * Continues the output of an interrupted run at {@code at}: the file is cut back to the checkpointed length
+     * and files rotated after it are deleted, so no record is written twice. Call before the first write.
+     */
+    void resume(Position at) throws IOException {
+        if (stream != null || files > 0) throw new IllegalStateException("resume must precede the first write");
+        if (rotateRecords > 0 || rotateBytes > 0) {
+            for (int i = at.file() + 1; Files.exists(fileFor(i)); i++) Files.delete(fileFor(i));
+        }
+        files = at.file();
+        if (at.diskBytes() == 0) return; // the next write starts the file afresh
+        channel = FileChannel.open(fileFor(files), StandardOpenOption.WRITE);
+        channel.truncate(at.diskBytes());
+        channel.position(at.diskBytes());
+        disk.target = channel;
+        compressor = gzip ? new GZIPOutputStream(disk, 1 << 16, true) : null;
+        open(compressor != null ? compressor : disk);
+        plain.count = at.fileBytes();
+        bytes = -at.fileBytes(); // stats cover this run only
+        files++;
+        fileRecords = at.fileRecords();
+    }
+
+    Stats stats() {
+        long open = plain != null ? plain.count + generator.getOutputBuffered() : 0;
+        long diskBytes = gzip ? disk.written + disk.buffer.position() : bytes + open;
+        return new Stats(records, files, bytes + open, diskBytes, syncs, System.nanoTime() - started);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stream != null) {
+            generator.close();
+            disk.flush();
+            stream.flush();
+            bytes += plain.count;
+            plain = null;
+        } else if (generator != null) {
+            finishFile();
+        }
+    }
+
+    private void openNext() throws IOException {
+        Path file = fileFor(files);
+        if (file.toAbsolutePath().getParent() != null) Files.createDirectories(file.toAbsolutePath().getParent());
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        disk.target = channel;
+        // sync flush so a periodic fsync persists everything written so far, not only whole deflate blocks
+        compressor = gzip ? new GZIPOutputStream(disk, 1 << 16, true) : null;
+        open(compressor != null ? compressor : disk);
+        files++;
+        fileRecords = 0;
+    }
+
+    private void open(OutputStream out) throws IOException {
+        plain = new Counting(out);
+        generator = MAPPER.getFactory().createGenerator(plain);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+    }
+
+    Path fileFor(int index) {
+        String name = path.getFileName().toString();
+        if (rotateRecords > 0 || rotateBytes > 0) {
+            int dot = name.indexOf('.');
+            String stem = dot > 0 ? name.substring(0, dot) : name;
+            String ext = dot > 0 ? name.substring(dot) : ".ndjson";
+            name = String.format(Locale.ROOT, "%s-%05d%s", stem, index, ext);
+        }
+        if (gzip && !name.endsWith(".gz")) name += ".gz";
+        return path.resolveSibling(name);
+    }
+
+    private void sync() throws IOException {
+        generator.flush();
+        force();
+    }
+
+    private void force() throws IOException {
+        disk.flush();
+        channel.force(false);
+        syncs++;
+        lastSync = System.nanoTime();
+    }
+
+    private void finishFile() throws IOException {
+        generator.close();
+        // close, not finish: releases the deflater's native memory; the channel stays open for the fsync
+        if (compressor != null) compressor.close();
+        force();
+        bytes += plain.count;
+        channel.close();
+        channel = null;
+        generator = null;
+        plain = null;
+        compressor = null;
+    }
+
+    /** Buffers writes in one heap buffer reused across files and drains it to the current channel. */
+    private static final class ChannelOutput extends OutputStream {
+        private final ByteBuffer buffer;
+        private WritableByteChannel target;
+        private long written;
+
+        private ChannelOutput(int size) {
+            this.buffer = ByteBuffer.allocate(size);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) drain();
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (!buffer.hasRemaining()) drain();
+                int n = Math.min(len, buffer.remaining());
+                buffer.put(b, off, n);
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            drain();
+        }
+
+        // the channel is closed by the sink, not through this stream
+        @Override
+        public void close() throws IOException {
+            drain();
+        }
+
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) written += target.write(buffer);
+            buffer.clear();
+        }
+    }
+
+    /** Counts the uncompressed bytes of the current file. */
+    private static final class Counting extends OutputStream {
+        private OutputStream out;
+        private long count;
+
+        private Counting(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,330 @@
+package github.jackutil.cli;
+
+import github.jackutil.mapping.CompiledMapping;
+import github.jackutil.mapping.ConfigLoader;
+import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.MappingResult;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@code watch} command: maps payload files as they land in a spool directory, for continuous ingestion
+ * without starting a JVM per file.
+ * <p>
+ * Each file is mapped on a bounded worker pool; when the queue is full the watcher thread maps the file
+ * itself, so a burst slows intake instead of growing memory. A worker first moves the input into
+ * {@code .processing/} inside the spool, writes {@code <input name>.json} to a temp file renamed into place,
+ * then moves the input to the done directory. A file that cannot be read or mapped is moved to the
+ * quarantine directory next to a {@code <name>.errors.txt} listing why.
+ * <p>
+ * The spool is the only state: on start, inputs left in {@code .processing/} by a crash are mapped again
+ * (their output may be missing, torn or from an older input of the same name), then the files in the spool.
+ * Producers should write under a dot-name or a {@code .tmp}/{@code .part} suffix and rename into the spool;
+ * such names are ignored.
+ */
+final class Watch implements AutoCloseable {
+    private final MappingEngine engine;
+    private final CompiledMapping compiled;
+    private final Path inputDir;
+    private final Path outDir;
+    private final Path doneDir;
+    private final Path quarantineDir;
+    // inputs claimed by a worker; inside the spool, so the claim is a rename on the same file system
+    private final Path processingDir;
+    private final boolean strict;
+    private final ThreadPoolExecutor pool;
+    // files queued or being mapped, so a create and a following modify event do not map a file twice
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    final AtomicLong mapped = new AtomicLong();
+    final AtomicLong quarantined = new AtomicLong();
+    final AtomicLong recovered = new AtomicLong();
+
+    private volatile boolean stopped;
+
+    Watch(MappingEngine engine, CompiledMapping compiled, Path inputDir, Path outDir, Path doneDir, Path quarantineDir,
+          int workers, boolean strict) throws IOException {
+        if (workers < 1) throw new IllegalArgumentException("workers must be positive");
+        this.engine = engine;
+        this.compiled = compiled;
+        this.inputDir = inputDir;
+        this.outDir = outDir;
+        this.doneDir = doneDir;
+        this.quarantineDir = quarantineDir;
+        this.processingDir = inputDir.resolve(".processing");
+        this.strict = strict;
+        this.pool = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(workers * 4), new ThreadPoolExecutor.CallerRunsPolicy());
+        for (Path dir : List.of(inputDir, processingDir, outDir, doneDir, quarantineDir)) Files.createDirectories(dir);
+    }
+
+    static void run(String[] args) throws Exception {
+        Path configPath = null;
+        Path inputDir = null;
+        Path outDir = null;
+        Path doneDir = null;
+        Path quarantineDir = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        boolean strict = false;
+        boolean once = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--config" -> configPath = Path.of(args[++i]);
+                case "--input-dir" -> inputDir = Path.of(args[++i]);
+                case "--outdir" -> outDir = Path.of(args[++i]);
+                case "--done-dir" -> doneDir = Path.of(args[++i]);
+                case "--quarantine-dir" -> quarantineDir = Path.of(args[++i]);
+                case "--workers" -> workers = Integer.parseInt(args[++i]);
+                case "--strict" -> strict = true;
+                case "--once" -> once = true;
+            }
+        }
+        if (configPath == null || inputDir == null || outDir == null || doneDir == null) {
+            System.err.println("watch: missing --config, --input-dir, --outdir or --done-dir");
+            System.exit(2);
+            return;
+        }
+        if (workers < 1) {
+            System.err.println("watch: --workers must be positive");
+            System.exit(2);
+            return;
+        }
+        if (quarantineDir == null) quarantineDir = doneDir.toAbsolutePath().resolveSibling("quarantine");
+
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(ConfigLoader.readConfig(configPath));
+        Watch watch = new Watch(engine, compiled, inputDir, outDir, doneDir, quarantineDir, workers, strict);
+        if (once) {
+            try (watch) {
+                watch.processExisting();
+            }
+        } else {
+            Thread main = Thread.currentThread();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                watch.stop();
+                try {
+                    main.join();
+                } catch (InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            System.out.println("Watching " + inputDir.toAbsolutePath() + " (" + workers + " workers)");
+            try (watch) {
+                watch.watch();
+            }
+        }
+        System.out.println("Mapped " + watch.mapped.get() + ", quarantined " + watch.quarantined.get()
+                + ", recovered " + watch.recovered.get());
+    }
+
+    /**
+     * Queues the inputs a crash left claimed, then every file already in the spool, oldest name first;
+     * used at start-up and by {@code --once}.
+     */
+    void processExisting() throws IOException {
+        cleanStaleTempFiles();
+        for (Path claimed : list(processingDir)) {
+            recovered.incrementAndGet();
+            submit(claimed.getFileName().toString(), () -> map(claimed));
+        }
+        for (Path file : list(inputDir)) submit(file);
+    }
+
+    /** Processes the existing backlog, then maps new files as they arrive until {@link #stop()}. */
+    void watch() throws IOException, InterruptedException {
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            // registered before the initial scan so nothing arriving in between is missed
+            WatchKey registration = inputDir.register(service,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            processExisting();
+            while (!stopped) {
+                WatchKey key;
+                try {
+                    key = service.poll(500, TimeUnit.MILLISECONDS);
+                } catch (ClosedWatchServiceException e) {
+                    break;
+                }
+                if (key == null) continue;
+                boolean overflow = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        overflow = true;
+                    } else {
+                        Path file = inputDir.resolve((Path) event.context());
+                        if (isCandidate(file)) submit(file);
+                    }
+                }
+                // events were dropped; the directory listing is the source of truth
+                if (overflow) {
+                    for (Path file : list(inputDir)) submit(file);
+                }
+                if (!key.reset()) {
+                    registration.cancel();
+                    throw new IOException("Spool directory is no longer accessible: " + inputDir.toAbsolutePath());
+                }
+            }
+        }
+    }
+
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Stops watching and waits for queued files to finish, so no input is left half-processed. When interrupted
+     * while waiting, cancels the rest (claimed inputs are mapped again on the next start) and keeps the interrupt.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(1, TimeUnit.HOURS)) pool.shutdownNow();
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void submit(Path file) {
+        submit(file.getFileName().toString(), () -> process(file));
+    }
+
+    private void submit(String name, Runnable task) {
+        if (!inFlight.add(name)) return;
+        try {
+            pool.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(name);
+                }
+                // a file of the same name that arrived meanwhile had its event dropped by inFlight
+                Path again = inputDir.resolve(name);
+                if (!stopped && isCandidate(again)) submit(again);
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(name);
+            throw e;
+        }
+    }
+
+    void process(Path file) {
+        if (!Files.isRegularFile(file)) return; // moved or deleted since the event
+        Path claimed = processingDir.resolve(file.getFileName());
+        try {
+            move(file, claimed);
+        } catch (IOException e) {
+            System.err.println("Could not claim " + file.getFileName() + ": " + e);
+            return;
+        }
+        map(claimed);
+    }
+
+    // claimed is in processingDir; it leaves it for the done or quarantine directory, or stays for the next start
+    private void map(Path claimed) {
+        List<String> errors;
+        String output = null;
+        try {
+            MappingResult result = engine.map(compiled, ConfigLoader.readJson(claimed));
+            errors = result.getErrors();
+            if (!strict || errors.isEmpty()) output = engine.toPrettyJson(result.getOutput());
+        } catch (Throwable e) {
+            // an Error too (StackOverflowError, a broken TransformProvider): rethrown, it would kill the worker or,
+            // run by the watcher thread, the command, and the claimed input would fail again on every start
+            errors = List.of("Mapping failed: " + e);
+        }
+        if (output != null) {
+            try {
+                writeAtomically(outputFor(claimed), output);
+                moveInto(claimed, doneDir);
+            } catch (IOException e) {
+                // the input is fine (full disk, say): left claimed; mapped again on the next start
+                System.err.println("Could not write output for " + claimed.getFileName() + ": " + e);
+                return;
+            }
+            mapped.incrementAndGet();
+            System.out.println("Mapped: " + claimed.getFileName() + (errors.isEmpty() ? "" : " (" + errors.size() + " errors)"));
+            return;
+        }
+        try {
+            writeAtomically(quarantineDir.resolve(claimed.getFileName() + ".errors.txt"), String.join("\n", errors) + "\n");
+            moveInto(claimed, quarantineDir);
+            quarantined.incrementAndGet();
+            System.err.println("Quarantined: " + claimed.getFileName() + " (" + errors.get(0) + ")");
+        } catch (IOException e) {
+            // left claimed; mapped again on the next start
+            System.err.println("Could not quarantine " + claimed.getFileName() + ": " + e);
+        }
+    }
+
+    /** {@code <input name>.json}: the whole name, so {@code x.json} and {@code x.xml} get separate outputs. */
+    Path outputFor(Path input) {
+        return outDir.resolve(input.getFileName() + ".json");
+    }
+
+    private static List<Path> list(Path spool) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> dir = Files.newDirectoryStream(spool)) {
+            for (Path p : dir) if (isCandidate(p)) files.add(p);
+        }
+        files.sort(null);
+        return files;
+    }
+
+    private static boolean isCandidate(Path file) {
+        String name = file.getFileName().toString();
+        return !name.startsWith(".") && !name.endsWith(".tmp") && !name.endsWith(".part") && Files.isRegularFile(file);
+    }
+
+    private void writeAtomically(Path target, String content) throws IOException {
+        Path tmp = Files.createTempFile(target.getParent(), "." + target.getFileName(), ".tmp");
+        try {
+            Files.writeString(tmp, content, StandardCharsets.UTF_8);
+            move(tmp, target);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static void moveInto(Path file, Path dir) throws IOException {
+        move(file, dir.resolve(file.getFileName()));
+    }
+
+    private static void move(Path from, Path to) throws IOException {
+        try {
+            Files.move(from, to, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(from, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // temp outputs left behind by a crash mid-write
+    private void cleanStaleTempFiles() throws IOException {
+        for (Path dir : List.of(outDir, quarantineDir)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, ".*.tmp")) {
+                for (Path p : files) Files.deleteIfExists(p);
+            }
+        }
+    }
+}
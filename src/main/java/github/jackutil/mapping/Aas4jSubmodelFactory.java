@@ -1,7 +1,8 @@
 package github.jackutil.mapping;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.JsonSerializer;
 import org.eclipse.digitaltwin.aas4j.v3.model.*;
@@ -9,41 +10,57 @@ import org.eclipse.digitaltwin.aas4j.v3.model.impl.*;
 
 import java.util.*;
 
+/**
+ * Builds AAS4J Submodels for one {@code submodel} header.
+ * Everything derived from the header (references, lang strings, per-path element templates) is resolved
+ * once in the constructor; {@link #build} only creates the elements for the mapped values.
+ * Instances are immutable after construction and safe to share between threads.
+ */
 public class Aas4jSubmodelFactory {
-    private final ObjectMapper mapper = new ObjectMapper();
+    private static final JsonSerializer SERIALIZER = new JsonSerializer();
 
-    public ObjectNode build(ObjectNode header, Map<String, ObjectNode> metaByPath, JsonNode mappedValues) {
-        Submodel submodel = buildSubmodelHeader(header);
-        List<SubmodelElement> elements = new ArrayList<>();
-        addElementsRecursive(elements, "", mappedValues, metaByPath);
-        submodel.setSubmodelElements(elements);
+    private final String idShort;
+    private final ModellingKind kind;
+    private final Reference semanticId;
+    private final AdministrativeInformation administration;
+    private final List<LangStringNameType> displayName;
+    private final List<LangStringTextType> description;
 
-        try {
-            String json = new JsonSerializer().write(submodel);
-            return (ObjectNode) mapper.readTree(json);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to serialize AAS4J Submodel", e);
-        }
-    }
+    private final String idKind;
+    private final String fixedId;
+    private final String idNamespace;
 
-    private Submodel buildSubmodelHeader(ObjectNode header) {
-        DefaultSubmodel.Builder b = new DefaultSubmodel.Builder();
-        // id (idStrategy)
-        b.id(resolveId(header.path("idStrategy")));
+    private final ElementTemplate elements = new ElementTemplate();
+
+    /**
+     * @deprecated only for {@link #build(ObjectNode, Map, JsonNode)}; use {@link #Aas4jSubmodelFactory(ObjectNode)}
+     */
+    @Deprecated
+    public Aas4jSubmodelFactory() {
+        this(JsonNodeFactory.instance.objectNode());
+    }
 
-        if (header.hasNonNull("idShort")) b.idShort(header.get("idShort").asText());
-        if (header.hasNonNull("kind")) b.kind(parseKind(header.get("kind").asText()));
+    public Aas4jSubmodelFactory(ObjectNode header) {
+        this(header, List.of());
+    }
 
-        if (header.hasNonNull("semanticId")) {
-            b.semanticId(globalRef(header.get("semanticId").asText()));
-        }
+    /**
+     * @param listPaths element paths whose array values become SubmodelElementLists (e.g. forEach targets);
+     *                  initialElements with {@code type: SubmodelElementList} are added automatically
+     */
+    public Aas4jSubmodelFactory(ObjectNode header, Collection<String> listPaths) {
+        this.idShort = header.hasNonNull("idShort") ? header.get("idShort").asText() : null;
+        this.kind = header.hasNonNull("kind") ? parseKind(header.get("kind").asText()) : null;
+        this.semanticId = header.hasNonNull("semanticId") ? globalRef(header.get("semanticId").asText()) : null;
 
         if (header.has("administration") && header.get("administration").isObject()) {
             ObjectNode a = (ObjectNode) header.get("administration");
             DefaultAdministrativeInformation.Builder ab = new DefaultAdministrativeInformation.Builder();
             if (a.hasNonNull("version")) ab.version(a.get("version").asText());
             if (a.hasNonNull("revision")) ab.revision(a.get("revision").asText());
-            b.administration(ab.build());
+            this.administration = ab.build();
+        } else {
+            this.administration = null;
         }
 
         if (header.has("displayName") && header.get("displayName").isArray()) {
@@ -54,7 +71,9 @@ public class Aas4jSubmodelFactory {
                         .text(n.path("text").asText(""))
                         .build());
             }
-            b.displayName(list);
+            this.displayName = Collections.unmodifiableList(list);
+        } else {
+            this.displayName = null;
         }
 
         if (header.has("description") && header.get("description").isArray()) {
@@ -65,9 +84,122 @@ public class Aas4jSubmodelFactory {
                         .text(n.path("text").asText(""))
                         .build());
             }
-            b.description(list);
+            this.description = Collections.unmodifiableList(list);
+        } else {
+            this.description = null;
         }
 
+        JsonNode idStrategy = header.path("idStrategy");
+        this.idKind = idStrategy.isObject() ? idStrategy.path("kind").asText("") : "";
+        this.fixedId = resolveFixedId(idStrategy, idKind);
+        // Scope by namespace (default: submodel semanticId) so aspects of the same part get distinct ids
+        this.idNamespace = idStrategy.path("namespace").asText(header.path("semanticId").asText(""));
+
+        if (header.has("initialElements") && header.get("initialElements").isArray()) {
+            for (JsonNode ie : header.get("initialElements")) {
+                String path = ie.path("path").asText(null);
+                if (path == null) continue;
+                ElementTemplate t = elements;
+                for (String segment : path.split("/")) t = t.child(segment);
+                t.valueType = mapValueType(ie.path("valueType").asText(null));
+                if (ie.has("semanticId")) t.semanticId = globalRef(ie.get("semanticId").asText());
+                if ("SubmodelElementList".equals(ie.path("type").asText())) t.list = true;
+            }
+        }
+        for (String path : listPaths) {
+            ElementTemplate t = elements;
+            for (String segment : path.split("/")) t = t.child(segment);
+            t.list = true;
+        }
+    }
+
+    /** True when the same payload always gets the same submodel id (explicit/urn ids or nameBased). */
+    boolean deterministicIds() {
+        return fixedId != null || "nameBased".equals(idKind);
+    }
+
+    /** The configured idStrategy kind, "" when none is set (a random id is generated). */
+    String idKind() {
+        return idKind;
+    }
+
+    /**
+     * @param idFields resolved payload values for a {@code nameBased} idStrategy (ignored by other kinds);
+     *                 null when they did not resolve, which gives a random id
+     */
+    public ObjectNode build(JsonNode mappedValues, List<String> idFields) {
+        return serialize(buildSubmodel(mappedValues, idFields), "Submodel");
+    }
+
+    /**
+     * Builds a submodel from a header and per-path element metadata ({@code valueType}, {@code semanticId}),
+     * resolving both on every call.
+     *
+     * @deprecated compile the header once with {@link #Aas4jSubmodelFactory(ObjectNode)} (metadata as its
+     * {@code initialElements}) and call {@link #build(JsonNode, List)}
+     */
+    @Deprecated
+    public ObjectNode build(ObjectNode header, Map<String, ObjectNode> metaByPath, JsonNode mappedValues) {
+        ObjectNode template = header.deepCopy();
+        ArrayNode initialElements = template.putArray("initialElements");
+        for (Map.Entry<String, ObjectNode> e : metaByPath.entrySet()) {
+            ObjectNode element = initialElements.addObject().put("path", e.getKey());
+            if (e.getValue().hasNonNull("valueType")) element.set("valueType", e.getValue().get("valueType"));
+            if (e.getValue().hasNonNull("semanticId")) element.set("semanticId", e.getValue().get("semanticId"));
+        }
+        return new Aas4jSubmodelFactory(template).build(mappedValues, List.of());
+    }
+
+    public Submodel buildSubmodel(JsonNode mappedValues, List<String> idFields) {
+        MappingEvents.SubmodelBuild event = new MappingEvents.SubmodelBuild();
+        event.begin();
+        Submodel submodel = buildSubmodelHeader(idFields);
+        List<SubmodelElement> list = new ArrayList<>();
+        addElementsRecursive(list, "", mappedValues, elements);
+        submodel.setSubmodelElements(list);
+        event.end();
+        if (event.shouldCommit()) {
+            event.idShort = idShort;
+            event.elements = list.size();
+            event.commit();
+        }
+        return submodel;
+    }
+
+    public static ObjectNode buildEnvironment(List<Submodel> submodels) {
+        Environment env = new DefaultEnvironment.Builder()
+                .submodels(submodels)
+                .build();
+        return serialize(env, "Environment");
+    }
+
+    private static ObjectNode serialize(Object model, String kind) {
+        MappingEvents.Serialization event = new MappingEvents.Serialization();
+        event.begin();
+        try {
+            return (ObjectNode) SERIALIZER.toNode(model);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize AAS4J " + kind, e);
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.kind = kind;
+                event.commit();
+            }
+        }
+    }
+
+    private Submodel buildSubmodelHeader(List<String> idFields) {
+        DefaultSubmodel.Builder b = new DefaultSubmodel.Builder();
+        // id (idStrategy)
+        b.id(resolveId(idFields));
+
+        if (idShort != null) b.idShort(idShort);
+        if (kind != null) b.kind(kind);
+        if (semanticId != null) b.semanticId(semanticId);
+        if (administration != null) b.administration(administration);
+        if (displayName != null) b.displayName(displayName);
+        if (description != null) b.description(description);
         return b.build();
     }
 
@@ -79,20 +211,28 @@ public class Aas4jSubmodelFactory {
         };
     }
 
-    private String resolveId(JsonNode idStrategy) {
-        if (idStrategy != null && idStrategy.isObject()) {
-            String kind = idStrategy.path("kind").asText("");
-            if ("explicit".equals(kind)) {
-                return idStrategy.path("id").asText(UUID.randomUUID().toString());
-            }
-            if ("urn".equals(kind)) {
-                JsonNode urn = idStrategy.path("urn");
-                String ns = urn.path("namespace").asText("");
-                String suffix = urn.path("suffix").asText("");
-                if (!ns.isEmpty() && !suffix.isEmpty()) return ns + ":" + suffix;
-            }
+    // explicit/urn ids do not depend on the payload; null → generated per build
+    private String resolveFixedId(JsonNode idStrategy, String kind) {
+        if ("explicit".equals(kind) && idStrategy.hasNonNull("id")) {
+            return idStrategy.get("id").asText();
+        }
+        if ("urn".equals(kind)) {
+            JsonNode urn = idStrategy.path("urn");
+            String ns = urn.path("namespace").asText("");
+            String suffix = urn.path("suffix").asText("");
+            if (!ns.isEmpty() && !suffix.isEmpty()) return ns + ":" + suffix;
         }
-        return "urn:uuid:" + UUID.randomUUID();
+        return null;
+    }
+
+    private String resolveId(List<String> idFields) {
+        if (fixedId != null) return fixedId;
+        return switch (idKind) {
+            case "explicit" -> UUID.randomUUID().toString();
+            case "uuidv7" -> "urn:uuid:" + SubmodelIds.uuidV7();
+            case "nameBased" -> "urn:uuid:" + (idFields != null ? SubmodelIds.nameBased(idNamespace, idFields) : UUID.randomUUID());
+            default -> "urn:uuid:" + UUID.randomUUID();
+        };
     }
 
     private Reference globalRef(String value) {
@@ -106,13 +246,13 @@ public class Aas4jSubmodelFactory {
                 .build();
     }
 
-    private void addElementsRecursive(List<SubmodelElement> list, String prefix, JsonNode node, Map<String, ObjectNode> metaByPath) {
+    private void addElementsRecursive(List<SubmodelElement> list, String idShort, JsonNode node, ElementTemplate template) {
         if (node == null || node.isNull()) return;
         if (node.isObject()) {
             Iterator<Map.Entry<String, JsonNode>> it = node.properties().iterator();
             while (it.hasNext()) {
                 Map.Entry<String, JsonNode> e = it.next();
-                String path = prefix.isEmpty() ? e.getKey() : prefix + "/" + e.getKey();
+                ElementTemplate meta = template == null ? null : template.children.get(e.getKey());
                 JsonNode v = e.getValue();
                 if (v.isObject()) {
                     // create collection and recurse
@@ -121,34 +261,54 @@ public class Aas4jSubmodelFactory {
                             .value(new ArrayList<>())
                             .build();
                     // attach semantics if provided
-                    ObjectNode meta = metaByPath.get(path);
-                    if (meta != null && meta.has("semanticId")) {
-                        coll.setSemanticId(globalRef(meta.get("semanticId").asText()));
+                    if (meta != null && meta.semanticId != null) {
+                        coll.setSemanticId(meta.semanticId);
                     }
                     List<SubmodelElement> childList = coll.getValue();
-                    addElementsRecursive(childList, path, v, metaByPath);
+                    addElementsRecursive(childList, e.getKey(), v, meta);
                     list.add(coll);
+                } else if (v.isArray() && meta != null && meta.list) {
+                    list.add(buildList(e.getKey(), v, meta));
                 } else {
-                    list.add(buildProperty(e.getKey(), path, v, metaByPath));
+                    list.add(buildProperty(e.getKey(), v, meta));
                 }
             }
         } else {
             // scalar at the root
-            list.add(buildProperty(prefix, prefix, node, metaByPath));
+            list.add(buildProperty(idShort, node, template));
         }
     }
 
-    private SubmodelElement buildProperty(String idShort, String path, JsonNode value, Map<String, ObjectNode> metaByPath) {
+    // List items carry no idShort (AASd-120); the list's template children describe each item's fields
+    private SubmodelElement buildList(String idShort, JsonNode items, ElementTemplate meta) {
+        List<SubmodelElement> values = new ArrayList<>(items.size());
+        boolean collections = true;
+        for (JsonNode item : items) {
+            if (item.isObject()) {
+                List<SubmodelElement> childList = new ArrayList<>();
+                addElementsRecursive(childList, null, item, meta);
+                values.add(new DefaultSubmodelElementCollection.Builder().value(childList).build());
+            } else {
+                collections = false;
+                values.add(buildProperty(null, item, meta));
+            }
+        }
+        DefaultSubmodelElementList.Builder lb = new DefaultSubmodelElementList.Builder()
+                .idShort(idShort)
+                .orderRelevant(true)
+                .typeValueListElement(collections ? AasSubmodelElements.SUBMODEL_ELEMENT_COLLECTION : AasSubmodelElements.PROPERTY)
+                .value(values);
+        if (!collections && meta.valueType != null) lb.valueTypeListElement(meta.valueType);
+        if (meta.semanticId != null) lb.semanticId(meta.semanticId);
+        return lb.build();
+    }
+
+    private SubmodelElement buildProperty(String idShort, JsonNode value, ElementTemplate meta) {
         DefaultProperty.Builder pb = new DefaultProperty.Builder();
         pb.idShort(idShort);
 
-        ObjectNode meta = metaByPath.get(path);
-        DataTypeDefXsd vt = mapValueType(meta == null ? null : meta.path("valueType").asText(null));
-        if (vt != null) pb.valueType(vt);
-
-        if (meta != null && meta.has("semanticId")) {
-            pb.semanticId(globalRef(meta.get("semanticId").asText()));
-        }
+        if (meta != null && meta.valueType != null) pb.valueType(meta.valueType);
+        if (meta != null && meta.semanticId != null) pb.semanticId(meta.semanticId);
 
         if (value == null || value.isNull()) {
             pb.value(null);
@@ -174,4 +334,16 @@ public class Aas4jSubmodelFactory {
             default -> DataTypeDefXsd.STRING;
         };
     }
+
+    // initialElements metadata indexed by path segment, so lookups follow the value tree without building path strings
+    private static final class ElementTemplate {
+        private final Map<String, ElementTemplate> children = new HashMap<>();
+        private DataTypeDefXsd valueType;
+        private Reference semanticId;
+        private boolean list;
+
+        private ElementTemplate child(String segment) {
+            return children.computeIfAbsent(segment, k -> new ElementTemplate());
+        }
+    }
 }
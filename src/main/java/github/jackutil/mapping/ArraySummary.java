@@ -0,0 +1,154 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+/**
+ * Count, sum, min and max of the numeric entries of an array, computed in one pass over primitives
+ * (no boxing, no {@link java.math.BigDecimal}). Numbers, numeric strings (as accepted by {@code toNumber})
+ * and booleans (1/0) count; every other entry is non-numeric. A scalar is summarized as a one-element array.
+ * <p>
+ * Results stay integral (long) while every entry is an integer and the sum fits in a long.
+ */
+public final class ArraySummary {
+    private static final JsonNodeFactory F = JsonNodeFactory.instance;
+
+    private int count;
+    private int nonNumeric;
+    private int nulls;
+    private boolean integral = true;
+    private long longSum;
+    private long longMin = Long.MAX_VALUE;
+    private long longMax = Long.MIN_VALUE;
+    private double sum;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    private ArraySummary() {}
+
+    /** @param node an array, a single value, or null/NullNode (summarized as empty) */
+    public static ArraySummary of(JsonNode node) {
+        ArraySummary s = new ArraySummary();
+        if (node == null || node.isNull() || node.isMissingNode()) return s;
+        if (node.isArray()) {
+            for (int i = 0, n = node.size(); i < n; i++) s.add(node.get(i));
+        } else {
+            s.add(node);
+        }
+        return s;
+    }
+
+    private void add(JsonNode e) {
+        if (e.isIntegralNumber() && e.canConvertToLong()) {
+            addLong(e.longValue());
+        } else if (e.isNumber()) {
+            addDouble(e.doubleValue());
+        } else if (e.isBoolean()) {
+            addLong(e.booleanValue() ? 1 : 0);
+        } else if (e.isTextual()) {
+            addText(e.textValue().trim());
+        } else {
+            if (e.isNull()) nulls++;
+            nonNumeric++;
+        }
+    }
+
+    private void addLong(long v) {
+        if (integral) {
+            long s = longSum + v;
+            // overflow when both operands have the sign the result lacks
+            if (((longSum ^ s) & (v ^ s)) < 0) integral = false;
+            else longSum = s;
+        }
+        if (v < longMin) longMin = v;
+        if (v > longMax) longMax = v;
+        addDouble0(v);
+    }
+
+    private void addDouble(double v) {
+        integral = false;
+        addDouble0(v);
+    }
+
+    private void addDouble0(double v) {
+        count++;
+        sum += v;
+        if (v < min) min = v;
+        if (v > max) max = v;
+    }
+
+    private void addText(String s) {
+        switch (numericKind(s)) {
+            case 1 -> {
+                if (s.length() <= 18) addLong(Long.parseLong(s));
+                else addDouble(Double.parseDouble(s));
+            }
+            case 2 -> addDouble(Double.parseDouble(s));
+            default -> nonNumeric++;
+        }
+    }
+
+    // 0 = not a decimal number, 1 = integer, 2 = decimal with fraction or exponent.
+    // Same grammar as new BigDecimal(s) so the aggregates agree with toNumber; avoids an exception per bad entry.
+    private static int numericKind(String s) {
+        int i = 0;
+        int n = s.length();
+        if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+        int digits = 0;
+        while (i < n && Character.isDigit(s.charAt(i))) { i++; digits++; }
+        boolean fraction = false;
+        if (i < n && s.charAt(i) == '.') {
+            fraction = true;
+            i++;
+            while (i < n && Character.isDigit(s.charAt(i))) { i++; digits++; }
+        }
+        if (digits == 0) return 0;
+        boolean exponent = false;
+        if (i < n && (s.charAt(i) == 'e' || s.charAt(i) == 'E')) {
+            exponent = true;
+            i++;
+            if (i < n && (s.charAt(i) == '+' || s.charAt(i) == '-')) i++;
+            int expDigits = 0;
+            while (i < n && Character.isDigit(s.charAt(i))) { i++; expDigits++; }
+            if (expDigits == 0) return 0;
+        }
+        if (i != n) return 0;
+        return fraction || exponent ? 2 : 1;
+    }
+
+    /** Numeric entries used by the aggregates. */
+    public int count() {
+        return count;
+    }
+
+    /** Entries that are not null, numeric or not. */
+    public int entries() {
+        return count + nonNumeric - nulls;
+    }
+
+    /** Entries skipped because they are not numbers (null, objects, arrays, non-numeric text). */
+    public int nonNumeric() {
+        return nonNumeric;
+    }
+
+    /** 0 for an empty array. */
+    public JsonNode sum() {
+        return integral ? F.numberNode(longSum) : F.numberNode(sum);
+    }
+
+    /** null when there are no numeric entries. */
+    public JsonNode avg() {
+        return count == 0 ? NullNode.getInstance() : F.numberNode(sum / count);
+    }
+
+    public JsonNode min() {
+        if (count == 0) return NullNode.getInstance();
+        return integral ? F.numberNode(longMin) : F.numberNode(min);
+    }
+
+    public JsonNode max() {
+        if (count == 0) return NullNode.getInstance();
+        return integral ? F.numberNode(longMax) : F.numberNode(max);
+    }
+}
@@ -0,0 +1,328 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import static github.jackutil.mapping.JsonUtils.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The ops documented in {@code docs/aml-config.md}. Arguments are read and validated in {@link #create};
+ * the returned transforms only do per-value work.
+ */
+final class BuiltinTransforms implements TransformProvider {
+    private static final JsonNodeFactory F = JsonNodeFactory.instance;
+    private static final Set<String> OPS = Set.of("toInteger", "toNumber", "round", "trim", "defaultIfEmpty",
+            "unitConvert", "parseDateTime", "toZoned", "clamp", "lookup", "regexExtract", "concat",
+            "hash", "pad", "base64", "format", "sum", "avg", "min", "max", "count", "distinct");
+
+    @Override
+    public Set<String> ops() {
+        return OPS;
+    }
+
+    @Override
+    public Transform create(String op, JsonNode t) {
+        return switch (op) {
+            case "toInteger" -> (v, ctx) -> valueToNode(toInteger(v));
+            case "toNumber" -> (v, ctx) -> valueToNode(toNumber(v));
+            case "round" -> {
+                int places = t.path("places").asInt(0);
+                yield (v, ctx) -> JsonUtils.round(v, places);
+            }
+            case "trim" -> (v, ctx) -> JsonUtils.trim(v);
+            case "defaultIfEmpty" -> {
+                JsonNode def = t.get("value");
+                yield (v, ctx) -> JsonUtils.defaultIfEmpty(v, def);
+            }
+            case "unitConvert" -> {
+                String from = t.path("from").asText("");
+                String to = t.path("to").asText("");
+                yield (v, ctx) -> JsonUtils.unitConvert(v, from, to);
+            }
+            case "parseDateTime" -> (v, ctx) -> JsonUtils.parseDateTime(v);
+            case "toZoned" -> {
+                ZoneId zone = zone(t.path("zone").asText("UTC"));
+                yield (v, ctx) -> JsonUtils.toZoned(v, zone);
+            }
+            case "clamp" -> {
+                double min = t.path("min").asDouble(Double.NEGATIVE_INFINITY);
+                double max = t.path("max").asDouble(Double.POSITIVE_INFINITY);
+                yield (v, ctx) -> JsonUtils.clamp(v, min, max);
+            }
+            case "lookup" -> {
+                Map<String, String> table = new HashMap<>();
+                t.path("table").properties().forEach(e -> table.put(e.getKey(), e.getValue().asText()));
+                yield (v, ctx) -> JsonUtils.lookup(v, table);
+            }
+            case "regexExtract" -> {
+                // PatternSyntaxException is an IllegalArgumentException and surfaces as a config error
+                Pattern pattern = Pattern.compile(t.path("pattern").asText(""));
+                int group = t.path("group").asInt(0);
+                yield (v, ctx) -> JsonUtils.regexExtract(v, pattern, group);
+            }
+            case "concat" -> concat(t);
+            case "hash" -> hash(t);
+            case "pad" -> pad(t);
+            case "base64" -> base64(t);
+            case "format" -> format(t);
+            case "sum", "avg", "min", "max", "count" -> aggregate(op, t);
+            case "distinct" -> (v, ctx) -> distinct(v);
+            default -> throw new IllegalArgumentException("Unknown transform op '" + op + "'");
+        };
+    }
+
+    /**
+     * {@code sum|avg|min|max {nonNumeric=ignore|report}} over the array the value holds. Non-numeric entries are
+     * skipped; with {@code report} the rule also gets an error naming how many were skipped.
+     * {@code count} is the number of non-null entries, numeric or not, so it also counts the result of
+     * {@code distinct}; as it skips nothing, it takes no {@code nonNumeric}.
+     */
+    private static Transform aggregate(String op, JsonNode t) {
+        if ("count".equals(op)) {
+            if (t.has("nonNumeric")) throw new IllegalArgumentException("count: nonNumeric does not apply, every non-null entry is counted");
+            return (v, ctx) -> v.isNull() || v.isMissingNode() ? NullNode.getInstance() : F.numberNode(ctx.summarize(v).entries());
+        }
+        boolean report = switch (t.path("nonNumeric").asText("ignore")) {
+            case "ignore" -> false;
+            case "report" -> true;
+            default -> throw new IllegalArgumentException(op + ": nonNumeric must be 'ignore' or 'report'");
+        };
+        Function<ArraySummary, JsonNode> result = switch (op) {
+            case "sum" -> ArraySummary::sum;
+            case "avg" -> ArraySummary::avg;
+            case "min" -> ArraySummary::min;
+            default -> ArraySummary::max;
+        };
+        return (v, ctx) -> {
+            if (v.isNull() || v.isMissingNode()) return NullNode.getInstance();
+            ArraySummary s = ctx.summarize(v);
+            if (report && s.nonNumeric() > 0) ctx.report(s.nonNumeric() + " non-numeric entries skipped");
+            return result.apply(s);
+        };
+    }
+
+    // Distinct entries in first-seen order; nulls are dropped and a scalar becomes a one-element array
+    private static JsonNode distinct(JsonNode v) {
+        if (v.isNull() || v.isMissingNode()) return NullNode.getInstance();
+        ArrayNode out = F.arrayNode();
+        Set<JsonNode> seen = new HashSet<>();
+        for (JsonNode e : v.isArray() ? v : F.arrayNode().add(v)) {
+            if (!e.isNull() && seen.add(e)) out.add(e);
+        }
+        return out;
+    }
+
+    private static ZoneId zone(String id) {
+        try {
+            return ZoneId.of(id);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("toZoned: unknown zone '" + id + "'");
+        }
+    }
+
+    private static Transform concat(JsonNode t) {
+        String sep = t.path("separator").asText("");
+        List<JsonNode> parts = new ArrayList<>();
+        t.path("parts").forEach(parts::add);
+        return (v, ctx) -> {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < parts.size(); i++) {
+                JsonNode part = parts.get(i);
+                JsonNode pv = part.isTextual() ? part : ctx.select(part);
+                if (i > 0) sb.append(sep);
+                sb.append(pv.isNull() ? "" : pv.asText(""));
+            }
+            return F.textNode(sb.toString());
+        };
+    }
+
+    // Text a string-oriented op works on: scalars as text, objects/arrays as compact JSON, null for missing
+    private static String text(JsonNode v) {
+        if (v == null || v.isNull() || v.isMissingNode()) return null;
+        return v.isValueNode() ? v.asText() : v.toString();
+    }
+
+    private static Transform hash(JsonNode t) {
+        String algorithm = switch (t.path("algorithm").asText("sha256").toLowerCase(Locale.ROOT)) {
+            case "sha256", "sha-256" -> "SHA-256";
+            case "sha512", "sha-512" -> "SHA-512";
+            case "sha1", "sha-1" -> "SHA-1";
+            case "md5" -> "MD5";
+            default -> throw new IllegalArgumentException("hash: unsupported algorithm '" + t.path("algorithm").asText() + "'");
+        };
+        boolean base64 = switch (t.path("encoding").asText("hex")) {
+            case "hex" -> false;
+            case "base64" -> true;
+            default -> throw new IllegalArgumentException("hash: encoding must be 'hex' or 'base64'");
+        };
+        // MessageDigest is not thread-safe; one instance per mapping thread avoids the provider lookup per value
+        ThreadLocal<MessageDigest> digests = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        digests.get();
+        HexFormat hex = HexFormat.of();
+        return (v, ctx) -> {
+            String s = text(v);
+            if (s == null) return NullNode.getInstance();
+            byte[] d = digests.get().digest(s.getBytes(StandardCharsets.UTF_8));
+            return F.textNode(base64 ? Base64.getEncoder().encodeToString(d) : hex.formatHex(d));
+        };
+    }
+
+    private static Transform pad(JsonNode t) {
+        if (!t.path("length").canConvertToInt() || t.path("length").asInt() < 0) {
+            throw new IllegalArgumentException("pad: 'length' must be a non-negative integer");
+        }
+        int length = t.get("length").asInt();
+        String fill = t.path("char").asText(" ");
+        if (fill.length() != 1) throw new IllegalArgumentException("pad: 'char' must be a single character");
+        char c = fill.charAt(0);
+        boolean left = switch (t.path("side").asText("left")) {
+            case "left" -> true;
+            case "right" -> false;
+            default -> throw new IllegalArgumentException("pad: side must be 'left' or 'right'");
+        };
+        return (v, ctx) -> {
+            String s = text(v);
+            if (s == null) return NullNode.getInstance();
+            if (s.length() >= length) return F.textNode(s);
+            String padding = String.valueOf(c).repeat(length - s.length());
+            return F.textNode(left ? padding + s : s + padding);
+        };
+    }
+
+    private static Transform base64(JsonNode t) {
+        boolean urlSafe = t.path("urlSafe").asBoolean(false);
+        return switch (t.path("mode").asText("encode")) {
+            case "encode" -> {
+                Base64.Encoder encoder = urlSafe ? Base64.getUrlEncoder() : Base64.getEncoder();
+                yield (v, ctx) -> {
+                    String s = text(v);
+                    return s == null ? NullNode.getInstance() : F.textNode(encoder.encodeToString(s.getBytes(StandardCharsets.UTF_8)));
+                };
+            }
+            case "decode" -> {
+                Base64.Decoder decoder = urlSafe ? Base64.getUrlDecoder() : Base64.getDecoder();
+                yield (v, ctx) -> {
+                    String s = text(v);
+                    if (s == null) return NullNode.getInstance();
+                    try {
+                        return F.textNode(new String(decoder.decode(s.trim()), StandardCharsets.UTF_8));
+                    } catch (IllegalArgumentException e) {
+                        return NullNode.getInstance();
+                    }
+                };
+            }
+            default -> throw new IllegalArgumentException("base64: mode must be 'encode' or 'decode'");
+        };
+    }
+
+    // %[index$][flags][width][.precision]conversion; '%%' and '%n' take no argument
+    private static final Pattern FORMAT_SPEC = Pattern.compile("%(\\d+\\$|<)?[-#+ 0,(]*\\d*(\\.\\d+)?([tT]?[a-zA-Z%])");
+
+    private enum ArgKind { INTEGRAL, FLOATING, OTHER }
+
+    /**
+     * {@code format {pattern, args?}}: {@link String#format} with {@link Locale#ROOT}. The value is the first
+     * argument, {@code args} selectors follow. Each argument is coerced to what its conversion expects
+     * ({@code %d} → integer, {@code %f} → decimal), so "12" formats with both {@code %05d} and {@code %.2f}.
+     */
+    private static Transform format(JsonNode t) {
+        if (!t.path("pattern").isTextual()) throw new IllegalArgumentException("format: 'pattern' is required");
+        String pattern = t.get("pattern").asText();
+        List<JsonNode> args = new ArrayList<>();
+        t.path("args").forEach(args::add);
+        ArgKind[] kinds = argKinds(pattern, 1 + args.size());
+
+        Object[] sample = new Object[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            sample[i] = switch (kinds[i]) {
+                case INTEGRAL -> 0L;
+                case FLOATING -> BigDecimal.ZERO;
+                case OTHER -> "";
+            };
+        }
+        try {
+            String.format(Locale.ROOT, pattern, sample);
+        } catch (IllegalFormatConversionException e) {
+            // e.g. %c with the text sample; the real value decides at map time
+        } catch (IllegalFormatException e) {
+            throw new IllegalArgumentException("format: invalid pattern '" + pattern + "': " + e.getMessage());
+        }
+
+        return (v, ctx) -> {
+            Object[] values = new Object[kinds.length];
+            for (int i = 0; i < kinds.length; i++) {
+                JsonNode n = i == 0 ? v : ctx.select(args.get(i - 1));
+                Object arg = formatArg(n, kinds[i]);
+                if (arg == null && kinds[i] != ArgKind.OTHER) return NullNode.getInstance();
+                values[i] = arg;
+            }
+            try {
+                return F.textNode(String.format(Locale.ROOT, pattern, values));
+            } catch (IllegalFormatException e) {
+                return NullNode.getInstance();
+            }
+        };
+    }
+
+    private static ArgKind[] argKinds(String pattern, int available) {
+        ArgKind[] kinds = new ArgKind[available];
+        Arrays.fill(kinds, ArgKind.OTHER);
+        Matcher m = FORMAT_SPEC.matcher(pattern);
+        int next = 0;
+        int last = -1;
+        while (m.find()) {
+            String conversion = m.group(3);
+            if (conversion.equals("%") || conversion.equals("n")) continue;
+            int index;
+            if (m.group(1) == null) index = next++;
+            else if (m.group(1).equals("<")) index = last;
+            else index = Integer.parseInt(m.group(1).substring(0, m.group(1).length() - 1)) - 1;
+            if (index < 0 || index >= available) {
+                throw new IllegalArgumentException("format: pattern '" + pattern + "' refers to argument " + (index + 1)
+                        + " but only " + available + " are given (the value plus 'args')");
+            }
+            last = index;
+            kinds[index] = switch (conversion) {
+                case "d", "o", "x", "X" -> ArgKind.INTEGRAL;
+                case "e", "E", "f", "g", "G" -> ArgKind.FLOATING;
+                default -> ArgKind.OTHER;
+            };
+        }
+        return kinds;
+    }
+
+    private static Object formatArg(JsonNode n, ArgKind kind) {
+        if (n == null || n.isNull() || n.isMissingNode()) return null;
+        switch (kind) {
+            case INTEGRAL, FLOATING -> {
+                Number num = toNumber(n);
+                if (num == null) return null;
+                BigDecimal bd = num instanceof BigDecimal b ? b : new BigDecimal(num.toString());
+                return kind == ArgKind.FLOATING ? bd : bd.setScale(0, RoundingMode.HALF_UP).toBigInteger();
+            }
+            default -> {
+                if (n.isBoolean()) return n.booleanValue();
+                return text(n);
+            }
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A config prepared for repeated mapping: everything that does not depend on the payload is resolved once.
+ * Obtain via {@link MappingEngine#compile(JsonNode)}; instances are immutable and safe to share between threads.
+ * A bundle config ({@code submodels: [...]}) compiles into one part per entry.
+ */
+public final class CompiledMapping {
+    private final JsonNode config;
+    final String label;
+    final List<String> configErrors;
+    /** {@link #configErrors} as {@link MappingError}s, reported with every payload */
+    final List<MappingError> configErrorRecords;
+    final ObjectNode variables;
+    final List<CompiledRule> rules;
+    final Aas4jSubmodelFactory submodel;
+    final List<String> idFields;
+    final List<CompiledMapping> parts;
+    final String discriminatorPath;
+    final List<JsonNode> discriminatorValues;
+    /** Parsed JsonPaths of this config; shared by its bundle entries and its pruned selections. */
+    final JsonPaths paths;
+    // benign race: recomputed at most once per thread
+    private long estimatedBytes;
+    // pruned plans by selection key (see select); a few per config in practice, bounded against ad-hoc selections
+    private final Map<String, CompiledMapping> selections = Collections.synchronizedMap(new LinkedHashMap<>(4, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CompiledMapping> eldest) {
+            return size() > MAX_SELECTIONS;
+        }
+    });
+    private static final int MAX_SELECTIONS = 64;
+
+    CompiledMapping(JsonNode config, TransformRegistry transforms) {
+        this(config, transforms, null, new JsonPaths());
+        paths.addAll(config);
+    }
+
+    // bundleVariables is non-null only for bundle entries
+    private CompiledMapping(JsonNode config, TransformRegistry transforms, ObjectNode bundleVariables, JsonPaths paths) {
+        this.config = config;
+        this.paths = paths;
+        this.label = config.hasNonNull("name") ? config.get("name").asText() : config.path("submodel").path("idShort").asText("submodel");
+
+        List<String> errors = new ArrayList<>();
+        JsonNode apiVersion = config.path("apiVersion");
+        // bundle entries may omit apiVersion and inherit the bundle's
+        if (bundleVariables == null || config.has("apiVersion")) {
+            if (!apiVersion.isTextual() || !"aasx.map/v1".equals(apiVersion.asText())) {
+                errors.add("Unsupported or missing apiVersion: " + apiVersion.asText());
+            }
+        }
+
+        ObjectNode own = config.path("variables").isObject() ? (ObjectNode) config.path("variables") : null;
+        if (bundleVariables != null && !bundleVariables.isEmpty()) {
+            ObjectNode merged = bundleVariables.deepCopy();
+            if (own != null) merged.setAll(own);
+            this.variables = merged;
+        } else {
+            this.variables = own != null ? own : JsonNodeFactory.instance.objectNode();
+        }
+        ArrayNode rules = config.path("rules").isArray() ? (ArrayNode) config.path("rules") : null;
+        // transform ops are looked up and their arguments parsed here, not per payload
+        this.rules = rules == null ? null : CompiledRule.compileAll(rules, "rules", transforms, errors);
+
+        if (config.path("submodels").isArray()) {
+            List<CompiledMapping> compiledParts = new ArrayList<>();
+            for (JsonNode entry : config.get("submodels")) {
+                CompiledMapping part = new CompiledMapping(entry, transforms, variables, paths);
+                if (part.submodel == null) {
+                    errors.add("Bundle entry '" + part.label + "' has no submodel header; skipped");
+                    continue;
+                }
+                compiledParts.add(part);
+            }
+            this.parts = Collections.unmodifiableList(compiledParts);
+        } else {
+            this.parts = null;
+        }
+        // discriminator: { jsonPath, equals } or { jsonPath, values: [...] }; used by ConfigRouter
+        JsonNode discriminator = config.path("discriminator");
+        if (discriminator.hasNonNull("jsonPath")) {
+            List<JsonNode> values = new ArrayList<>();
+            if (discriminator.has("equals")) values.add(discriminator.get("equals"));
+            for (JsonNode v : discriminator.path("values")) values.add(v);
+            if (values.isEmpty()) errors.add("Discriminator needs 'equals' or 'values'");
+            this.discriminatorPath = discriminator.get("jsonPath").asText();
+            this.discriminatorValues = Collections.unmodifiableList(values);
+        } else {
+            this.discriminatorPath = null;
+            this.discriminatorValues = List.of();
+        }
+        this.configErrors = Collections.unmodifiableList(errors);
+        List<MappingError> records = new ArrayList<>(errors.size());
+        for (String e : errors) records.add(MappingError.of(MappingError.Code.CONFIG, e));
+        this.configErrorRecords = Collections.unmodifiableList(records);
+
+        if (config.has("submodel") && config.get("submodel").isObject()) {
+            ObjectNode header = (ObjectNode) config.get("submodel");
+            List<String> listPaths = new ArrayList<>();
+            collectForEachTargets(rules, "", listPaths);
+            this.submodel = new Aas4jSubmodelFactory(header, listPaths);
+            JsonNode idStrategy = header.path("idStrategy");
+            List<String> fields = new ArrayList<>();
+            if ("nameBased".equals(idStrategy.path("kind").asText(""))) {
+                for (JsonNode f : idStrategy.path("fields")) fields.add(f.asText());
+            }
+            this.idFields = Collections.unmodifiableList(fields);
+            paths.addAll(idFields);
+        } else {
+            this.submodel = null;
+            this.idFields = List.of();
+        }
+    }
+
+    // Pruned copy: shares everything payload-independent with the full plan
+    private CompiledMapping(CompiledMapping full, JsonNode config, ObjectNode variables, List<CompiledRule> rules, List<CompiledMapping> parts) {
+        this.config = config;
+        this.label = full.label;
+        this.configErrors = full.configErrors;
+        this.configErrorRecords = full.configErrorRecords;
+        this.variables = variables;
+        this.rules = rules;
+        this.submodel = full.submodel;
+        this.idFields = full.idFields;
+        this.parts = parts;
+        this.discriminatorPath = full.discriminatorPath;
+        this.discriminatorValues = full.discriminatorValues;
+        this.paths = full.paths;
+    }
+
+    /**
+     * A plan that evaluates only the rules writing the given targets, plus the variables they use, so mapping
+     * costs in proportion to the fields requested. Patterns are target paths; {@code *} matches within one
+     * segment and a pattern covers everything below it ({@code Order/Id}, {@code Derived/*}). Predicates,
+     * fallbacks, transforms and constraints of the kept rules are unchanged, and the submodel header is kept.
+     * For a bundle every entry is pruned and entries with no selected target are left out.
+     * <p>
+     * Pruned plans are cached on this plan per distinct selection (pattern order does not matter).
+     *
+     * @throws IllegalArgumentException when no pattern is given, or no rule target matches
+     */
+    public CompiledMapping select(Collection<String> targets) {
+        TargetSelection selection = TargetSelection.parse(targets);
+        CompiledMapping cached = selections.get(selection.key);
+        if (cached != null) return cached;
+        CompiledMapping pruned = prune(selection);
+        if (pruned == null) throw new IllegalArgumentException("No rule target matches " + selection.key);
+        selections.put(selection.key, pruned);
+        return pruned;
+    }
+
+    private CompiledMapping prune(TargetSelection selection) {
+        if (parts != null) {
+            List<CompiledMapping> kept = new ArrayList<>();
+            ArrayNode entries = JsonNodeFactory.instance.arrayNode();
+            for (CompiledMapping part : parts) {
+                CompiledMapping p = part.prune(selection);
+                if (p == null) continue;
+                kept.add(p);
+                entries.add(p.config);
+            }
+            if (kept.isEmpty()) return null;
+            ObjectNode prunedConfig = JsonNodeFactory.instance.objectNode();
+            prunedConfig.setAll((ObjectNode) config);
+            prunedConfig.set("submodels", entries);
+            return new CompiledMapping(this, prunedConfig, variables, rules, Collections.unmodifiableList(kept));
+        }
+        List<CompiledRule> kept = selection.prune(rules);
+        if (kept.isEmpty()) return null;
+        ObjectNode keptVariables = TargetSelection.referencedVariables(kept, variables);
+        // a config of its own, so caches keyed by config (MappingResultCache) tell the plans apart
+        ObjectNode prunedConfig = JsonNodeFactory.instance.objectNode();
+        prunedConfig.setAll((ObjectNode) config);
+        ArrayNode ruleNodes = prunedConfig.putArray("rules");
+        for (CompiledRule r : kept) ruleNodes.add(r.node);
+        if (config.has("variables")) prunedConfig.set("variables", keptVariables);
+        return new CompiledMapping(this, prunedConfig, keptVariables, Collections.unmodifiableList(kept), null);
+    }
+
+    // forEach targets (including nested ones) become SubmodelElementLists in AAS output
+    private static void collectForEachTargets(ArrayNode rules, String prefix, List<String> out) {
+        if (rules == null) return;
+        for (JsonNode rule : rules) {
+            if (!rule.has("forEach") || !rule.hasNonNull("target")) continue;
+            String path = prefix + rule.get("target").asText();
+            out.add(path);
+            if (rule.path("rules").isArray()) collectForEachTargets((ArrayNode) rule.get("rules"), path + "/", out);
+        }
+    }
+
+    /**
+     * @return null when the same payload always maps to the same output, otherwise why not
+     *         (a random or time-based submodel id)
+     */
+    String nondeterminism() {
+        if (parts != null) {
+            for (CompiledMapping part : parts) {
+                String reason = part.nondeterminism();
+                if (reason != null) return "[" + part.label + "] " + reason;
+            }
+            return null;
+        }
+        if (submodel == null || submodel.deterministicIds()) return null;
+        String kind = submodel.idKind();
+        return "idStrategy '" + (kind.isEmpty() ? "default (uuidv4)" : kind) + "' generates a new id per mapping";
+    }
+
+    /**
+     * Rough heap retained by this compiled config, for weight-bounded caches: the config tree (which the
+     * compiled form keeps) plus about as much again for what is derived from it (bound transforms and their
+     * lookup tables, compiled patterns, submodel element templates), plus the parsed {@link #paths}.
+     */
+    long estimatedBytes() {
+        long bytes = estimatedBytes;
+        if (bytes == 0) {
+            bytes = 2 * JsonUtils.estimateBytes(config) + 256L * countRules(rules);
+            if (parts != null) for (CompiledMapping part : parts) bytes += 256L * countRules(part.rules);
+            estimatedBytes = bytes;
+        }
+        return bytes + paths.estimatedBytes();
+    }
+
+    private static int countRules(List<CompiledRule> rules) {
+        if (rules == null) return 0;
+        int n = rules.size();
+        for (CompiledRule r : rules) n += countRules(r.rules);
+        return n;
+    }
+
+    /** {@code model.uploadId}, the tenant/upload the config belongs to; null when absent. */
+    public String getUploadId() {
+        JsonNode id = config.path("model").path("uploadId");
+        return id.isTextual() ? id.asText() : null;
+    }
+
+    public JsonNode getConfig() {
+        return config;
+    }
+
+    public String getName() {
+        return label;
+    }
+
+    public boolean isBundle() {
+        return parts != null;
+    }
+}
@@ -0,0 +1,186 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled configs for many tenants, keyed by {@code model.uploadId}. A config is loaded from the
+ * {@link ConfigSource} and compiled the first time its upload id is requested, then kept until it is
+ * invalidated or evicted.
+ * <p>
+ * The registry is bounded by the summed {@link CompiledMapping#estimatedBytes() estimated retained size} of
+ * its configs, not by their number, so a few tenants with large lookup tables do not crowd out thousands of
+ * small configs unnoticed; the least recently used config is evicted first. A config heavier than the whole
+ * bound is compiled and returned but not kept.
+ * <p>
+ * Concurrent requests for an upload id that is not compiled yet share one load and compile (single-flight);
+ * a failed compile is not cached, so the next request tries again. Lookups, compiles and evictions are
+ * reported to the engine's {@link MappingMetrics}. Thread-safe.
+ */
+public final class CompiledMappingRegistry {
+    private static final Pattern SAFE_ID = Pattern.compile("[A-Za-z0-9_-][A-Za-z0-9._-]*");
+
+    /** Loads the config of one upload id; returns null when there is none. */
+    @FunctionalInterface
+    public interface ConfigSource {
+        JsonNode load(String uploadId) throws IOException;
+
+        /**
+         * Configs stored as {@code <dir>/<uploadId>.yaml}, {@code .yml} or {@code .json}. Upload ids that
+         * are not plain file names (path separators, leading dot) are treated as unknown.
+         */
+        static ConfigSource directory(Path dir) {
+            return uploadId -> {
+                if (!SAFE_ID.matcher(uploadId).matches()) return null;
+                for (String ext : new String[]{".yaml", ".yml", ".json"}) {
+                    Path file = dir.resolve(uploadId + ext);
+                    if (Files.isRegularFile(file)) return ConfigLoader.readConfig(file);
+                }
+                return null;
+            };
+        }
+    }
+
+    private final MappingEngine engine;
+    private final ConfigSource source;
+    private final long maxBytes;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<CompiledMapping>> compiling = new HashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long compiles;
+    private long compileNanos;
+    private long evictions;
+
+    public CompiledMappingRegistry(MappingEngine engine, ConfigSource source, long maxBytes) {
+        if (maxBytes < 1) throw new IllegalArgumentException("maxBytes must be positive");
+        this.engine = Objects.requireNonNull(engine, "engine");
+        this.source = Objects.requireNonNull(source, "source");
+        this.maxBytes = maxBytes;
+    }
+
+    public record Stats(long hits, long misses, long compiles, long compileNanos, long evictions, int entries, long bytes) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(CompiledMapping compiled, long bytes) {}
+
+    /**
+     * @throws IllegalArgumentException when the source has no config for {@code uploadId}, or the config
+     *                                  declares a different {@code model.uploadId}
+     * @throws UncheckedIOException     when the source fails to read it
+     */
+    public CompiledMapping get(String uploadId) {
+        Objects.requireNonNull(uploadId, "uploadId");
+        CompletableFuture<CompiledMapping> pending;
+        boolean owner = false;
+        synchronized (this) {
+            Entry entry = entries.get(uploadId);
+            if (entry != null) {
+                hits++;
+                engine.metrics().planCacheHit();
+                return entry.compiled;
+            }
+            misses++;
+            pending = compiling.get(uploadId);
+            if (pending == null) {
+                pending = new CompletableFuture<>();
+                compiling.put(uploadId, pending);
+                owner = true;
+            }
+        }
+        engine.metrics().planCacheMiss();
+        if (owner) compile(uploadId, pending);
+        try {
+            return pending.join();
+        } catch (CompletionException e) {
+            // rethrow the compiling caller's exception in every waiter
+            if (e.getCause() instanceof RuntimeException r) throw r;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+
+    /** Maps the payload with the config of {@code uploadId}. */
+    public MappingResult map(String uploadId, JsonNode payload) {
+        return engine.map(get(uploadId), payload);
+    }
+
+    /**
+     * Drops the compiled config of {@code uploadId} (e.g. after the tenant uploaded a new one). A compile
+     * already running for it still answers its waiters but is not kept.
+     */
+    public synchronized void invalidate(String uploadId) {
+        Entry removed = entries.remove(uploadId);
+        if (removed != null) bytes -= removed.bytes;
+        compiling.remove(uploadId);
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, compiles, compileNanos, evictions, entries.size(), bytes);
+    }
+
+    private void compile(String uploadId, CompletableFuture<CompiledMapping> pending) {
+        try {
+            long start = System.nanoTime();
+            JsonNode config;
+            try {
+                config = source.load(uploadId);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot load config for upload '" + uploadId + "'", e);
+            }
+            if (config == null) throw new IllegalArgumentException("No config for upload '" + uploadId + "'");
+            CompiledMapping compiled = engine.compile(config);
+            String declared = compiled.getUploadId();
+            if (declared != null && !declared.equals(uploadId)) {
+                throw new IllegalArgumentException("Config for upload '" + uploadId + "' declares model.uploadId '" + declared + "'");
+            }
+            long nanos = System.nanoTime() - start;
+            engine.metrics().planCompiled(nanos);
+            synchronized (this) {
+                compiles++;
+                compileNanos += nanos;
+                long size = compiled.estimatedBytes();
+                if (compiling.remove(uploadId, pending) && size <= maxBytes) put(uploadId, new Entry(compiled, size));
+            }
+            pending.complete(compiled);
+        } catch (Throwable e) {
+            // Errors too (StackOverflowError on a deeply nested config): waiters must never be left blocked
+            synchronized (this) {
+                compiling.remove(uploadId, pending);
+            }
+            pending.completeExceptionally(e);
+        }
+    }
+
+    // caller holds the lock
+    private void put(String uploadId, Entry entry) {
+        Entry previous = entries.put(uploadId, entry);
+        if (previous != null) bytes -= previous.bytes;
+        bytes += entry.bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+            engine.metrics().planEvicted();
+        }
+    }
+}
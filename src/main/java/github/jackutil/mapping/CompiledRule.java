@@ -0,0 +1,118 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import github.jackutil.mapping.TransformRegistry.BoundTransform;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * One rule with its transform chains bound by the {@link TransformRegistry}; the rule's other parts
+ * (predicate, selectors, constraints) are still read from {@link #node} by the engine.
+ */
+final class CompiledRule {
+    private static final BoundTransform[] NONE = new BoundTransform[0];
+    private static final Transform INVALID = (value, ctx) -> NullNode.getInstance();
+
+    final JsonNode node;
+    /** Position in its rule list and config location ({@code rules[3].rules[0]}), for {@link MappingError}s */
+    final int index;
+    final String location;
+    final String target;
+    /** Reported on every evaluation, as before compilation; {@link #target} is null when set. */
+    final String invalid;
+    final BoundTransform[] sourceTransforms;
+    final BoundTransform[][] fallbackTransforms;
+    final BoundTransform[] transforms;
+    /** forEach body, null for plain rules */
+    final List<CompiledRule> rules;
+    /** "trim>toNumber>round": source transforms, then rule transforms (for JFR events) */
+    final String opChain;
+
+    private CompiledRule(JsonNode node, int index, String location, String target, String invalid, BoundTransform[] sourceTransforms,
+                         BoundTransform[][] fallbackTransforms, BoundTransform[] transforms, List<CompiledRule> rules) {
+        this.node = node;
+        this.index = index;
+        this.location = location;
+        this.target = target;
+        this.invalid = invalid;
+        this.sourceTransforms = sourceTransforms;
+        this.fallbackTransforms = fallbackTransforms;
+        this.transforms = transforms;
+        this.rules = rules;
+        StringJoiner ops = new StringJoiner(">");
+        for (BoundTransform t : sourceTransforms) ops.add(t.op());
+        for (BoundTransform t : transforms) ops.add(t.op());
+        this.opChain = ops.toString();
+    }
+
+    /**
+     * @param location e.g. {@code rules[2]}; prefixes binding errors
+     * @param errors   receives unknown ops and invalid transform arguments (the step then gives null)
+     */
+    static List<CompiledRule> compileAll(JsonNode rules, String location, TransformRegistry registry, List<String> errors) {
+        List<CompiledRule> compiled = new ArrayList<>(rules.size());
+        int i = 0;
+        for (JsonNode rule : rules) {
+            compiled.add(compile(rule, i, location + "[" + i + "]", registry, errors));
+            i++;
+        }
+        return Collections.unmodifiableList(compiled);
+    }
+
+    private static CompiledRule compile(JsonNode rule, int index, String location, TransformRegistry registry, List<String> errors) {
+        if (!rule.isObject()) {
+            return new CompiledRule(rule, index, location, null, "Rule is not an object: " + rule, NONE, new BoundTransform[0][], NONE, null);
+        }
+        String target = rule.path("target").asText(null);
+        if (target == null || target.isBlank()) {
+            return new CompiledRule(rule, index, location, null, "Rule missing target", NONE, new BoundTransform[0][], NONE, null);
+        }
+
+        BoundTransform[] source = bind(rule.path("source").path("transform"), location + ".source.transform", registry, errors);
+        JsonNode fallback = rule.path("fallback");
+        BoundTransform[][] fallbacks = new BoundTransform[fallback.isArray() ? fallback.size() : 0][];
+        for (int i = 0; i < fallbacks.length; i++) {
+            fallbacks[i] = bind(fallback.get(i).path("transform"), location + ".fallback[" + i + "].transform", registry, errors);
+        }
+        BoundTransform[] transforms = bind(rule.path("transform"), location + ".transform", registry, errors);
+        List<CompiledRule> nested = rule.has("forEach") && rule.path("rules").isArray()
+                ? compileAll(rule.get("rules"), location + ".rules", registry, errors)
+                : null;
+        return new CompiledRule(rule, index, location, target, null, source, fallbacks, transforms, nested);
+    }
+
+    /** This forEach rule with only {@code nested} as its body (see {@link TargetSelection}); transforms stay bound. */
+    CompiledRule withRules(List<CompiledRule> nested) {
+        ObjectNode copy = JsonNodeFactory.instance.objectNode();
+        copy.setAll((ObjectNode) node);
+        ArrayNode body = copy.putArray("rules");
+        for (CompiledRule r : nested) body.add(r.node);
+        return new CompiledRule(copy, index, location, target, invalid, sourceTransforms, fallbackTransforms, transforms, List.copyOf(nested));
+    }
+
+    private static BoundTransform[] bind(JsonNode transforms, String location, TransformRegistry registry, List<String> errors) {
+        if (!transforms.isArray() || transforms.isEmpty()) return NONE;
+        List<BoundTransform> bound = new ArrayList<>(transforms.size());
+        int i = 0;
+        for (JsonNode t : transforms) {
+            String loc = location + "[" + i++ + "]";
+            if (!t.isObject()) continue;
+            try {
+                bound.add(registry.bind(t));
+            } catch (IllegalArgumentException e) {
+                // the value must not pass through unconverted, as if the step had succeeded
+                errors.add("Invalid transform at " + loc + ": " + e.getMessage() + "; step gives null");
+                bound.add(new BoundTransform(t.path("op").asText(""), INVALID));
+            }
+        }
+        return bound.toArray(NONE);
+    }
+}
@@ -0,0 +1,101 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Result of {@link ConfigAnalyzer#analyze}: every selector with its classification and estimated cost,
+ * findings (deep scans, filters in predicates, duplicates, unused variables, invalid paths) and the
+ * estimated per-payload cost in JsonPath node visits.
+ */
+public final class ConfigAnalysis {
+    public enum Severity { INFO, WARNING, ERROR }
+
+    /**
+     * @param location where the selector appears, e.g. {@code rules[3].fallback[0]}
+     * @param kind     SIMPLE, WILDCARD, FILTER, DEEP_SCAN or INVALID (the most expensive segment wins)
+     * @param cost     estimated node visits for one evaluation
+     * @param evaluations estimated evaluations per payload (forEach bodies run once per element)
+     */
+    public record Selector(String location, String jsonPath, String kind, double cost, double evaluations) {}
+
+    public record Finding(Severity severity, String code, String location, String message) {}
+
+    private final List<Selector> selectors;
+    private final List<Finding> findings;
+    private final double estimatedCost;
+
+    ConfigAnalysis(List<Selector> selectors, List<Finding> findings, double estimatedCost) {
+        this.selectors = List.copyOf(selectors);
+        this.findings = List.copyOf(findings);
+        this.estimatedCost = estimatedCost;
+    }
+
+    public List<Selector> getSelectors() {
+        return selectors;
+    }
+
+    public List<Finding> getFindings() {
+        return findings;
+    }
+
+    /** Estimated JsonPath node visits per payload; repeated reads of a path within one context count once (they are cached). */
+    public double getEstimatedCost() {
+        return estimatedCost;
+    }
+
+    public boolean hasErrors() {
+        return findings.stream().anyMatch(f -> f.severity() == Severity.ERROR);
+    }
+
+    /**
+     * @throws IllegalArgumentException when the estimated per-payload cost is above {@code budget}
+     */
+    public void requireWithinBudget(double budget) {
+        if (estimatedCost > budget) {
+            throw new IllegalArgumentException(String.format(Locale.ROOT,
+                    "Estimated cost %.0f exceeds budget %.0f (node visits per payload)", estimatedCost, budget));
+        }
+    }
+
+    public ObjectNode toJson() {
+        JsonNodeFactory f = JsonNodeFactory.instance;
+        ObjectNode root = f.objectNode();
+        root.put("estimatedCost", estimatedCost);
+        ArrayNode fs = root.putArray("findings");
+        for (Finding x : findings) {
+            ObjectNode n = fs.addObject();
+            n.put("severity", x.severity().name());
+            n.put("code", x.code());
+            n.put("location", x.location());
+            n.put("message", x.message());
+        }
+        ArrayNode ss = root.putArray("selectors");
+        for (Selector s : selectors) {
+            ObjectNode n = ss.addObject();
+            n.put("location", s.location());
+            n.put("jsonPath", s.jsonPath());
+            n.put("kind", s.kind());
+            n.put("cost", s.cost());
+            n.put("evaluations", s.evaluations());
+        }
+        return root;
+    }
+
+    public String toText() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "Estimated cost: %.0f node visits per payload (%d selectors)%n", estimatedCost, selectors.size()));
+        if (findings.isEmpty()) {
+            sb.append("No findings.");
+            return sb.toString();
+        }
+        for (Finding x : findings) {
+            sb.append(String.format(Locale.ROOT, "%-7s %-20s %s: %s%n", x.severity(), x.code(), x.location(), x.message()));
+        }
+        return sb.toString().stripTrailing();
+    }
+}
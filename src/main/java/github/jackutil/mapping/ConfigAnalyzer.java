@@ -0,0 +1,280 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import github.jackutil.mapping.ConfigAnalysis.Finding;
+import github.jackutil.mapping.ConfigAnalysis.Selector;
+import github.jackutil.mapping.ConfigAnalysis.Severity;
+
+import java.util.*;
+
+/**
+ * Static analysis of an AML config: classifies every JsonPath selector (rules, fallbacks, projections,
+ * concat parts, format args, predicates, forEach, variables, discriminator, nameBased id fields), flags expensive or
+ * suspicious ones and estimates the per-payload cost without running the config.
+ * <p>
+ * Cost is counted in estimated JsonPath node visits. Reads of the same path within one payload context
+ * count once because the engine caches them; forEach bodies are charged once per assumed element. Plain deep
+ * scans ({@code $..field}) share a field index per context: only the first is charged the payload walk.
+ */
+public class ConfigAnalyzer {
+    private final int assumedArraySize;
+    private final int assumedPayloadNodes;
+
+    public ConfigAnalyzer() {
+        this(10, 500);
+    }
+
+    /**
+     * @param assumedArraySize    elements assumed behind each wildcard, filter and forEach
+     * @param assumedPayloadNodes nodes a deep scan ({@code $..x}) is assumed to visit
+     */
+    public ConfigAnalyzer(int assumedArraySize, int assumedPayloadNodes) {
+        this.assumedArraySize = Math.max(1, assumedArraySize);
+        this.assumedPayloadNodes = Math.max(1, assumedPayloadNodes);
+    }
+
+    public ConfigAnalysis analyze(JsonNode config) {
+        Walk walk = new Walk();
+        Map<String, JsonNode> variables = new LinkedHashMap<>();
+        Map<String, String> definedAt = new LinkedHashMap<>();
+        collectVariables(config, "", variables, definedAt);
+
+        walk.discriminator(config, "");
+        walk.config(config, "", variables);
+        if (config.path("submodels").isArray()) {
+            int i = 0;
+            for (JsonNode entry : config.get("submodels")) {
+                String prefix = "submodels[" + i++ + "].";
+                Map<String, JsonNode> entryVariables = new LinkedHashMap<>(variables);
+                collectVariables(entry, prefix, entryVariables, definedAt);
+                walk.discriminator(entry, prefix);
+                walk.config(entry, prefix, entryVariables);
+            }
+        }
+
+        for (Map.Entry<String, String> v : definedAt.entrySet()) {
+            String name = v.getKey().substring(v.getKey().indexOf('\u0000') + 1);
+            if (!walk.usedVariables.contains(name)) {
+                walk.finding(Severity.WARNING, "UNUSED_VARIABLE", v.getValue(), "Variable '" + name + "' is never referenced");
+            }
+        }
+        walk.duplicates();
+        return new ConfigAnalysis(walk.selectors, walk.findings, walk.cost);
+    }
+
+    // key: prefix + NUL + name, so bundle entries may define a variable of the same name
+    private static void collectVariables(JsonNode config, String prefix, Map<String, JsonNode> variables, Map<String, String> definedAt) {
+        JsonNode vars = config.path("variables");
+        if (!vars.isObject()) return;
+        vars.properties().forEach(e -> {
+            variables.put(e.getKey(), e.getValue());
+            definedAt.put(prefix + '\u0000' + e.getKey(), prefix + "variables." + e.getKey());
+        });
+    }
+
+    private final class Walk {
+        private final List<Selector> selectors = new ArrayList<>();
+        private final List<Finding> findings = new ArrayList<>();
+        private final Set<String> usedVariables = new HashSet<>();
+        // context + NUL + jsonPath → locations; a context is the root payload or one forEach body
+        private final Map<String, List<String>> reads = new LinkedHashMap<>();
+        // context → location of the plain deep scan whose walk builds that context's field index
+        private final Map<String, String> fieldIndexes = new HashMap<>();
+        private double cost;
+
+        private void config(JsonNode config, String prefix, Map<String, JsonNode> variables) {
+            if (config.path("rules").isArray()) rules(config.get("rules"), prefix + "rules", "$", 1, variables);
+
+            JsonNode idStrategy = config.path("submodel").path("idStrategy");
+            if ("nameBased".equals(idStrategy.path("kind").asText(""))) {
+                int i = 0;
+                for (JsonNode field : idStrategy.path("fields")) {
+                    path(prefix + "submodel.idStrategy.fields[" + i++ + "]", field.asText(), "$", 1, false);
+                }
+            }
+        }
+
+        private void discriminator(JsonNode config, String prefix) {
+            JsonNode d = config.path("discriminator");
+            if (d.hasNonNull("jsonPath")) path(prefix + "discriminator", d.get("jsonPath").asText(), "$", 1, true);
+        }
+
+        private void rules(JsonNode rules, String location, String context, double evaluations, Map<String, JsonNode> variables) {
+            Map<String, String> targets = new HashMap<>();
+            int k = 0;
+            for (JsonNode rule : rules) {
+                String loc = location + "[" + k++ + "]";
+                if (!rule.isObject()) continue;
+                String target = rule.path("target").asText(null);
+                if (target != null) {
+                    String first = targets.putIfAbsent(target, loc);
+                    if (first != null) {
+                        finding(Severity.WARNING, "DUPLICATE_TARGET", loc, "Target '" + target + "' is also written by " + first + "; the later rule wins");
+                    }
+                }
+                if (rule.has("when")) predicate(rule.get("when"), loc + ".when", context, evaluations);
+
+                if (rule.has("forEach")) {
+                    selector(rule.get("forEach"), loc + ".forEach", context, evaluations, variables, false);
+                    if (rule.path("rules").isArray()) {
+                        rules(rule.get("rules"), loc + ".rules", loc, evaluations * assumedArraySize, variables);
+                    }
+                    continue;
+                }
+                if (rule.has("source")) selector(rule.get("source"), loc + ".source", context, evaluations, variables, false);
+                int i = 0;
+                for (JsonNode fb : rule.path("fallback")) {
+                    selector(fb, loc + ".fallback[" + i++ + "]", context, evaluations, variables, false);
+                }
+                rule.path("project").properties().forEach(e ->
+                        selector(e.getValue(), loc + ".project." + e.getKey(), context, evaluations, variables, false));
+                transforms(rule.path("transform"), loc + ".transform", context, evaluations, variables);
+            }
+        }
+
+        private void transforms(JsonNode transforms, String location, String context, double evaluations, Map<String, JsonNode> variables) {
+            int i = 0;
+            for (JsonNode t : transforms) {
+                int j = 0;
+                for (JsonNode part : t.path("parts")) {
+                    if (part.isObject()) selector(part, location + "[" + i + "].parts[" + j + "]", context, evaluations, variables, false);
+                    j++;
+                }
+                j = 0;
+                for (JsonNode arg : t.path("args")) {
+                    selector(arg, location + "[" + i + "].args[" + j++ + "]", context, evaluations, variables, false);
+                }
+                i++;
+            }
+        }
+
+        private void predicate(JsonNode predicate, String location, String context, double evaluations) {
+            if (!predicate.isObject()) return;
+            for (String group : List.of("any", "all")) {
+                int i = 0;
+                for (JsonNode atom : predicate.path(group)) {
+                    if (atom.hasNonNull("jsonPath")) {
+                        path(location + "." + group + "[" + i + "]", atom.get("jsonPath").asText(), context, evaluations, true);
+                    }
+                    i++;
+                }
+            }
+            if (predicate.has("not")) predicate(predicate.get("not"), location + ".not", context, evaluations);
+        }
+
+        private void selector(JsonNode sel, String location, String context, double evaluations, Map<String, JsonNode> variables, boolean hot) {
+            selector(sel, location, context, evaluations, variables, hot, new HashSet<>());
+        }
+
+        private void selector(JsonNode sel, String location, String context, double evaluations, Map<String, JsonNode> variables, boolean hot, Set<String> resolving) {
+            if (sel == null || !sel.isObject()) return;
+            if (sel.hasNonNull("jsonPath")) {
+                path(location, sel.get("jsonPath").asText(), context, evaluations, hot);
+            } else if (sel.has("var")) {
+                String name = sel.path("var").asText("");
+                usedVariables.add(name);
+                JsonNode def = variables.get(name);
+                if (def == null) {
+                    finding(Severity.ERROR, "UNKNOWN_VARIABLE", location, "Variable '" + name + "' is not defined");
+                } else if (!resolving.add(name)) {
+                    finding(Severity.ERROR, "VARIABLE_CYCLE", location, "Variable '" + name + "' refers to itself");
+                } else {
+                    // a variable is read against the payload root, once per payload, wherever it is used
+                    selector(def, location + " (var " + name + ")", "$", 1, variables, hot, resolving);
+                }
+            }
+            transforms(sel.path("transform"), location + ".transform", context, evaluations, variables);
+        }
+
+        private void path(String location, String jsonPath, String context, double evaluations, boolean hot) {
+            List<JsonPathTokenizer.Token> tokens;
+            try {
+                tokens = JsonPathTokenizer.tokenize(jsonPath);
+            } catch (IllegalArgumentException e) {
+                selectors.add(new Selector(location, jsonPath, "INVALID", 0, evaluations));
+                finding(Severity.ERROR, "INVALID_PATH", location, e.getMessage() + "; the engine reads it as null");
+                return;
+            }
+            String kind = "SIMPLE";
+            double nodes = 1;
+            double visits = 0;
+            for (JsonPathTokenizer.Token t : tokens) {
+                switch (t.kind()) {
+                    case FIELD, INDEX, FUNCTION -> visits += nodes;
+                    case UNION -> {
+                        visits += nodes;
+                        nodes *= t.text().split(",").length;
+                    }
+                    case WILDCARD -> {
+                        visits += nodes;
+                        nodes *= assumedArraySize;
+                        if (kind.equals("SIMPLE")) kind = "WILDCARD";
+                    }
+                    case FILTER -> {
+                        // every candidate element is visited and the filter expression evaluated against it
+                        visits += nodes * assumedArraySize * 2;
+                        nodes *= assumedArraySize;
+                        if (!kind.equals("DEEP_SCAN")) kind = "FILTER";
+                    }
+                    case DEEP_SCAN -> {
+                        visits += nodes * assumedPayloadNodes;
+                        nodes = Math.max(1, nodes * assumedPayloadNodes / 50.0);
+                        kind = "DEEP_SCAN";
+                    }
+                }
+            }
+            List<String> seen = reads.computeIfAbsent(context + '\u0000' + jsonPath, k -> new ArrayList<>());
+            boolean plainScan = JsonPaths.deepScanField(jsonPath) != null;
+            String indexedBy = null;
+            if (plainScan) {
+                indexedBy = fieldIndexes.putIfAbsent(context, location);
+                // a lookup in the index costs about its result
+                if (indexedBy != null) visits = nodes;
+            }
+            double cost = Math.max(1, visits);
+            selectors.add(new Selector(location, jsonPath, kind, cost, evaluations));
+
+            if (seen.isEmpty()) this.cost += cost * evaluations;
+            seen.add(location);
+
+            switch (kind) {
+                case "DEEP_SCAN" -> {
+                    if (indexedBy != null) {
+                        finding(Severity.INFO, "DEEP_SCAN", location,
+                                "'" + jsonPath + "' is answered from the field index built for " + indexedBy);
+                    } else if (plainScan) {
+                        finding(Severity.WARNING, "DEEP_SCAN", location,
+                                "'" + jsonPath + "' walks the whole payload once to index its field names; further plain deep scans use the index");
+                    } else {
+                        finding(Severity.WARNING, "DEEP_SCAN", location,
+                                "'" + jsonPath + "' walks the whole payload" + (hot ? " on every predicate evaluation" : ""));
+                    }
+                }
+                case "FILTER" -> finding(hot ? Severity.WARNING : Severity.INFO, hot ? "FILTER_IN_PREDICATE" : "FILTER", location,
+                        "'" + jsonPath + "' evaluates a filter for every candidate element" + (hot ? " before the rule can be skipped" : ""));
+                default -> {}
+            }
+        }
+
+        private void duplicates() {
+            for (Map.Entry<String, List<String>> e : reads.entrySet()) {
+                // several uses of the same variable already share one definition
+                Set<String> origins = new HashSet<>();
+                for (String location : e.getValue()) {
+                    int var = location.indexOf(" (var ");
+                    origins.add(var < 0 ? location : location.substring(var));
+                }
+                if (origins.size() < 2) continue;
+                String jsonPath = e.getKey().substring(e.getKey().indexOf('\u0000') + 1);
+                finding(Severity.INFO, "DUPLICATE_PATH", e.getValue().get(0),
+                        "'" + jsonPath + "' is selected " + e.getValue().size() + " times (read once per payload; consider a variable): "
+                                + String.join(", ", e.getValue().subList(1, e.getValue().size())));
+            }
+        }
+
+        private void finding(Severity severity, String code, String location, String message) {
+            findings.add(new Finding(severity, code, location, message));
+        }
+    }
+}
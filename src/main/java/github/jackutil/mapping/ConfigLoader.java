@@ -2,12 +2,21 @@ package github.jackutil.mapping;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashSet;
 import java.util.Locale;
+import java.util.Set;
+import java.util.StringJoiner;
 
 public final class ConfigLoader {
     private static final ObjectMapper JSON = new ObjectMapper();
@@ -15,20 +24,116 @@ public final class ConfigLoader {
 
     private ConfigLoader() {}
 
+    /** @throws IllegalArgumentException when bundle includes form a cycle */
     public static JsonNode readConfig(Path path) throws IOException {
+        return readConfig(path, new LinkedHashSet<>());
+    }
+
+    // including: the files of the current include chain, outermost first (a file may be included twice, not recursively)
+    private static JsonNode readConfig(Path path, Set<Path> including) throws IOException {
+        Path file = path.toAbsolutePath().normalize();
+        if (!including.add(file)) {
+            StringJoiner cycle = new StringJoiner(" -> ", "Bundle include cycle: ", " -> " + file.getFileName());
+            boolean inCycle = false;
+            for (Path p : including) {
+                inCycle |= p.equals(file);
+                if (inCycle) cycle.add(p.getFileName().toString());
+            }
+            throw new IllegalArgumentException(cycle.toString());
+        }
         String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
 
         byte[] bytes = Files.readAllBytes(path);
 
-        if (name.endsWith(".yaml") || name.endsWith(".yml")) {
-            return YAML.readTree(bytes);
-        }
+        JsonNode config = (name.endsWith(".yaml") || name.endsWith(".yml")) ? YAML.readTree(bytes) : JSON.readTree(bytes);
+        resolveIncludes(config, file, including);
+        including.remove(file);
+        return config;
+    }
+
+    /**
+     * Read a config and reject it when its estimated per-payload cost (see {@link ConfigAnalyzer}) is above
+     * {@code costBudget}, so an expensive config change fails at load time instead of in production.
+     *
+     * @throws IllegalArgumentException when the config is over budget
+     */
+    public static JsonNode readConfig(Path path, double costBudget) throws IOException {
+        JsonNode config = readConfig(path);
+        new ConfigAnalyzer().analyze(config).requireWithinBudget(costBudget);
+        return config;
+    }
 
-        return JSON.readTree(bytes);
+    // Bundle entries may be { include: "other.config.yaml" }, resolved relative to the bundle file. An included bundle
+    // is flattened into this one: its entries take the include's place, each carrying the included bundle's shared
+    // variables under its own (the entry still wins on name clashes, this bundle's variables come last)
+    private static void resolveIncludes(JsonNode config, Path path, Set<Path> including) throws IOException {
+        if (!(config.path("submodels") instanceof ArrayNode entries)) return;
+        Path dir = path.getParent();
+        ArrayNode resolved = entries.arrayNode(entries.size());
+        for (JsonNode entry : entries) {
+            if (entry.size() != 1 || !entry.hasNonNull("include")) {
+                resolved.add(entry);
+                continue;
+            }
+            JsonNode included = readConfig(dir.resolve(entry.get("include").asText()), including);
+            if (!(included.path("submodels") instanceof ArrayNode nested)) {
+                resolved.add(included);
+                continue;
+            }
+            JsonNode shared = included.path("variables");
+            for (JsonNode part : nested) {
+                if (shared.isObject() && !shared.isEmpty() && part instanceof ObjectNode obj) {
+                    ObjectNode merged = ((ObjectNode) shared).deepCopy();
+                    if (obj.path("variables").isObject()) merged.setAll((ObjectNode) obj.get("variables"));
+                    obj.set("variables", merged);
+                }
+                resolved.add(part);
+            }
+        }
+        entries.removeAll();
+        entries.addAll(resolved);
     }
 
+    /** Payload files of at least this size are parsed from a memory map rather than a heap copy (64 MiB). */
+    public static final long MAPPED_READ_THRESHOLD = 64L << 20;
+
     public static JsonNode readJson(Path path) throws IOException {
-        return JSON.readTree(Files.readAllBytes(path));
+        return readJson(path, MAPPED_READ_THRESHOLD);
     }
-}
 
+    /**
+     * Read a JSON payload. Files of at least {@code mappedThreshold} bytes are streamed into the parser from a
+     * read-only memory map, so the file's bytes never sit on the heap as one array (only the tree does);
+     * smaller files are read in one call, which is cheaper for them.
+     */
+    public static JsonNode readJson(Path path, long mappedThreshold) throws IOException {
+        MappingEvents.PayloadParse event = new MappingEvents.PayloadParse();
+        event.begin();
+        JsonNode payload;
+        long size;
+        boolean mapped;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            size = channel.size();
+            // a single array cannot hold more than ~2 GiB anyway
+            mapped = size >= mappedThreshold || size > Integer.MAX_VALUE - 8;
+            if (mapped) {
+                try (InputStream in = new MappedInputStream(channel)) {
+                    payload = JSON.readTree(in);
+                }
+            } else {
+                byte[] bytes = new byte[(int) size];
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining() && channel.read(buffer) >= 0) {}
+                payload = JSON.readTree(bytes, 0, buffer.position());
+            }
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.path = path.toString();
+            event.bytes = size;
+            event.mapped = mapped;
+            event.commit();
+        }
+        return payload;
+    }
+}
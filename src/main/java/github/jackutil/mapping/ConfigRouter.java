@@ -0,0 +1,108 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.*;
+
+/**
+ * Dispatches a mixed payload stream to the configs that apply to each message.
+ * Each config may declare a {@code discriminator} ({@code { jsonPath, equals }} or {@code { jsonPath, values: [...] }});
+ * configs are indexed by discriminator value, so routing costs one read and one hash lookup per distinct
+ * discriminator path instead of evaluating every config. Configs without a discriminator match every message.
+ * Immutable after construction and safe to share between threads.
+ */
+public final class ConfigRouter {
+    private final MappingEngine engine;
+    // discriminator paths, and the rule paths of configs mapped through map(payload), which share one context
+    private final JsonPaths paths = new JsonPaths();
+    private final List<Route> routes = new ArrayList<>();
+    private final int[] catchAll;
+    private final List<CompiledMapping> configs;
+
+    public ConfigRouter(MappingEngine engine, Collection<CompiledMapping> configs) {
+        this.engine = engine;
+        this.configs = List.copyOf(configs);
+
+        Map<String, Route> byPath = new LinkedHashMap<>();
+        List<Integer> unconditional = new ArrayList<>();
+        for (int i = 0; i < this.configs.size(); i++) {
+            CompiledMapping c = this.configs.get(i);
+            if (c.discriminatorPath == null) {
+                unconditional.add(i);
+                continue;
+            }
+            Route route = byPath.computeIfAbsent(c.discriminatorPath, Route::new);
+            paths.get(c.discriminatorPath);
+            for (JsonNode value : c.discriminatorValues) {
+                route.add(value, i, c);
+            }
+        }
+        routes.addAll(byPath.values());
+        this.catchAll = unconditional.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * @return the configs that apply to the payload, in registration order
+     */
+    public List<CompiledMapping> route(JsonNode payload) {
+        return resolve(new PayloadContext(payload, engine, paths));
+    }
+
+    /**
+     * Map the payload with every matching config; all of them share one payload read cache.
+     */
+    public List<MappingResult> map(JsonNode payload) {
+        PayloadContext ctx = new PayloadContext(payload, engine, paths);
+        List<CompiledMapping> matched = resolve(ctx);
+        List<MappingResult> results = new ArrayList<>(matched.size());
+        for (CompiledMapping c : matched) results.add(engine.map(c, ctx));
+        return results;
+    }
+
+    private List<CompiledMapping> resolve(PayloadContext ctx) {
+        // Common case: a single discriminator path and no catch-all configs → return the indexed list as-is
+        if (routes.size() == 1 && catchAll.length == 0) {
+            Target hit = routes.get(0).lookup(ctx);
+            return hit == null ? List.of() : hit.configs;
+        }
+        BitSet matched = new BitSet(configs.size());
+        for (int i : catchAll) matched.set(i);
+        for (Route route : routes) {
+            Target hit = route.lookup(ctx);
+            if (hit != null) for (int i : hit.indexes) matched.set(i);
+        }
+        List<CompiledMapping> out = new ArrayList<>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) out.add(configs.get(i));
+        return out;
+    }
+
+    private static final class Route {
+        private final String jsonPath;
+        private final Map<JsonNode, Target> byValue = new HashMap<>();
+
+        private Route(String jsonPath) {
+            this.jsonPath = jsonPath;
+        }
+
+        private void add(JsonNode value, int index, CompiledMapping config) {
+            Target t = byValue.get(value);
+            if (t == null) {
+                byValue.put(value, new Target(new int[] {index}, List.of(config)));
+            } else if (t.indexes[t.indexes.length - 1] != index) {
+                int[] indexes = Arrays.copyOf(t.indexes, t.indexes.length + 1);
+                indexes[indexes.length - 1] = index;
+                List<CompiledMapping> list = new ArrayList<>(t.configs);
+                list.add(config);
+                byValue.put(value, new Target(indexes, List.copyOf(list)));
+            }
+        }
+
+        private Target lookup(PayloadContext ctx) {
+            JsonNode value = ctx.read(jsonPath);
+            return value == null ? null : byValue.get(value);
+        }
+    }
+
+    // Configs registered for one discriminator value, in registration order
+    private record Target(int[] indexes, List<CompiledMapping> configs) {}
+}
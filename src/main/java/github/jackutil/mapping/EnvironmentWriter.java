@@ -0,0 +1,72 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes one AAS Environment document incrementally: the {@code submodels} array is opened once, every
+ * submodel is serialized as soon as it is added, and {@link #close()} ends the document. Memory stays bounded
+ * by the submodel being written plus the generator's buffer, however many submodels the environment holds
+ * (unlike {@link Aas4jSubmodelFactory#buildEnvironment}, which needs every AAS4J object first).
+ * <p>
+ * Accepts the outputs of {@link MappingEngine#map}: a Submodel (config with a {@code submodel} header) is
+ * appended as is, an Environment (bundle config) contributes each of its submodels. Submodel ids are not
+ * checked for uniqueness, since that would need memory proportional to the environment. The result reads
+ * back with AAS4J's {@code JsonDeserializer} like an environment built in memory.
+ * <p>
+ * The stream is flushed but not closed. Not thread-safe.
+ */
+public final class EnvironmentWriter implements AutoCloseable {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final JsonGenerator generator;
+    private long submodels;
+    private boolean closed;
+
+    public EnvironmentWriter(OutputStream out) throws IOException {
+        this(out, false);
+    }
+
+    public EnvironmentWriter(OutputStream out, boolean pretty) throws IOException {
+        this.generator = MAPPER.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        if (pretty) generator.useDefaultPrettyPrinter();
+        generator.writeStartObject();
+        generator.writeArrayFieldStart("submodels");
+    }
+
+    /**
+     * Appends a mapped Submodel, or every submodel of a mapped Environment.
+     *
+     * @throws IllegalArgumentException when {@code output} is neither (a config without a {@code submodel} header)
+     */
+    public void add(JsonNode output) throws IOException {
+        if (closed) throw new IllegalStateException("EnvironmentWriter is closed");
+        if ("Submodel".equals(output.path("modelType").asText(null))) {
+            MAPPER.writeTree(generator, output);
+            submodels++;
+        } else if (output.path("submodels").isArray() && !output.has("modelType")) {
+            for (JsonNode submodel : output.get("submodels")) add(submodel);
+        } else {
+            throw new IllegalArgumentException("Not an AAS Submodel or Environment; the config needs a submodel header");
+        }
+    }
+
+    public long submodels() {
+        return submodels;
+    }
+
+    /** Ends the {@code submodels} array and the document, and flushes. */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        generator.writeEndArray();
+        generator.writeEndObject();
+        generator.close();
+    }
+}
@@ -0,0 +1,155 @@
+package github.jackutil.mapping;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Error counts over a batch of mappings, with a bounded sample of the errors themselves: the first
+ * {@code samplesPerCode} errors of each {@link MappingError.Code} are kept (and returned by {@link #add} so a
+ * caller can print them as they occur), every other error is only counted, per code and per rule. Memory stays
+ * bounded however many errors the batch has: rule counts are keyed by the config's rules, not by payload
+ * values, and are always kept. Errors not about one rule are counted per code and {@link MappingError#detail()}
+ * (e.g. the exception class of a {@link MappingError.Code#MAPPING_FAILED}), never per message, which names the
+ * payload; past {@value #MAX_KEYS} such keys they are counted together per code.
+ * <p>
+ * Thread-safe.
+ */
+public final class ErrorSummary {
+    static final int MAX_KEYS = 1_000;
+
+    private final int samplesPerCode;
+    private final Map<MappingError.Code, Long> counts = new EnumMap<>(MappingError.Code.class);
+    private final Map<MappingError.Code, List<Sample>> samples = new EnumMap<>(MappingError.Code.class);
+    private final Map<Key, long[]> byRule = new LinkedHashMap<>();
+    // keys of errors not about one rule; bounded separately so they never crowd out the rule keys
+    private int otherKeys;
+    private long payloads;
+    private long payloadsWithErrors;
+    private long errors;
+
+    /** @param samplesPerCode errors kept per code (0: counts only) */
+    public ErrorSummary(int samplesPerCode) {
+        if (samplesPerCode < 0) throw new IllegalArgumentException("samplesPerCode must not be negative");
+        this.samplesPerCode = samplesPerCode;
+    }
+
+    /** A sampled error and the index of the payload (in {@link #add} order) that produced it. */
+    public record Sample(long payload, MappingError error) {}
+
+    /** Errors counted for one rule (or, for errors not about a rule, one {@link MappingError#detail()}). */
+    public record Count(MappingError.Code code, String submodel, String rule, String target, String detail, long count) {}
+
+    private record Key(MappingError.Code code, String submodel, String rule, String target, String detail) {}
+
+    /**
+     * Counts the result's errors.
+     *
+     * @return those of its errors that are within the sample budget, usually none; never null
+     */
+    public synchronized List<MappingError> add(MappingResult result) {
+        long payload = payloads++;
+        List<MappingError> list = result.getMappingErrors();
+        if (list.isEmpty()) return List.of();
+        payloadsWithErrors++;
+        List<MappingError> sampled = List.of();
+        for (MappingError e : list) {
+            errors++;
+            counts.merge(e.code(), 1L, Long::sum);
+            List<Sample> kept = samples.computeIfAbsent(e.code(), c -> new ArrayList<>());
+            if (kept.size() < samplesPerCode) {
+                kept.add(new Sample(payload, e));
+                if (sampled.isEmpty()) sampled = new ArrayList<>();
+                sampled.add(e);
+            }
+            count(e);
+        }
+        return sampled;
+    }
+
+    private void count(MappingError e) {
+        if (e.rule() != null) {
+            // the op or constraint kind, not the payload-dependent text, so keys stay bounded by the config
+            Key key = new Key(e.code(), e.submodel(), e.rule(), e.target(), e.target() != null ? e.detail() : e.message());
+            byRule.computeIfAbsent(key, k -> new long[1])[0]++;
+            return;
+        }
+        Key key = new Key(e.code(), e.submodel(), null, null, e.detail());
+        long[] n = byRule.get(key);
+        if (n == null) {
+            if (otherKeys >= MAX_KEYS) key = new Key(e.code(), null, null, null, "(other)");
+            else otherKeys++;
+            n = byRule.computeIfAbsent(key, k -> new long[1]);
+        }
+        n[0]++;
+    }
+
+    public synchronized long payloads() {
+        return payloads;
+    }
+
+    public synchronized long payloadsWithErrors() {
+        return payloadsWithErrors;
+    }
+
+    public synchronized long errors() {
+        return errors;
+    }
+
+    public synchronized Map<MappingError.Code, Long> counts() {
+        return Collections.unmodifiableMap(new EnumMap<>(counts));
+    }
+
+    public synchronized List<Sample> samples(MappingError.Code code) {
+        return List.copyOf(samples.getOrDefault(code, List.of()));
+    }
+
+    /** Counts per rule (or, for errors not about a rule, per detail), most frequent first. */
+    public synchronized List<Count> byRule() {
+        List<Count> out = new ArrayList<>(byRule.size());
+        for (Map.Entry<Key, long[]> e : byRule.entrySet()) {
+            Key k = e.getKey();
+            out.add(new Count(k.code, k.submodel, k.rule, k.target, k.detail, e.getValue()[0]));
+        }
+        out.sort((a, b) -> Long.compare(b.count, a.count));
+        return out;
+    }
+
+    /**
+     * E.g. {@code 1200 errors in 800 of 10000 payloads}, then per code and rule:
+     * {@code CONSTRAINT 1150}, {@code   rules[3] Weight (range): 1100}.
+     *
+     * @param maxRules rule lines printed per code
+     */
+    public String toText(int maxRules) {
+        List<Count> rules = byRule();
+        StringBuilder sb = new StringBuilder();
+        synchronized (this) {
+            sb.append(String.format(Locale.ROOT, "%d errors in %d of %d payloads\n", errors, payloadsWithErrors, payloads));
+            for (Map.Entry<MappingError.Code, Long> c : counts.entrySet()) {
+                sb.append(String.format(Locale.ROOT, "  %s %d\n", c.getKey(), c.getValue()));
+                int printed = 0;
+                for (Count r : rules) {
+                    if (r.code != c.getKey()) continue;
+                    if (r.rule == null && r.detail == null && r.submodel == null) continue; // nothing beyond the code
+                    if (printed++ == maxRules) {
+                        sb.append("    ...\n");
+                        break;
+                    }
+                    StringJoiner line = new StringJoiner(" ", "    ", ": " + r.count + "\n");
+                    if (r.submodel != null) line.add("[" + r.submodel + "]");
+                    if (r.rule != null) line.add(r.rule);
+                    if (r.target != null) line.add(r.target);
+                    if (r.detail != null) line.add(r.rule != null ? "(" + r.detail + ")" : r.detail);
+                    sb.append(line);
+                }
+            }
+        }
+        return sb.toString();
+    }
+}
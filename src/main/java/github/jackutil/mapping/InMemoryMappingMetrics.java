@@ -0,0 +1,201 @@
+package github.jackutil.mapping;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link MappingMetrics} kept in memory with striped {@link LongAdder}s, so concurrent mappings do not
+ * contend on shared counters. {@link #toPrometheus()} renders everything in Prometheus text format.
+ */
+public final class InMemoryMappingMetrics implements MappingMetrics {
+    private final Map<String, Timer> rules = new ConcurrentHashMap<>();
+    private final Map<String, Timer> transforms = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> skipped = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> fallbacks = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> constraintFailures = new ConcurrentHashMap<>();
+    private final LongAdder jsonPathReads = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder planHits = new LongAdder();
+    private final LongAdder planMisses = new LongAdder();
+    private final Timer planCompiles = new Timer();
+    private final LongAdder planEvictions = new LongAdder();
+
+    @Override
+    public boolean enabled() {
+        return true;
+    }
+
+    @Override
+    public void ruleEvaluated(String target, long nanos) {
+        rules.computeIfAbsent(target, k -> new Timer()).record(nanos);
+    }
+
+    @Override
+    public void ruleSkipped(String target) {
+        skipped.computeIfAbsent(target, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void fallbackUsed(String target) {
+        fallbacks.computeIfAbsent(target, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void constraintFailed(String target, String kind) {
+        constraintFailures.computeIfAbsent(target + '\u0000' + kind, k -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void transformApplied(String op, long nanos) {
+        transforms.computeIfAbsent(op, k -> new Timer()).record(nanos);
+    }
+
+    @Override
+    public void jsonPathRead() {
+        jsonPathReads.increment();
+    }
+
+    @Override
+    public void resultCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public void resultCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    @Override
+    public void planCacheHit() {
+        planHits.increment();
+    }
+
+    @Override
+    public void planCacheMiss() {
+        planMisses.increment();
+    }
+
+    @Override
+    public void planCompiled(long nanos) {
+        planCompiles.record(nanos);
+    }
+
+    @Override
+    public void planEvicted() {
+        planEvictions.increment();
+    }
+
+    public long ruleEvaluations(String target) {
+        Timer t = rules.get(target);
+        return t == null ? 0 : t.count.sum();
+    }
+
+    public long transformCount(String op) {
+        Timer t = transforms.get(op);
+        return t == null ? 0 : t.count.sum();
+    }
+
+    public long fallbackHits(String target) {
+        LongAdder a = fallbacks.get(target);
+        return a == null ? 0 : a.sum();
+    }
+
+    public long constraintFailures(String target) {
+        long sum = 0;
+        for (Map.Entry<String, LongAdder> e : constraintFailures.entrySet()) {
+            if (e.getKey().startsWith(target + '\u0000')) sum += e.getValue().sum();
+        }
+        return sum;
+    }
+
+    public long jsonPathReads() {
+        return jsonPathReads.sum();
+    }
+
+    public long resultCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long resultCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    public long planCacheHits() {
+        return planHits.sum();
+    }
+
+    public long planCacheMisses() {
+        return planMisses.sum();
+    }
+
+    public long planCompiles() {
+        return planCompiles.count.sum();
+    }
+
+    public long planEvictions() {
+        return planEvictions.sum();
+    }
+
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder();
+        header(sb, "aml_rule_evaluations_total", "counter", "Rules evaluated, by target");
+        new TreeMap<>(rules).forEach((k, t) -> sample(sb, "aml_rule_evaluations_total", "target", k, t.count.sum()));
+        header(sb, "aml_rule_duration_seconds_total", "counter", "Time spent evaluating rules, by target");
+        new TreeMap<>(rules).forEach((k, t) -> sample(sb, "aml_rule_duration_seconds_total", "target", k, t.nanos.sum() / 1e9));
+        header(sb, "aml_rule_skipped_total", "counter", "Rules skipped by their when predicate, by target");
+        new TreeMap<>(skipped).forEach((k, a) -> sample(sb, "aml_rule_skipped_total", "target", k, a.sum()));
+        header(sb, "aml_fallback_hits_total", "counter", "Rules whose value came from a fallback, by target");
+        new TreeMap<>(fallbacks).forEach((k, a) -> sample(sb, "aml_fallback_hits_total", "target", k, a.sum()));
+        header(sb, "aml_constraint_failures_total", "counter", "Values rejected by a constraint, by target and kind");
+        new TreeMap<>(constraintFailures).forEach((k, a) -> {
+            int sep = k.indexOf('\u0000');
+            sb.append("aml_constraint_failures_total{target=\"").append(escape(k.substring(0, sep)))
+                    .append("\",kind=\"").append(escape(k.substring(sep + 1))).append("\"} ").append(a.sum()).append('\n');
+        });
+        header(sb, "aml_transform_total", "counter", "Transform ops applied, by op");
+        new TreeMap<>(transforms).forEach((k, t) -> sample(sb, "aml_transform_total", "op", k, t.count.sum()));
+        header(sb, "aml_transform_duration_seconds_total", "counter", "Time spent in transform ops, by op");
+        new TreeMap<>(transforms).forEach((k, t) -> sample(sb, "aml_transform_duration_seconds_total", "op", k, t.nanos.sum() / 1e9));
+        header(sb, "aml_jsonpath_reads_total", "counter", "JsonPath evaluations against payloads");
+        sb.append("aml_jsonpath_reads_total ").append(jsonPathReads.sum()).append('\n');
+        header(sb, "aml_result_cache_requests_total", "counter", "Result cache lookups, by outcome");
+        sb.append("aml_result_cache_requests_total{result=\"hit\"} ").append(cacheHits.sum()).append('\n');
+        sb.append("aml_result_cache_requests_total{result=\"miss\"} ").append(cacheMisses.sum()).append('\n');
+        header(sb, "aml_plan_cache_requests_total", "counter", "Compiled config registry lookups, by outcome");
+        sb.append("aml_plan_cache_requests_total{result=\"hit\"} ").append(planHits.sum()).append('\n');
+        sb.append("aml_plan_cache_requests_total{result=\"miss\"} ").append(planMisses.sum()).append('\n');
+        header(sb, "aml_plan_compiles_total", "counter", "Configs loaded and compiled by the registry");
+        sb.append("aml_plan_compiles_total ").append(planCompiles.count.sum()).append('\n');
+        header(sb, "aml_plan_compile_duration_seconds_total", "counter", "Time spent loading and compiling configs");
+        sb.append("aml_plan_compile_duration_seconds_total ").append(planCompiles.nanos.sum() / 1e9).append('\n');
+        header(sb, "aml_plan_evictions_total", "counter", "Compiled configs evicted from the registry");
+        sb.append("aml_plan_evictions_total ").append(planEvictions.sum()).append('\n');
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String label, String value, Number n) {
+        sb.append(name).append('{').append(label).append("=\"").append(escape(value)).append("\"} ").append(n).append('\n');
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Timer {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        private void record(long n) {
+            count.increment();
+            nanos.add(n);
+        }
+    }
+}
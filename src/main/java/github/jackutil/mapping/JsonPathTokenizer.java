@@ -0,0 +1,134 @@
+package github.jackutil.mapping;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a Jayway JsonPath expression into segments ({@code $.a..b[*][?(@.x)]['c'][0:2].length()}).
+ * Shared by {@link SchemaExporter} (payload shape) and {@link ConfigAnalyzer} (selector cost).
+ */
+final class JsonPathTokenizer {
+    private JsonPathTokenizer() {}
+
+    enum Kind {
+        /** {@code .name} or {@code ['name']} */
+        FIELD,
+        /** {@code [0]}, {@code [0,2]} or a slice {@code [1:3]} */
+        INDEX,
+        /** {@code .*} or {@code [*]} */
+        WILDCARD,
+        /** {@code ..}; the following token names what is searched for */
+        DEEP_SCAN,
+        /** {@code [?(...)]} */
+        FILTER,
+        /** {@code ['a','b']} */
+        UNION,
+        /** trailing function such as {@code .length()} */
+        FUNCTION
+    }
+
+    record Token(Kind kind, String text) {}
+
+    /**
+     * @throws IllegalArgumentException when the expression is not a well-formed path
+     */
+    static List<Token> tokenize(String path) {
+        List<Token> tokens = new ArrayList<>();
+        if (path == null) throw new IllegalArgumentException("null path");
+        String p = path.trim();
+        int i = 0;
+        if (p.startsWith("$") || p.startsWith("@")) i = 1;
+        while (i < p.length()) {
+            char c = p.charAt(i);
+            if (c == '.') {
+                if (i + 1 < p.length() && p.charAt(i + 1) == '.') {
+                    tokens.add(new Token(Kind.DEEP_SCAN, ".."));
+                    i += 2;
+                    if (i < p.length() && p.charAt(i) == '[') continue;
+                } else {
+                    i++;
+                }
+                if (i >= p.length()) throw new IllegalArgumentException("Path ends with '.': " + path);
+                if (p.charAt(i) == '*') {
+                    tokens.add(new Token(Kind.WILDCARD, "*"));
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < p.length() && p.charAt(i) != '.' && p.charAt(i) != '[' && p.charAt(i) != '(') i++;
+                String name = p.substring(start, i);
+                if (name.isEmpty()) throw new IllegalArgumentException("Empty segment in " + path);
+                if (i < p.length() && p.charAt(i) == '(') {
+                    int close = p.indexOf(')', i);
+                    if (close < 0) throw new IllegalArgumentException("Unclosed function call in " + path);
+                    tokens.add(new Token(Kind.FUNCTION, name));
+                    i = close + 1;
+                } else {
+                    tokens.add(new Token(Kind.FIELD, name));
+                }
+            } else if (c == '[') {
+                int close = closingBracket(p, i);
+                tokens.add(bracket(p.substring(i + 1, close).trim(), path));
+                i = close + 1;
+            } else if (tokens.isEmpty() && i == 0) {
+                // bare "a.b" without '$' is read relative to the root, as SchemaExporter always did
+                p = "." + p;
+            } else {
+                throw new IllegalArgumentException("Unexpected '" + c + "' in " + path);
+            }
+        }
+        return tokens;
+    }
+
+    private static Token bracket(String inner, String path) {
+        if (inner.equals("*")) return new Token(Kind.WILDCARD, "*");
+        if (inner.startsWith("?")) return new Token(Kind.FILTER, inner);
+        if (inner.startsWith("'") || inner.startsWith("\"")) {
+            List<String> names = quotedNames(inner, path);
+            return names.size() == 1 ? new Token(Kind.FIELD, names.get(0)) : new Token(Kind.UNION, String.join(",", names));
+        }
+        if (inner.matches("-?\\d*(:-?\\d*)?(:-?\\d*)?|-?\\d+(\\s*,\\s*-?\\d+)*") && !inner.isEmpty()) {
+            return new Token(Kind.INDEX, inner);
+        }
+        throw new IllegalArgumentException("Unsupported bracket [" + inner + "] in " + path);
+    }
+
+    private static List<String> quotedNames(String inner, String path) {
+        List<String> names = new ArrayList<>();
+        int i = 0;
+        while (i < inner.length()) {
+            char q = inner.charAt(i);
+            if (q != '\'' && q != '"') throw new IllegalArgumentException("Expected quoted name in " + path);
+            int end = inner.indexOf(q, i + 1);
+            if (end < 0) throw new IllegalArgumentException("Unclosed quote in " + path);
+            names.add(inner.substring(i + 1, end));
+            i = end + 1;
+            while (i < inner.length() && (inner.charAt(i) == ',' || inner.charAt(i) == ' ')) i++;
+        }
+        return names;
+    }
+
+    // Index of the ']' closing the bracket at 'open', skipping nested brackets, parentheses and quoted text
+    private static int closingBracket(String p, int open) {
+        int depth = 0;
+        char quote = 0;
+        for (int i = open; i < p.length(); i++) {
+            char c = p.charAt(i);
+            if (quote != 0) {
+                if (c == '\\') i++;
+                else if (c == quote) quote = 0;
+                continue;
+            }
+            switch (c) {
+                case '\'', '"' -> quote = c;
+                case '[', '(' -> depth++;
+                case ')' -> depth--;
+                case ']' -> {
+                    if (--depth == 0) return i;
+                }
+                default -> {}
+            }
+        }
+        throw new IllegalArgumentException("Unclosed '[' in " + p);
+    }
+}
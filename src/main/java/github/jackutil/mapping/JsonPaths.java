@@ -0,0 +1,78 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.jayway.jsonpath.JsonPath;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Parsed JsonPath expressions of one compiled config (or one {@link ConfigRouter}), shared by every payload
+ * mapped with it. The cache belongs to its owner, so it is released with it and never holds another tenant's
+ * expressions; it only grows by the expressions the owner's config names. The {@code jsonPath} values of the
+ * config are parsed when it is compiled, so {@link #estimatedBytes()} covers them from the start.
+ * Thread-safe.
+ */
+final class JsonPaths {
+    // per entry: map node, key and the parsed path's token objects, on top of the expression's characters
+    private static final int ENTRY_BYTES = 256;
+
+    /** A parsed expression: {@code path} is null when the expression is invalid (it reads as null). */
+    record Entry(JsonPath path, String deepScanField) {}
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+
+    Entry get(String jsonPath) {
+        Entry e = entries.get(jsonPath);
+        return e != null ? e : entries.computeIfAbsent(jsonPath, this::parse);
+    }
+
+    /** Parses every {@code jsonPath} value found in {@code config}. */
+    void addAll(JsonNode config) {
+        if (config == null) return;
+        if (config.isObject()) {
+            JsonNode path = config.get("jsonPath");
+            if (path != null && path.isTextual()) get(path.asText());
+        }
+        for (JsonNode child : config) addAll(child);
+    }
+
+    void addAll(List<String> jsonPaths) {
+        for (String p : jsonPaths) get(p);
+    }
+
+    long estimatedBytes() {
+        return bytes.get();
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Entry parse(String jsonPath) {
+        JsonPath path;
+        try {
+            path = JsonPath.compile(jsonPath);
+        } catch (RuntimeException e) {
+            path = null;
+        }
+        bytes.addAndGet(ENTRY_BYTES + 4L * jsonPath.length());
+        return new Entry(path, deepScanField(jsonPath));
+    }
+
+    /** @return the field name when {@code jsonPath} is a plain deep scan ({@code $..name}), else null */
+    static String deepScanField(String jsonPath) {
+        try {
+            List<JsonPathTokenizer.Token> tokens = JsonPathTokenizer.tokenize(jsonPath);
+            boolean plain = jsonPath.trim().startsWith("$") && tokens.size() == 2
+                    && tokens.get(0).kind() == JsonPathTokenizer.Kind.DEEP_SCAN
+                    && tokens.get(1).kind() == JsonPathTokenizer.Kind.FIELD;
+            return plain ? tokens.get(1).text() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -85,10 +85,14 @@ public final class JsonUtils {
     }
 
     public static JsonNode regexExtract(JsonNode n, String pattern, int group) {
+        return regexExtract(n, Pattern.compile(pattern), group);
+    }
+
+    public static JsonNode regexExtract(JsonNode n, Pattern pattern, int group) {
         if (n == null || n.isNull()) return NullNode.getInstance();
         String text = n.asText(null);
         if (text == null) return NullNode.getInstance();
-        Matcher m = Pattern.compile(pattern).matcher(text);
+        Matcher m = pattern.matcher(text);
         if (!m.find()) return NullNode.getInstance();
         if (group < 0 || group > m.groupCount()) return NullNode.getInstance();
         return JsonNodeFactory.instance.textNode(m.group(group));
@@ -112,17 +116,26 @@ public final class JsonUtils {
     }
 
     public static JsonNode toZoned(JsonNode n, String zoneId) {
+        if (n == null || n.isNull()) return NullNode.getInstance();
+        try {
+            return toZoned(n, ZoneId.of(zoneId));
+        } catch (Exception e) {
+            return NullNode.getInstance();
+        }
+    }
+
+    public static JsonNode toZoned(JsonNode n, ZoneId zone) {
         if (n == null || n.isNull()) return NullNode.getInstance();
         String text = n.asText(null);
         if (text == null) return NullNode.getInstance();
         try {
             Instant inst = Instant.parse(text);
-            ZonedDateTime zdt = inst.atZone(ZoneId.of(zoneId));
+            ZonedDateTime zdt = inst.atZone(zone);
             return JsonNodeFactory.instance.textNode(zdt.toOffsetDateTime().toString());
         } catch (Exception e) {
             try {
                 OffsetDateTime odt = OffsetDateTime.parse(text);
-                ZonedDateTime zdt = odt.atZoneSameInstant(ZoneId.of(zoneId));
+                ZonedDateTime zdt = odt.atZoneSameInstant(zone);
                 return JsonNodeFactory.instance.textNode(zdt.toOffsetDateTime().toString());
             } catch (Exception ignored) {
                 return NullNode.getInstance();
@@ -211,5 +224,21 @@ public final class JsonUtils {
             }
         }
     }
-}
 
+    // Rough heap footprint of a Jackson tree: node headers, map/list slots and string contents
+    static long estimateBytes(JsonNode node) {
+        long size = 24;
+        if (node.isObject()) {
+            size += 48;
+            for (Map.Entry<String, JsonNode> e : node.properties()) {
+                size += 40 + 2L * e.getKey().length() + estimateBytes(e.getValue());
+            }
+        } else if (node.isArray()) {
+            size += 24 + 8L * node.size();
+            for (JsonNode child : node) size += estimateBytes(child);
+        } else if (node.isTextual()) {
+            size += 40 + 2L * node.textValue().length();
+        }
+        return size;
+    }
+}
@@ -0,0 +1,65 @@
+package github.jackutil.mapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Sequential {@link InputStream} over a file channel, read through read-only memory-mapped windows.
+ * Bytes go straight from the page cache into the reader's buffer; a window is released (unmapped on GC)
+ * once the stream moves past it, so files larger than 2 GiB work and resident pages stay bounded by the OS.
+ */
+final class MappedInputStream extends InputStream {
+    private static final long WINDOW = 256L << 20;
+
+    private final FileChannel channel;
+    private final long windowSize;
+    private final long size;
+    private long position;
+    private MappedByteBuffer window;
+
+    MappedInputStream(FileChannel channel) throws IOException {
+        this(channel, WINDOW);
+    }
+
+    MappedInputStream(FileChannel channel, long windowSize) throws IOException {
+        this.channel = channel;
+        this.windowSize = windowSize;
+        this.size = channel.size();
+    }
+
+    private boolean ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) return true;
+        if (position >= size) return false;
+        long length = Math.min(windowSize, size - position);
+        window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+        position += length;
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensureWindow() ? window.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureWindow()) return -1;
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public int available() {
+        long left = (window == null ? 0 : window.remaining()) + (size - position);
+        return (int) Math.min(Integer.MAX_VALUE, left);
+    }
+
+    @Override
+    public void close() {
+        window = null;
+    }
+}
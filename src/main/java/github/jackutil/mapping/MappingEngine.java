@@ -12,10 +12,13 @@ import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.spi.json.JacksonJsonNodeJsonProvider;
 import com.jayway.jsonpath.spi.mapper.JacksonMappingProvider;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
 
 import static github.jackutil.mapping.JsonUtils.*;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 public class MappingEngine {
     private final ObjectMapper mapper = new ObjectMapper();
@@ -23,146 +26,408 @@ public class MappingEngine {
     private final Configuration jsonPathConfig = Configuration.builder()
             .jsonProvider(new JacksonJsonNodeJsonProvider())
             .mappingProvider(new JacksonMappingProvider())
-            .options(Option.DEFAULT_PATH_LEAF_TO_NULL)
+            .options(Option.DEFAULT_PATH_LEAF_TO_NULL, Option.SUPPRESS_EXCEPTIONS)
             .build();
 
+    private final MappingMetrics metrics;
+    private final TransformRegistry transforms;
+    // null: rules are always evaluated in sequence
+    private final ForkJoinPool rulePool;
+    private final int parallelRuleThreshold;
+
+    public MappingEngine() {
+        this(MappingMetrics.NOOP);
+    }
+
+    public MappingEngine(MappingMetrics metrics) {
+        this(metrics, TransformRegistry.defaults());
+    }
+
+    /**
+     * @param transforms ops available to configs compiled by this engine; {@link TransformRegistry#defaults()}
+     *                   has the built-ins plus providers found on the class path
+     */
+    public MappingEngine(MappingMetrics metrics, TransformRegistry transforms) {
+        this(metrics, transforms, null, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Engine that evaluates the top-level rules of large configs in parallel, for single-payload latency on
+     * configs with thousands of rules. A config (or bundle entry) with at least {@code parallelRuleThreshold}
+     * rules is split into fork-join tasks on {@code rulePool}; smaller ones stay sequential, where the split
+     * would cost more than it saves. Output, key order and error order are the same as sequential mapping.
+     * Mappings with an explain trace always run sequentially.
+     *
+     * @param rulePool              pool for rule tasks, e.g. {@link ForkJoinPool#commonPool()}
+     * @param parallelRuleThreshold minimum number of top-level rules to go parallel (a few hundred is typical)
+     */
+    public MappingEngine(MappingMetrics metrics, TransformRegistry transforms, ForkJoinPool rulePool, int parallelRuleThreshold) {
+        if (parallelRuleThreshold < 1) throw new IllegalArgumentException("parallelRuleThreshold must be positive");
+        this.metrics = metrics == null ? MappingMetrics.NOOP : metrics;
+        this.transforms = transforms == null ? TransformRegistry.defaults() : transforms;
+        this.rulePool = rulePool;
+        this.parallelRuleThreshold = parallelRuleThreshold;
+    }
+
+    MappingMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Resolve everything in the config that does not depend on the payload (AAS header, element templates, id strategy,
+     * transform ops and their arguments).
+     * Compile once and reuse the result for every payload mapped with the same config.
+     */
+    public CompiledMapping compile(JsonNode config) {
+        MappingEvents.ConfigCompile event = new MappingEvents.ConfigCompile();
+        event.begin();
+        CompiledMapping compiled = new CompiledMapping(config, transforms);
+        event.end();
+        if (event.shouldCommit()) {
+            event.config = compiled.label;
+            event.commit();
+        }
+        return compiled;
+    }
+
     public MappingResult map(JsonNode config, JsonNode payload) {
-        List<String> errors = new ArrayList<>();
-        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        return map(compile(config), payload);
+    }
+
+    public MappingResult map(CompiledMapping compiled, JsonNode payload) {
+        return map(compiled, new PayloadContext(payload, this, compiled.paths));
+    }
+
+    /**
+     * Map and record a per-rule evaluation trace (explain mode). Without a trace the engine does no
+     * trace bookkeeping at all, so {@link #map(CompiledMapping, JsonNode)} is unaffected.
+     */
+    public MappingResult map(CompiledMapping compiled, JsonNode payload, MappingTrace trace) {
+        return map(compiled, new PayloadContext(payload, this, compiled.paths, trace));
+    }
+
+    // Several configs mapped from the same payload may share one context (and its read cache)
+    MappingResult map(CompiledMapping compiled, PayloadContext ctx) {
+        if (compiled.parts != null) {
+            return mapEnvironment(compiled, ctx);
+        }
+
+        Errors errors = new Errors(compiled.configErrorRecords);
+        ObjectNode out = mapValues(compiled, ctx, errors);
+
+        // If submodel header is provided, wrap the mapped values into an AAS4J Submodel JSON
+        if (compiled.submodel != null) {
+            ObjectNode wrapped = compiled.submodel.build(out, resolveIdFields(compiled.idFields, ctx, errors));
+            return MappingResult.of(wrapped, errors.list());
+        }
+
+        return MappingResult.of(out, errors.list());
+    }
 
-        // Validate apiVersion if present
-        JsonNode apiVersion = config.path("apiVersion");
-        if (!apiVersion.isTextual() || !"aasx.map/v1".equals(apiVersion.asText())) {
-            errors.add("Unsupported or missing apiVersion: " + apiVersion.asText());
+    /**
+     * Bundle mode: every entry of {@code submodels} is mapped against the same payload context, so a
+     * selector used by several aspects reads the payload once. Output is an AAS Environment.
+     */
+    private MappingResult mapEnvironment(CompiledMapping bundle, PayloadContext ctx) {
+        Errors errors = new Errors(bundle.configErrorRecords);
+        List<Submodel> submodels = new ArrayList<>(bundle.parts.size());
+        for (CompiledMapping part : bundle.parts) {
+            if (ctx.trace() != null) ctx.trace().beginSubmodel(part.label);
+            Errors partErrors = new Errors(part.configErrorRecords);
+            ObjectNode values = mapValues(part, ctx, partErrors);
+            submodels.add(part.submodel.buildSubmodel(values, resolveIdFields(part.idFields, ctx, partErrors)));
+            for (MappingError e : partErrors.list()) errors.add(e.inSubmodel(part.label));
         }
+        return MappingResult.of(Aas4jSubmodelFactory.buildEnvironment(submodels), errors.list());
+    }
 
-        // Variables are currently parsed but not used yet (reserved for future ref)
-        ObjectNode variables = config.path("variables").isObject() ? (ObjectNode) config.path("variables") : JsonNodeFactory.instance.objectNode();
+    private ObjectNode mapValues(CompiledMapping compiled, PayloadContext ctx, Errors errors) {
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
 
-        ArrayNode rules = config.path("rules").isArray() ? (ArrayNode) config.path("rules") : null;
+        List<CompiledRule> rules = compiled.rules;
         if (rules == null || rules.isEmpty()) {
-            errors.add("No rules provided in config");
-            return new MappingResult(out, errors);
+            errors.add(MappingError.of(MappingError.Code.NO_RULES, "No rules provided in config"));
+            return out;
+        }
+
+        if (rulePool != null && rules.size() >= parallelRuleThreshold && ctx.trace() == null) {
+            applyRulesInParallel(rules, ctx, compiled.variables, errors, out);
+        } else {
+            applyRules(rules, ctx, compiled.variables, errors, out, "");
+        }
+        return out;
+    }
+
+    private void applyRules(List<CompiledRule> rules, PayloadContext ctx, ObjectNode variables, Errors errors, ObjectNode out, String scope) {
+        for (CompiledRule rule : rules) {
+            evaluateRule(rule, ctx, variables, errors, out, scope);
         }
+    }
 
-        for (JsonNode rule : rules) {
-            if (!rule.isObject()) {
-                errors.add("Rule is not an object: " + rule);
-                continue;
+    /**
+     * Rules only read the payload and variables, never each other's output, so any subset can be evaluated
+     * on any thread. Each rule writes into its own scratch object; the writes are then replayed into
+     * {@code out} in rule order, so overlapping targets, key order and errors come out as in sequence.
+     */
+    private void applyRulesInParallel(List<CompiledRule> rules, PayloadContext ctx, ObjectNode variables, Errors errors, ObjectNode out) {
+        ctx.shareBetweenThreads();
+        int n = rules.size();
+        JsonNode[] written = new JsonNode[n];
+        int leafSize = Math.max(8, n / (rulePool.getParallelism() * 4) + 1);
+        Errors[] leafErrors = new Errors[(n + leafSize - 1) / leafSize];
+        rulePool.invoke(new RuleSlice(rules, 0, n, leafSize, ctx, variables, written, leafErrors));
+        for (Errors e : leafErrors) if (e != null) for (MappingError error : e.list()) errors.add(error);
+        for (int i = 0; i < n; i++) {
+            if (written[i] != null) putDeep(out, rules.get(i).target, written[i]);
+        }
+    }
+
+    @SuppressWarnings("serial") // ForkJoinTask is Serializable, but slices only live for one fork/join call
+    private final class RuleSlice extends RecursiveAction {
+        private final List<CompiledRule> rules;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final PayloadContext ctx;
+        private final ObjectNode variables;
+        private final JsonNode[] written;
+        private final Errors[] leafErrors;
+
+        private RuleSlice(List<CompiledRule> rules, int from, int to, int leafSize, PayloadContext ctx, ObjectNode variables,
+                          JsonNode[] written, Errors[] leafErrors) {
+            this.rules = rules;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.ctx = ctx;
+            this.variables = variables;
+            this.written = written;
+            this.leafErrors = leafErrors;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > leafSize) {
+                // split on a leaf boundary so each leaf's error list holds a contiguous run of rules
+                int mid = from + ((to - from) / leafSize / 2) * leafSize;
+                if (mid == from) mid += leafSize;
+                invokeAll(new RuleSlice(rules, from, mid, leafSize, ctx, variables, written, leafErrors),
+                        new RuleSlice(rules, mid, to, leafSize, ctx, variables, written, leafErrors));
+                return;
             }
-            String target = rule.path("target").asText(null);
-            if (target == null || target.isBlank()) {
-                errors.add("Rule missing target");
-                continue;
+            Errors errors = new Errors(List.of());
+            for (int i = from; i < to; i++) {
+                CompiledRule rule = rules.get(i);
+                ObjectNode scratch = JsonNodeFactory.instance.objectNode();
+                evaluateRule(rule, ctx, variables, errors, scratch, "");
+                if (!scratch.isEmpty()) written[i] = valueAt(scratch, rule.target);
             }
+            leafErrors[from / leafSize] = errors;
+        }
+    }
 
-            if (!evaluatePredicate(rule.path("when"), payload)) {
-                // Predicate false → skip rule
-                continue;
-            }
+    // the node putDeep(root, path, value) stored
+    private static JsonNode valueAt(ObjectNode root, String path) {
+        JsonNode cursor = root;
+        for (String key : path.split("/")) cursor = cursor.get(key);
+        return cursor;
+    }
 
-            JsonNode finalValue;
-
-            // If 'project' present, build composite object from selectors
-            if (rule.has("project") && rule.path("project").isObject()) {
-                ObjectNode composite = JsonNodeFactory.instance.objectNode();
-                Iterator<Map.Entry<String, JsonNode>> fields = rule.path("project").properties().iterator();
-                while (fields.hasNext()) {
-                    Map.Entry<String, JsonNode> e = fields.next();
-                    JsonNode sel = e.getValue();
-                    JsonNode v = evaluateSelector(sel, payload, variables);
-                    composite.set(e.getKey(), v == null ? NullNode.getInstance() : v);
-                }
-                finalValue = composite;
-            } else {
-                // Evaluate source + fallback + transforms → scalar/object value
-                JsonNode value = evaluateSourceExpr(rule.path("source"), payload, variables);
-
-                if (isEmpty(value) && rule.has("fallback") && rule.get("fallback").isArray()) {
-                    for (JsonNode fb : rule.get("fallback")) {
-                        value = evaluateSourceExpr(fb, payload, variables);
-                        if (!isEmpty(value)) break;
-                    }
-                }
+    private void evaluateRule(CompiledRule rule, PayloadContext ctx, ObjectNode variables, Errors errors, ObjectNode out, String scope) {
+        if (rule.invalid != null) {
+            errors.add(MappingError.invalidRule(rule));
+            return;
+        }
+        String target = rule.target;
+
+        MappingTrace trace = ctx.trace();
+        if (trace != null) trace.beginRule(scope + target);
+        MappingEvents.RuleEvaluation event = new MappingEvents.RuleEvaluation();
+        event.begin();
+        if (metrics.enabled()) {
+            long start = System.nanoTime();
+            applyRule(rule, target, ctx, variables, errors, out, scope);
+            metrics.ruleEvaluated(target, System.nanoTime() - start);
+        } else {
+            applyRule(rule, target, ctx, variables, errors, out, scope);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.target = scope + target;
+            event.ops = rule.opChain;
+            event.commit();
+        }
+        if (trace != null) trace.endRule();
+    }
 
-                // Rule-level transforms
-                if (rule.has("transform") && rule.get("transform").isArray()) {
-                    value = applyTransforms(value, (ArrayNode) rule.get("transform"), payload, variables);
-                }
-                finalValue = value == null ? NullNode.getInstance() : value;
+    private void applyRule(CompiledRule compiled, String target, PayloadContext ctx, ObjectNode variables, Errors errors, ObjectNode out, String scope) {
+        JsonNode rule = compiled.node;
+        MappingTrace trace = ctx.trace();
+        boolean passed = evaluatePredicate(rule.path("when"), ctx);
+        if (trace != null && rule.has("when")) trace.when(passed);
+        if (!passed) {
+            // Predicate false → skip rule
+            metrics.ruleSkipped(target);
+            return;
+        }
+
+        // forEach: evaluate nested rules once per selected array element, collecting one object per element
+        if (rule.has("forEach")) {
+            ArrayNode items = applyForEach(compiled, ctx, variables, errors, scope + target);
+            if (trace != null) {
+                trace.producedBy("forEach");
+                trace.items(items.size());
             }
+            putDeep(out, target, items);
+            return;
+        }
 
-            // Constraints
-            if (rule.has("constraints") && rule.get("constraints").isArray()) {
-                String err = validateConstraints(finalValue, (ArrayNode) rule.get("constraints"));
-                if (err != null) {
-                    errors.add("Constraint failed at '" + target + "': " + err);
-                    continue; // Skip setting this value
+        JsonNode finalValue;
+
+        // If 'project' present, build composite object from selectors
+        if (rule.has("project") && rule.path("project").isObject()) {
+            ObjectNode composite = JsonNodeFactory.instance.objectNode();
+            Iterator<Map.Entry<String, JsonNode>> fields = rule.path("project").properties().iterator();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> e = fields.next();
+                JsonNode sel = e.getValue();
+                JsonNode v = evaluateSelector(sel, ctx, variables);
+                if (trace != null) trace.read("project." + e.getKey(), sel, v);
+                composite.set(e.getKey(), v == null ? NullNode.getInstance() : v);
+            }
+            if (trace != null) trace.producedBy("project");
+            finalValue = composite;
+        } else {
+            // Evaluate source + fallback + transforms → scalar/object value
+            RuleTransformContext tc = new RuleTransformContext(ctx, variables, errors, compiled, scope);
+            JsonNode value = evaluateSourceExpr(rule.path("source"), compiled.sourceTransforms, tc, -1);
+            int producer = -1; // -1: source, else the fallback index
+
+            if (isEmpty(value) && compiled.fallbackTransforms.length > 0) {
+                for (int index = 0; index < compiled.fallbackTransforms.length; index++) {
+                    value = evaluateSourceExpr(rule.get("fallback").get(index), compiled.fallbackTransforms[index], tc, index);
+                    if (!isEmpty(value)) {
+                        producer = index;
+                        metrics.fallbackUsed(target);
+                        break;
+                    }
                 }
             }
+            if (trace != null) trace.producedBy(isEmpty(value) ? "none" : producer < 0 ? "source" : "fallback[" + producer + "]");
 
-            putDeep(out, target, finalValue);
+            // Rule-level transforms
+            if (compiled.transforms.length > 0) {
+                value = applyTransforms(value, compiled.transforms, tc);
+            }
+            finalValue = value == null ? NullNode.getInstance() : value;
+        }
+        // Constraints
+        if (rule.has("constraints") && rule.get("constraints").isArray()) {
+            String err = validateConstraints(finalValue, (ArrayNode) rule.get("constraints"));
+            if (err != null) {
+                errors.add(MappingError.constraint(compiled, scope, err));
+                metrics.constraintFailed(target, err);
+                if (trace != null) trace.rejected(err);
+                return; // Skip setting this value
+            }
         }
 
-        // If submodel header is provided, wrap the mapped values into an AAS4J Submodel JSON
-        if (config.has("submodel") && config.get("submodel").isObject()) {
-            ObjectNode submodelHeader = (ObjectNode) config.get("submodel");
-            Map<String, ObjectNode> metaByPath = new HashMap<>();
-            if (submodelHeader.has("initialElements") && submodelHeader.get("initialElements").isArray()) {
-                for (JsonNode ie : submodelHeader.get("initialElements")) {
-                    String path = ie.path("path").asText(null);
-                    if (path != null) metaByPath.put(path, (ObjectNode) ie);
-                }
+        if (trace != null) trace.result(finalValue);
+        putDeep(out, target, finalValue);
+    }
+
+    /**
+     * Each element selected by {@code forEach} becomes the root ({@code $}) for the nested {@code rules};
+     * their variables still resolve against the payload root. Elements are the payload's own nodes (no copies);
+     * a single object selection is treated as one element.
+     */
+    private ArrayNode applyForEach(CompiledRule rule, PayloadContext ctx, ObjectNode variables, Errors errors, String target) {
+        ArrayNode items = JsonNodeFactory.instance.arrayNode();
+        JsonNode selected = evaluateSelector(rule.node.get("forEach"), ctx, variables);
+        List<CompiledRule> nested = rule.rules;
+        if (selected == null || selected.isNull() || nested == null) return items;
+
+        if (selected.isArray()) {
+            for (int i = 0; i < selected.size(); i++) {
+                ObjectNode item = JsonNodeFactory.instance.objectNode();
+                applyRules(nested, ctx.child(selected.get(i)), variables, errors, item, target + "[" + i + "]/");
+                items.add(item);
             }
+        } else {
+            ObjectNode item = JsonNodeFactory.instance.objectNode();
+            applyRules(nested, ctx.child(selected), variables, errors, item, target + "[0]/");
+            items.add(item);
+        }
+        return items;
+    }
 
-            github.jackutil.mapping.Aas4jSubmodelFactory factory = new github.jackutil.mapping.Aas4jSubmodelFactory();
-            ObjectNode wrapped = factory.build(submodelHeader, metaByPath, out);
-            return new MappingResult(wrapped, errors);
+    // nameBased ids hash the values found at idStrategy.fields (jsonPaths). A field without a value would give every
+    // such payload the same id, so it is reported and null is returned: the factory then generates a random id
+    private List<String> resolveIdFields(List<String> fields, PayloadContext ctx, Errors errors) {
+        if (fields.isEmpty()) return fields;
+        List<String> values = new ArrayList<>(fields.size());
+        for (String field : fields) {
+            JsonNode v = ctx.read(field);
+            if (v == null || v.isNull() || v.isMissingNode()) {
+                errors.add(MappingError.idField(field));
+                values = null;
+            } else if (values != null) {
+                values.add(v.isValueNode() ? v.asText() : v.toString());
+            }
         }
+        return values;
+    }
 
-        return new MappingResult(out, errors);
+    // Uncached payload read; PayloadContext caches per payload. Invalid expressions (null) read as null.
+    JsonNode readPath(JsonNode root, JsonPath compiled) {
+        if (compiled == null) return null;
+        try {
+            metrics.jsonPathRead();
+            return compiled.read(root, jsonPathConfig);
+        } catch (Exception e) {
+            return null;
+        }
     }
 
-    private JsonNode evaluateSourceExpr(JsonNode sourceExpr, JsonNode payload, ObjectNode variables) {
+    // fallbackIndex is -1 for the rule's own source; it only labels explain traces
+    private JsonNode evaluateSourceExpr(JsonNode sourceExpr, TransformRegistry.BoundTransform[] chain, RuleTransformContext tc, int fallbackIndex) {
+        PayloadContext ctx = tc.ctx;
+        ObjectNode variables = tc.variables;
         if (sourceExpr == null || !sourceExpr.isObject()) return NullNode.getInstance();
 
         JsonNode value;
         if (sourceExpr.has("jsonPath")) {
-            String path = sourceExpr.path("jsonPath").asText();
-            try {
-                // Use Jayway JsonPath with Jackson provider → returns JsonNode
-                value = JsonPath.using(jsonPathConfig).parse(payload).read(path, JsonNode.class);
-                if (value == null) value = NullNode.getInstance();
-            } catch (Exception e) {
-                value = NullNode.getInstance();
-            }
+            value = ctx.read(sourceExpr.path("jsonPath").asText());
+            if (value == null) value = NullNode.getInstance();
         } else if (sourceExpr.has("constant")) {
             value = sourceExpr.get("constant");
         } else if (sourceExpr.has("var")) {
-            value = evaluateSelector(sourceExpr, payload, variables);
+            value = evaluateSelector(sourceExpr, ctx, variables);
         } else {
             value = NullNode.getInstance();
         }
+        if (ctx.trace() != null) {
+            ObjectNode selector = sourceExpr.deepCopy();
+            selector.remove("transform");
+            ctx.trace().read(fallbackIndex < 0 ? "source" : "fallback[" + fallbackIndex + "]", selector, value);
+        }
 
-        if (sourceExpr.has("transform") && sourceExpr.get("transform").isArray()) {
-            value = applyTransforms(value, (ArrayNode) sourceExpr.get("transform"), payload, variables);
+        if (chain.length > 0) {
+            value = applyTransforms(value, chain, tc);
         }
 
         return value;
     }
 
-    private JsonNode evaluateSelector(JsonNode selector, JsonNode payload, ObjectNode variables) {
-        return evaluateSelector(selector, payload, variables, new HashSet<>());
+    private JsonNode evaluateSelector(JsonNode selector, PayloadContext ctx, ObjectNode variables) {
+        return evaluateSelector(selector, ctx, variables, new HashSet<>());
     }
 
-    private JsonNode evaluateSelector(JsonNode selector, JsonNode payload, ObjectNode variables, Set<String> resolving) {
+    private JsonNode evaluateSelector(JsonNode selector, PayloadContext ctx, ObjectNode variables, Set<String> resolving) {
         if (selector == null || !selector.isObject()) return NullNode.getInstance();
         if (selector.has("jsonPath")) {
-            try {
-                return JsonPath.using(jsonPathConfig).parse(payload).read(selector.get("jsonPath").asText(), JsonNode.class);
-            } catch (Exception e) {
-                return NullNode.getInstance();
-            }
+            JsonNode value = ctx.read(selector.get("jsonPath").asText());
+            return value == null ? NullNode.getInstance() : value;
         }
         if (selector.has("constant")) {
             return selector.get("constant");
@@ -177,7 +442,8 @@ public class MappingEngine {
             if (varSel == null) return NullNode.getInstance();
             resolving.add(name);
             try {
-                return evaluateSelector(varSel, payload, variables, resolving);
+                // variables are payload-level: inside a forEach body they still read from the payload root
+                return evaluateSelector(varSel, ctx.payload(), variables, resolving);
             } finally {
                 resolving.remove(name);
             }
@@ -185,14 +451,14 @@ public class MappingEngine {
         return NullNode.getInstance();
     }
 
-    private boolean evaluatePredicate(JsonNode predicate, JsonNode payload) {
+    private boolean evaluatePredicate(JsonNode predicate, PayloadContext ctx) {
         if (predicate == null || predicate.isMissingNode() || predicate.isNull()) return true; // no predicate → pass
         if (!predicate.isObject()) return true;
 
         // any
         if (predicate.has("any") && predicate.get("any").isArray()) {
             for (JsonNode atom : predicate.get("any")) {
-                if (evaluateAtom(atom, payload)) return true;
+                if (evaluateAtom(atom, ctx)) return true;
             }
             return false;
         }
@@ -200,79 +466,94 @@ public class MappingEngine {
         // all
         if (predicate.has("all") && predicate.get("all").isArray()) {
             for (JsonNode atom : predicate.get("all")) {
-                if (!evaluateAtom(atom, payload)) return false;
+                if (!evaluateAtom(atom, ctx)) return false;
             }
             return true;
         }
 
         // not
         if (predicate.has("not")) {
-            return !evaluatePredicate(predicate.get("not"), payload);
+            return !evaluatePredicate(predicate.get("not"), ctx);
         }
 
         return true;
     }
 
-    private boolean evaluateAtom(JsonNode atom, JsonNode payload) {
+    private boolean evaluateAtom(JsonNode atom, PayloadContext ctx) {
         if (atom == null || !atom.isObject()) return false;
         String jsonPath = atom.path("jsonPath").asText(null);
         JsonNode equalsTo = atom.get("equals");
         if (jsonPath == null) return false;
-        try {
-            JsonNode val = JsonPath.using(jsonPathConfig).parse(payload).read(jsonPath, JsonNode.class);
-            if (val == null) return false;
-            return val.equals(equalsTo);
-        } catch (Exception e) {
-            return false;
-        }
+        JsonNode val = ctx.read(jsonPath);
+        if (val == null) return false;
+        return val.equals(equalsTo);
     }
 
-    private JsonNode applyTransforms(JsonNode value, ArrayNode transforms, JsonNode payload, ObjectNode variables) {
+    // The chain was bound when the config was compiled; each step is a direct call with its arguments already parsed
+    private JsonNode applyTransforms(JsonNode value, TransformRegistry.BoundTransform[] chain, RuleTransformContext tc) {
         JsonNode current = value == null ? NullNode.getInstance() : value;
-        for (JsonNode t : transforms) {
-            if (!t.isObject()) continue;
-            String op = t.path("op").asText("");
-            switch (op) {
-                case "toInteger" -> current = valueToNode(toInteger(current));
-                case "toNumber" -> current = valueToNode(toNumber(current));
-                case "round" -> current = JsonUtils.round(current, t.path("places").asInt(0));
-                case "trim" -> current = JsonUtils.trim(current);
-                case "defaultIfEmpty" -> current = JsonUtils.defaultIfEmpty(current, t.get("value"));
-                case "unitConvert" -> current = JsonUtils.unitConvert(current, t.path("from").asText(""), t.path("to").asText(""));
-                case "parseDateTime" -> current = JsonUtils.parseDateTime(current);
-                case "toZoned" -> current = JsonUtils.toZoned(current, t.path("zone").asText("UTC"));
-                case "clamp" -> current = JsonUtils.clamp(current, t.path("min").asDouble(Double.NEGATIVE_INFINITY), t.path("max").asDouble(Double.POSITIVE_INFINITY));
-                case "lookup" -> {
-                    Map<String, String> table = new LinkedHashMap<>();
-                    Iterator<String> it = t.path("table").fieldNames();
-                    while (it.hasNext()) {
-                        String k = it.next();
-                        table.put(k, t.path("table").path(k).asText());
-                    }
-                    current = JsonUtils.lookup(current, table);
-                }
-                case "regexExtract" -> current = JsonUtils.regexExtract(current, t.path("pattern").asText(""), t.path("group").asInt(0));
-                case "concat" -> {
-                    String sep = t.path("separator").asText("");
-                    StringBuilder sb = new StringBuilder();
-                    boolean first = true;
-                    for (JsonNode part : t.path("parts")) {
-                        JsonNode pv;
-                        if (part.isTextual()) {
-                            pv = part;
-                        } else {
-                            pv = evaluateSelector(part, payload, variables);
-                        }
-                        String s = pv.isNull() ? "" : pv.asText("");
-                        if (!first) sb.append(sep);
-                        sb.append(s);
-                        first = false;
-                    }
-                    current = JsonNodeFactory.instance.textNode(sb.toString());
-                }
-            }
+        MappingTrace trace = tc.ctx.trace();
+        for (TransformRegistry.BoundTransform t : chain) {
+            long start = metrics.enabled() ? System.nanoTime() : 0L;
+            tc.op = t.op();
+            current = t.fn().apply(current, tc);
+            if (current == null) current = NullNode.getInstance();
+            if (metrics.enabled()) metrics.transformApplied(t.op(), System.nanoTime() - start);
+            if (trace != null) trace.transform(t.op(), current);
+        }
+        return current;
+    }
+
+    // What a transform sees of the rule being evaluated: selectors, per-payload array summaries, the error list
+    private final class RuleTransformContext implements TransformContext {
+        private final PayloadContext ctx;
+        private final ObjectNode variables;
+        private final Errors errors;
+        private final CompiledRule rule;
+        private final String scope;
+        private String op;
+
+        private RuleTransformContext(PayloadContext ctx, ObjectNode variables, Errors errors, CompiledRule rule, String scope) {
+            this.ctx = ctx;
+            this.variables = variables;
+            this.errors = errors;
+            this.rule = rule;
+            this.scope = scope;
+        }
+
+        @Override
+        public JsonNode select(JsonNode selector) {
+            return evaluateSelector(selector, ctx, variables);
+        }
+
+        @Override
+        public ArraySummary summarize(JsonNode array) {
+            return ctx.summarize(array);
+        }
+
+        @Override
+        public void report(String message) {
+            errors.add(MappingError.transform(rule, scope, op, message));
+        }
+    }
+
+    // Errors of one mapping: the config's own errors, copied into a list of its own only once the payload adds one
+    private static final class Errors {
+        private final List<MappingError> config;
+        private List<MappingError> all;
+
+        private Errors(List<MappingError> config) {
+            this.config = config;
+        }
+
+        void add(MappingError e) {
+            if (all == null) all = new ArrayList<>(config);
+            all.add(e);
+        }
+
+        List<MappingError> list() {
+            return all != null ? all : config;
         }
-        return current == null ? NullNode.getInstance() : current;
     }
 
     private String validateConstraints(JsonNode value, ArrayNode constraints) {
@@ -293,10 +574,18 @@ public class MappingEngine {
 
     // Utility to pretty print mapping result as JSON string
     public String toPrettyJson(ObjectNode node) {
+        MappingEvents.Serialization event = new MappingEvents.Serialization();
+        event.begin();
         try {
             return mapper.writerWithDefaultPrettyPrinter().writeValueAsString(node);
         } catch (JsonProcessingException e) {
             return node.toString();
+        } finally {
+            event.end();
+            if (event.shouldCommit()) {
+                event.kind = "JSON text";
+                event.commit();
+            }
         }
     }
 }
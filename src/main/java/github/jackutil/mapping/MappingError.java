@@ -0,0 +1,154 @@
+package github.jackutil.mapping;
+
+import java.util.Objects;
+
+/**
+ * One error of a mapping, as a record of what failed where rather than a sentence: a {@link Code}, the rule
+ * (its index in its rule list and its config location, e.g. {@code rules[3].rules[0]}), the target, and a
+ * detail such as the failed constraint kind or the transform op. Only what is already at hand is stored when
+ * the error happens; the text of {@link #message()} (the form {@link MappingResult#getErrors()} returns) is
+ * built when first asked for, so payloads with many errors cost one small object per error.
+ * <p>
+ * Immutable.
+ */
+public final class MappingError {
+    public enum Code {
+        /** A problem of the config itself (apiVersion, transform arguments, bundle entries), reported on every mapping. */
+        CONFIG,
+        /** The config has no rules. */
+        NO_RULES,
+        /** A rule that is not an object or has no target. */
+        INVALID_RULE,
+        /** A value failed one of its rule's constraints and was not written. */
+        CONSTRAINT,
+        /** A transform could not process its input. */
+        TRANSFORM,
+        /** A {@code nameBased} idStrategy field has no value in the payload; the submodel got a random id instead. */
+        ID_FIELD,
+        /** Mapping the payload threw; the output is empty. */
+        MAPPING_FAILED,
+        /** The payload could not be parsed, so it was not mapped; the output is empty. */
+        INVALID_PAYLOAD,
+        /** Free text passed to {@link MappingResult#MappingResult}. */
+        OTHER
+    }
+
+    private final Code code;
+    private final int ruleIndex;
+    private final String rule;
+    private final String scope;
+    private final String target;
+    private final String detail;
+    private final String text;
+    private final String submodel;
+    private String message;
+
+    private MappingError(Code code, int ruleIndex, String rule, String scope, String target, String detail, String text, String submodel) {
+        this.code = code;
+        this.ruleIndex = ruleIndex;
+        this.rule = rule;
+        this.scope = scope;
+        this.target = target;
+        this.detail = detail;
+        this.text = text;
+        this.submodel = submodel;
+    }
+
+    static MappingError of(Code code, String text) {
+        return new MappingError(code, -1, null, "", null, null, text, null);
+    }
+
+    static MappingError invalidRule(CompiledRule rule) {
+        return new MappingError(Code.INVALID_RULE, rule.index, rule.location, "", null, null, rule.invalid, null);
+    }
+
+    static MappingError constraint(CompiledRule rule, String scope, String kind) {
+        return new MappingError(Code.CONSTRAINT, rule.index, rule.location, scope, rule.target, kind, null, null);
+    }
+
+    static MappingError transform(CompiledRule rule, String scope, String op, String text) {
+        return new MappingError(Code.TRANSFORM, rule.index, rule.location, scope, rule.target, op, text, null);
+    }
+
+    static MappingError idField(String field) {
+        return new MappingError(Code.ID_FIELD, -1, null, "", null, field, null, null);
+    }
+
+    static MappingError mappingFailed(Throwable e) {
+        return new MappingError(Code.MAPPING_FAILED, -1, null, "", null, e.getClass().getName(), e.toString(), null);
+    }
+
+    /** This error as reported by the bundle entry {@code label}. */
+    MappingError inSubmodel(String label) {
+        return new MappingError(code, ruleIndex, rule, scope, target, detail, text, label);
+    }
+
+    public Code code() {
+        return code;
+    }
+
+    /** Index of the rule in its rule list (a {@code forEach} body for nested rules); -1 when not about one rule. */
+    public int ruleIndex() {
+        return ruleIndex;
+    }
+
+    /** Config location of the rule, e.g. {@code rules[3]} or {@code rules[3].rules[0]}; null when not about one rule. */
+    public String rule() {
+        return rule;
+    }
+
+    /** The rule's target as configured, e.g. {@code Parts/Qty}; null when not about one rule with a target. */
+    public String target() {
+        return target;
+    }
+
+    /** The target within this payload's output, with {@code forEach} element indexes, e.g. {@code Parts[2]/Qty}. */
+    public String path() {
+        return target == null ? null : scope + target;
+    }
+
+    /**
+     * The failed constraint kind for {@link Code#CONSTRAINT}, the op for {@link Code#TRANSFORM}, the field's
+     * jsonPath for {@link Code#ID_FIELD}, the exception class for {@link Code#MAPPING_FAILED}; otherwise null.
+     */
+    public String detail() {
+        return detail;
+    }
+
+    /** The bundle entry the error belongs to, null outside bundles. */
+    public String submodel() {
+        return submodel;
+    }
+
+    public String message() {
+        String m = message;
+        if (m == null) {
+            m = switch (code) {
+                case CONSTRAINT -> "Constraint failed at '" + path() + "': " + detail;
+                case TRANSFORM -> "Transform '" + detail + "' at '" + path() + "': " + text;
+                case ID_FIELD -> "idStrategy field '" + detail + "' has no value; generated a random id";
+                case MAPPING_FAILED -> "Mapping failed: " + text;
+                case INVALID_PAYLOAD -> "Invalid payload: " + text;
+                default -> text;
+            };
+            if (submodel != null) m = "[" + submodel + "] " + m;
+            message = m; // benign race: every thread computes the same text
+        }
+        return m;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof MappingError e && code == e.code && ruleIndex == e.ruleIndex && message().equals(e.message());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(code, ruleIndex, message());
+    }
+
+    @Override
+    public String toString() {
+        return message();
+    }
+}
@@ -0,0 +1,84 @@
+package github.jackutil.mapping;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the mapping phases. All are disabled by default; enable them in a
+ * recording (e.g. {@code jfr configure} or {@code Recording.enable("github.jackutil.aml.RuleEvaluation")}).
+ * Call sites only fill fields after {@code shouldCommit()}, so an unrecorded event costs no string building.
+ */
+final class MappingEvents {
+    private MappingEvents() {}
+
+    @Name("github.jackutil.aml.ConfigCompile")
+    @Label("AML Config Compile")
+    @Category({"AML", "Mapping"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class ConfigCompile extends Event {
+        @Label("Config")
+        String config;
+    }
+
+    @Name("github.jackutil.aml.PayloadParse")
+    @Label("AML Payload Parse")
+    @Category({"AML", "Mapping"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class PayloadParse extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Size")
+        @DataAmount
+        long bytes;
+
+        @Label("Memory Mapped")
+        boolean mapped;
+    }
+
+    @Name("github.jackutil.aml.RuleEvaluation")
+    @Label("AML Rule Evaluation")
+    @Category({"AML", "Mapping"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class RuleEvaluation extends Event {
+        @Label("Target")
+        String target;
+
+        @Label("Transform Ops")
+        @Description("Source and rule transform ops, in application order")
+        String ops;
+    }
+
+    @Name("github.jackutil.aml.SubmodelBuild")
+    @Label("AML Submodel Build")
+    @Category({"AML", "Mapping"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class SubmodelBuild extends Event {
+        @Label("idShort")
+        String idShort;
+
+        @Label("Elements")
+        int elements;
+    }
+
+    @Name("github.jackutil.aml.Serialization")
+    @Label("AML Output Serialization")
+    @Category({"AML", "Mapping"})
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Serialization extends Event {
+        @Label("Kind")
+        @Description("Submodel, Environment or JSON text")
+        String kind;
+    }
+}
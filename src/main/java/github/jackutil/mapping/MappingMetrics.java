@@ -0,0 +1,48 @@
+package github.jackutil.mapping;
+
+/**
+ * Instrumentation hooks called by {@link MappingEngine}. All methods default to no-ops; implementations
+ * must be thread-safe because one engine may map on many threads.
+ * The engine only reads the clock when {@link #enabled()} returns true, so {@link #NOOP} costs a branch per rule.
+ */
+public interface MappingMetrics {
+    MappingMetrics NOOP = new MappingMetrics() {};
+
+    default boolean enabled() {
+        return false;
+    }
+
+    /** One rule evaluated (predicate, source, fallbacks, transforms, constraints). */
+    default void ruleEvaluated(String target, long nanos) {}
+
+    /** A {@code when} predicate skipped the rule. */
+    default void ruleSkipped(String target) {}
+
+    /** The source was empty and a fallback entry produced a non-empty value. */
+    default void fallbackUsed(String target) {}
+
+    default void constraintFailed(String target, String kind) {}
+
+    default void transformApplied(String op, long nanos) {}
+
+    /** A JsonPath expression was evaluated against the payload (cache misses only). */
+    default void jsonPathRead() {}
+
+    /** {@link MappingResultCache} answered a payload from the cache. */
+    default void resultCacheHit() {}
+
+    /** {@link MappingResultCache} had to map the payload. */
+    default void resultCacheMiss() {}
+
+    /** {@link CompiledMappingRegistry} returned an already compiled config. */
+    default void planCacheHit() {}
+
+    /** {@link CompiledMappingRegistry} had no compiled config (it compiled it, or waited for another caller's compile). */
+    default void planCacheMiss() {}
+
+    /** {@link CompiledMappingRegistry} loaded and compiled a config. */
+    default void planCompiled(long nanos) {}
+
+    /** {@link CompiledMappingRegistry} dropped a compiled config to stay within its weight bound. */
+    default void planEvicted() {}
+}
@@ -0,0 +1,241 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Reactive mapping stage: maps every payload from upstream with one compiled config and publishes the results.
+ * <p>
+ * At most {@code prefetch} payloads are requested from upstream and not yet delivered downstream (received,
+ * mapping, or mapped and waiting), and upstream is only asked for more as results are delivered. A slow
+ * subscriber therefore throttles reading instead of growing a queue. Up to {@code parallelism} payloads are
+ * mapped at a time on the executor; with {@code ordered} results keep upstream order, otherwise they are
+ * delivered as they complete.
+ * <p>
+ * A payload whose mapping throws becomes a result with an empty output and the failure in
+ * {@link MappingResult#getErrors()}; the stream goes on. An upstream {@code onError} is passed on after the
+ * results already requested have been delivered. Supports a single subscriber.
+ */
+public final class MappingProcessor implements Flow.Processor<JsonNode, MappingResult> {
+    private final MappingEngine engine;
+    private final CompiledMapping compiled;
+    private final Executor executor;
+    private final int parallelism;
+    private final int prefetch;
+    private final int replenishAt;
+    private final boolean ordered;
+
+    private final AtomicReference<Flow.Subscription> upstream = new AtomicReference<>();
+    private final AtomicReference<Flow.Subscriber<? super MappingResult>> downstream = new AtomicReference<>();
+    private final Queue<Item> waiting = new ConcurrentLinkedQueue<>();
+    // ordered: slot sequence % prefetch; unordered: completion queue
+    private final AtomicReferenceArray<MappingResult> slots;
+    private final Queue<MappingResult> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile boolean cancelled;
+    // a downstream request(n <= 0); signalled by drain() so it cannot overlap an onNext
+    private volatile Throwable invalidRequest;
+
+    // touched only inside drain()
+    private long emitted;
+    private int consumed;
+    private boolean terminated;
+
+    /** Ordered, one payload at a time on the common pool, 32 payloads in flight. */
+    public MappingProcessor(MappingEngine engine, CompiledMapping compiled) {
+        this(engine, compiled, ForkJoinPool.commonPool(), 1, 32, true);
+    }
+
+    /**
+     * @param parallelism payloads mapped concurrently (at most {@code prefetch})
+     * @param prefetch    payloads requested from upstream and not yet delivered downstream
+     * @param ordered     deliver results in upstream order
+     */
+    public MappingProcessor(MappingEngine engine, CompiledMapping compiled, Executor executor, int parallelism, int prefetch, boolean ordered) {
+        if (parallelism < 1 || prefetch < 1) throw new IllegalArgumentException("parallelism and prefetch must be positive");
+        this.engine = Objects.requireNonNull(engine, "engine");
+        this.compiled = Objects.requireNonNull(compiled, "compiled");
+        this.executor = Objects.requireNonNull(executor, "executor");
+        this.prefetch = prefetch;
+        this.parallelism = Math.min(parallelism, prefetch);
+        this.replenishAt = Math.max(1, prefetch - (prefetch >> 2));
+        this.ordered = ordered;
+        this.slots = ordered ? new AtomicReferenceArray<>(prefetch) : null;
+    }
+
+    // ---- upstream side
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (!upstream.compareAndSet(null, subscription)) {
+            subscription.cancel();
+            return;
+        }
+        if (cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(JsonNode payload) {
+        if (done || cancelled) return;
+        waiting.add(new Item(received.getAndIncrement(), Objects.requireNonNull(payload, "payload")));
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        if (done) return;
+        error = throwable;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    // ---- downstream side
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super MappingResult> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {}
+
+                @Override
+                public void cancel() {}
+            });
+            subscriber.onError(new IllegalStateException("MappingProcessor supports a single subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                if (n <= 0) {
+                    if (invalidRequest == null) invalidRequest = new IllegalArgumentException("request must be positive, was " + n);
+                    cancel();
+                    return;
+                }
+                requested.getAndAccumulate(n, (a, b) -> a + b < 0 ? Long.MAX_VALUE : a + b);
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+                Flow.Subscription s = upstream.get();
+                if (s != null) s.cancel();
+                drain();
+            }
+        });
+        drain();
+    }
+
+    // ---- mapping
+
+    private record Item(long sequence, JsonNode payload) {}
+
+    private void start(Item item) {
+        try {
+            executor.execute(() -> complete(item.sequence, mapSafely(item.payload)));
+        } catch (RuntimeException e) {
+            complete(item.sequence, MappingResult.failed(e));
+        }
+    }
+
+    private MappingResult mapSafely(JsonNode payload) {
+        try {
+            return engine.map(compiled, payload);
+        } catch (Throwable e) {
+            // Errors too (StackOverflowError on a deeply nested payload): every started item must complete
+            return MappingResult.failed(e);
+        }
+    }
+
+    private void complete(long sequence, MappingResult result) {
+        if (ordered) slots.set((int) (sequence % prefetch), result);
+        else completed.add(result);
+        running.decrementAndGet();
+        drain();
+    }
+
+    /**
+     * Serialized work loop: starts waiting payloads, delivers results while there is demand, asks upstream
+     * for as many payloads as were delivered, and signals completion or an invalid request. All downstream
+     * signals after onSubscribe come from here, so they never overlap (Flow rule 1.3). Whichever thread finds {@code wip} at
+     * zero runs it; calls made meanwhile are folded into another pass.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) return;
+        int missed = 1;
+        do {
+            if (cancelled) {
+                waiting.clear();
+                completed.clear();
+                Throwable invalid = invalidRequest;
+                if (invalid != null && !terminated) {
+                    terminated = true;
+                    downstream.get().onError(invalid);
+                }
+            } else {
+                while (running.get() < parallelism) {
+                    Item item = waiting.poll();
+                    if (item == null) break;
+                    running.incrementAndGet();
+                    start(item);
+                }
+
+                Flow.Subscriber<? super MappingResult> subscriber = downstream.get();
+                if (subscriber != null) {
+                    long demand = requested.get();
+                    long delivered = 0;
+                    while (delivered != demand && !cancelled) {
+                        MappingResult next = ordered ? slots.getAndSet((int) (emitted % prefetch), null) : completed.poll();
+                        if (next == null) break;
+                        subscriber.onNext(next);
+                        emitted++;
+                        delivered++;
+                        consumed++;
+                    }
+                    if (delivered != 0 && demand != Long.MAX_VALUE) requested.addAndGet(-delivered);
+
+                    if (!cancelled && done && emitted == received.get()) {
+                        cancelled = true; // terminal; ignore further signals
+                        terminated = true;
+                        Throwable t = error;
+                        if (t != null) subscriber.onError(t);
+                        else subscriber.onComplete();
+                    } else if (consumed >= replenishAt && !done && !cancelled) {
+                        Flow.Subscription s = upstream.get();
+                        if (s != null) s.request(consumed);
+                        consumed = 0;
+                    }
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+}
@@ -1,5 +1,6 @@
 package github.jackutil.mapping;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.util.ArrayList;
@@ -8,21 +9,66 @@ import java.util.List;
 
 public final class MappingResult {
     private final ObjectNode output;
-    private final List<String> errors;
+    private final List<MappingError> errors;
+    // getErrors() text, rendered on first call
+    private List<String> messages;
 
     public MappingResult(ObjectNode output, List<String> errors) {
         if (output == null || errors == null){
             throw new IllegalArgumentException("Error: output or errors can not be null!");
         }
         this.output = output;
-        this.errors = new ArrayList<>(errors);
+        List<MappingError> records = new ArrayList<>(errors.size());
+        for (String e : errors) records.add(MappingError.of(MappingError.Code.OTHER, e));
+        this.errors = Collections.unmodifiableList(records);
+    }
+
+    private MappingResult(List<MappingError> errors, ObjectNode output) {
+        this.output = output;
+        this.errors = errors;
+    }
+
+    // errors is not copied: the engine hands over a list it no longer touches (or a shared immutable one)
+    static MappingResult of(ObjectNode output, List<MappingError> errors) {
+        return new MappingResult(Collections.unmodifiableList(errors), output);
+    }
+
+    /** An empty output with one {@link MappingError.Code#MAPPING_FAILED} error, for a mapping that threw. */
+    public static MappingResult failed(Throwable e) {
+        return of(JsonNodeFactory.instance.objectNode(), List.of(MappingError.mappingFailed(e)));
+    }
+
+    /** An empty output with one {@link MappingError.Code#INVALID_PAYLOAD} error, for input that is not JSON. */
+    public static MappingResult invalidPayload(String reason) {
+        return of(JsonNodeFactory.instance.objectNode(), List.of(MappingError.of(MappingError.Code.INVALID_PAYLOAD, reason)));
     }
 
     public ObjectNode getOutput() {
         return output;
     }
 
+    /** The errors as text, e.g. {@code Constraint failed at 'Weight': range}; see {@link #getMappingErrors()}. */
     public List<String> getErrors() {
-        return Collections.unmodifiableList(errors);
+        List<String> m = messages;
+        if (m == null) {
+            if (errors.isEmpty()) {
+                m = List.of();
+            } else {
+                List<String> text = new ArrayList<>(errors.size());
+                for (MappingError e : errors) text.add(e.message());
+                m = Collections.unmodifiableList(text);
+            }
+            messages = m;
+        }
+        return m;
+    }
+
+    /** The errors as records (code, rule, target, detail), in the order of {@link #getErrors()}. */
+    public List<MappingError> getMappingErrors() {
+        return errors;
+    }
+
+    public boolean hasErrors() {
+        return !errors.isEmpty();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Optional cache in front of {@link MappingEngine#map(CompiledMapping, JsonNode)} for streams that repeat
+ * payloads (device retransmits). Results are keyed by a 128-bit hash of the payload tree (see {@link PayloadHash})
+ * plus a hash of the config, so a changed config never serves old results.
+ * <p>
+ * Bounded by entry count and estimated heap bytes; the least recently used entry is evicted first. Cached
+ * outputs never leave the cache: every call gets its own copy, so callers may modify the returned
+ * {@code ObjectNode} without affecting later hits.
+ * <p>
+ * Only deterministic configs can be cached. A config whose submodel id is random or time-based
+ * ({@code uuidv4}, {@code uuidv7}, no idStrategy) is refused, because a hit would repeat an id that
+ * should have been new. For the same reason a result whose {@code nameBased} id fell back to a random one
+ * ({@link MappingError.Code#ID_FIELD}) is returned but not stored. Thread-safe.
+ */
+public final class MappingResultCache {
+    private final MappingEngine engine;
+    private final int maxEntries;
+    private final long maxBytes;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // config hash per compiled instance; weak so dropped configs do not pin memory
+    private final Map<CompiledMapping, Long> configHashes = new WeakHashMap<>();
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public MappingResultCache(MappingEngine engine, int maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) throw new IllegalArgumentException("maxEntries and maxBytes must be positive");
+        this.engine = engine;
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+    }
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Key(long config, long hi, long lo) {}
+
+    private record Entry(ObjectNode output, List<MappingError> errors, long bytes) {}
+
+    /**
+     * @throws IllegalArgumentException when the config's ids are not deterministic
+     */
+    public MappingResult map(CompiledMapping compiled, JsonNode payload) {
+        PayloadHash.Value hash = PayloadHash.of(payload);
+        Key key = new Key(configHash(compiled), hash.hi(), hash.lo());
+
+        Entry cached;
+        synchronized (this) {
+            cached = entries.get(key);
+            if (cached != null) hits++;
+            else misses++;
+        }
+        if (cached != null) {
+            engine.metrics().resultCacheHit();
+            return MappingResult.of(cached.output.deepCopy(), cached.errors);
+        }
+        engine.metrics().resultCacheMiss();
+
+        // mapped outside the lock; two threads missing on the same payload both map it, the last insert wins
+        MappingResult result = engine.map(compiled, payload);
+        for (MappingError e : result.getMappingErrors()) {
+            if (e.code() == MappingError.Code.ID_FIELD) return result;
+        }
+        ObjectNode snapshot = result.getOutput().deepCopy();
+        long size = JsonUtils.estimateBytes(snapshot);
+        if (size <= maxBytes) put(key, new Entry(snapshot, List.copyOf(result.getMappingErrors()), size));
+        return result;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private long configHash(CompiledMapping compiled) {
+        synchronized (configHashes) {
+            Long h = configHashes.get(compiled);
+            if (h != null) return h;
+        }
+        String reason = compiled.nondeterminism();
+        if (reason != null) {
+            throw new IllegalArgumentException("Config '" + compiled.getName() + "' cannot be cached: " + reason);
+        }
+        long h = PayloadHash.of(compiled.getConfig()).hi();
+        synchronized (configHashes) {
+            configHashes.put(compiled, h);
+        }
+        return h;
+    }
+
+    private synchronized void put(Key key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) bytes -= previous.bytes;
+        bytes += entry.bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+            bytes -= eldest.next().bytes;
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Per-rule evaluation trace for one {@link MappingEngine#map(CompiledMapping, JsonNode, MappingTrace)} call:
+ * whether {@code when} passed, which source or fallback produced the value, the value after every transform,
+ * payload reads, time spent and constraint rejections. Rules appear in evaluation order; forEach items show up
+ * as nested targets such as {@code childItems[0]/serialNumber}. Not thread-safe; use one trace per mapping.
+ */
+public final class MappingTrace {
+    private static final JsonNodeFactory F = JsonNodeFactory.instance;
+
+    private final List<ObjectNode> rules = new ArrayList<>();
+    private final Deque<Frame> open = new ArrayDeque<>();
+    private String submodel;
+    private long totalNanos;
+
+    void beginSubmodel(String label) {
+        this.submodel = label;
+    }
+
+    void beginRule(String target) {
+        ObjectNode rule = F.objectNode();
+        if (submodel != null) rule.put("submodel", submodel);
+        rule.put("target", target);
+        rules.add(rule);
+        open.push(new Frame(rule, System.nanoTime()));
+    }
+
+    void endRule() {
+        Frame f = open.pop();
+        long nanos = System.nanoTime() - f.start;
+        f.rule.put("nanos", nanos);
+        // nested forEach rules are already included in their parent's time
+        if (open.isEmpty()) totalNanos += nanos;
+        f.rule.put("payloadReads", f.reads);
+        f.rule.put("cachedReads", f.cachedReads);
+        if (f.hints != null) f.rule.set("hints", f.hints);
+    }
+
+    void when(boolean passed) {
+        Frame f = open.peek();
+        if (f != null) f.rule.put("when", passed);
+    }
+
+    /** A value was read for the rule; {@code stage} is "source", "fallback[i]" or "project.<key>". */
+    void read(String stage, JsonNode selector, JsonNode value) {
+        Frame f = open.peek();
+        if (f == null) return;
+        ObjectNode step = steps(f).addObject();
+        step.put("stage", stage);
+        if (selector != null) step.set("selector", selector);
+        step.set("value", value == null ? NullNode.getInstance() : value);
+    }
+
+    void transform(String op, JsonNode value) {
+        Frame f = open.peek();
+        if (f == null) return;
+        ObjectNode step = steps(f).addObject();
+        step.put("op", op);
+        step.set("value", value == null ? NullNode.getInstance() : value);
+    }
+
+    void producedBy(String stage) {
+        Frame f = open.peek();
+        if (f != null) f.rule.put("producedBy", stage);
+    }
+
+    void rejected(String constraint) {
+        Frame f = open.peek();
+        if (f != null) f.rule.put("rejectedBy", constraint);
+    }
+
+    void result(JsonNode value) {
+        Frame f = open.peek();
+        if (f != null) f.rule.set("result", value);
+    }
+
+    void items(int count) {
+        Frame f = open.peek();
+        if (f != null) f.rule.put("items", count);
+    }
+
+    // Called by PayloadContext for every JsonPath lookup made while a rule is open
+    void pathRead(String jsonPath, boolean cached) {
+        Frame f = open.peek();
+        if (f == null) return;
+        if (cached) {
+            f.cachedReads++;
+            return;
+        }
+        f.reads++;
+        if (jsonPath.contains("..")) hint(f, "deep scan '" + jsonPath + "' walks the whole payload");
+        if (jsonPath.contains("?(")) hint(f, "filter '" + jsonPath + "' is evaluated for every candidate element");
+    }
+
+    private static void hint(Frame f, String text) {
+        if (f.hints == null) f.hints = F.arrayNode();
+        f.hints.add(text);
+    }
+
+    private static ArrayNode steps(Frame f) {
+        JsonNode steps = f.rule.get("steps");
+        return steps != null ? (ArrayNode) steps : f.rule.putArray("steps");
+    }
+
+    public List<ObjectNode> getRules() {
+        return List.copyOf(rules);
+    }
+
+    public ObjectNode toJson() {
+        ObjectNode root = F.objectNode();
+        root.put("totalRuleNanos", totalNanos);
+        root.putArray("rules").addAll(rules);
+        return root;
+    }
+
+    private static final class Frame {
+        private final ObjectNode rule;
+        private final long start;
+        private int reads;
+        private int cachedReads;
+        private ArrayNode hints;
+
+        private Frame(ObjectNode rule, long start) {
+            this.rule = rule;
+            this.start = start;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read state for one payload, shared by every rule (and every submodel of a bundle) mapped from it.
+ * JsonPath results are cached by expression, so a selector used by several rules, variables or
+ * aspects walks the payload once; the parsed expressions come from the plan's {@link JsonPaths}. Deep scans of a single field ({@code $..serialNumber}) are answered
+ * from a field-name index built on the first such read, so every further deep scan skips the tree walk.
+ * Array summaries used by aggregate transforms are cached per array node in the same way.
+ * Created per {@code map} call; not thread-safe until {@link #shareBetweenThreads()} is called.
+ */
+final class PayloadContext {
+    // Stands in for a null read result so "read, found nothing" is cached too
+    private static final JsonNode NOT_FOUND = MissingNode.getInstance();
+
+    private final JsonNode root;
+    private final MappingEngine engine;
+    private final JsonPaths paths;
+    private final MappingTrace trace;
+    // the context of the whole payload; this one unless created by child()
+    private final PayloadContext payload;
+    private Map<String, JsonNode> reads;
+    private FieldIndex fieldIndex;
+    // keyed by node identity: cached reads hand every rule the same array instance
+    private Map<JsonNode, ArraySummary> summaries;
+    private boolean concurrent;
+
+    PayloadContext(JsonNode root, MappingEngine engine, JsonPaths paths) {
+        this(root, engine, paths, null);
+    }
+
+    PayloadContext(JsonNode root, MappingEngine engine, JsonPaths paths, MappingTrace trace) {
+        this(root, engine, paths, trace, null);
+    }
+
+    private PayloadContext(JsonNode root, MappingEngine engine, JsonPaths paths, MappingTrace trace, PayloadContext payload) {
+        this.root = root;
+        this.engine = engine;
+        this.paths = paths;
+        this.trace = trace;
+        this.payload = payload == null ? this : payload;
+    }
+
+    JsonNode root() {
+        return root;
+    }
+
+    /** @return the explain trace, or null when tracing is off (the common case) */
+    MappingTrace trace() {
+        return trace;
+    }
+
+    /**
+     * @return the JsonPath result, or null when the path does not resolve (or is invalid)
+     */
+    JsonNode read(String jsonPath) {
+        if (reads == null) reads = new HashMap<>(); // never null once concurrent
+        JsonNode cached = reads.get(jsonPath);
+        if (trace != null) trace.pathRead(jsonPath, cached != null);
+        if (cached == null) {
+            JsonPaths.Entry parsed = paths.get(jsonPath);
+            JsonNode value = parsed.deepScanField() != null
+                    ? deepScan(parsed.deepScanField()) : engine.readPath(root, parsed.path());
+            cached = value == null ? NOT_FOUND : value;
+            reads.put(jsonPath, cached);
+        }
+        return cached == NOT_FOUND ? null : cached;
+    }
+
+    // Same result as Jayway's $..field with DEFAULT_PATH_LEAF_TO_NULL: one entry per object node in
+    // document pre-order, holding the object's field value or null when the object lacks the field
+    private JsonNode deepScan(String field) {
+        if (concurrent) {
+            synchronized (this) {
+                if (fieldIndex == null) fieldIndex = new FieldIndex(root);
+            }
+        } else if (fieldIndex == null) {
+            fieldIndex = new FieldIndex(root);
+        }
+        return fieldIndex.scan(field);
+    }
+
+    /**
+     * Switches the caches to thread-safe maps, keeping what was read so far, so rules evaluated in parallel
+     * share them. Call before handing the context to other threads; the trace is not supported then.
+     * Two threads missing on the same path may both read it; either result is kept.
+     */
+    void shareBetweenThreads() {
+        if (concurrent) return;
+        reads = reads == null ? new ConcurrentHashMap<>() : new ConcurrentHashMap<>(reads);
+        summaries = Collections.synchronizedMap(summaries == null ? new IdentityHashMap<>() : summaries);
+        concurrent = true;
+    }
+
+    /** Aggregates over one array node share a single pass per payload. */
+    ArraySummary summarize(JsonNode array) {
+        if (array == null) return ArraySummary.of(null);
+        if (summaries == null) summaries = new IdentityHashMap<>();
+        return summaries.computeIfAbsent(array, ArraySummary::of);
+    }
+
+    /**
+     * Context rooted at a sub-document (e.g. a forEach element); shares the trace with this one, and
+     * {@link #payload()} still leads to the whole payload.
+     */
+    PayloadContext child(JsonNode subRoot) {
+        return new PayloadContext(subRoot, engine, paths, trace, payload);
+    }
+
+    /** The context of the whole payload, which variables are read against; this one outside forEach bodies. */
+    PayloadContext payload() {
+        return payload;
+    }
+
+    // Every object node of the payload in pre-order, plus for each field name the objects that have it
+    private static final class FieldIndex {
+        private final List<JsonNode> objects = new ArrayList<>();
+        private final Map<String, int[]> positions = new HashMap<>();
+        private final Map<String, Integer> counts = new HashMap<>();
+
+        private FieldIndex(JsonNode root) {
+            if (root.isContainerNode()) walk(root);
+            counts.forEach((name, n) -> {
+                int[] p = positions.get(name);
+                if (p.length != n) positions.put(name, Arrays.copyOf(p, n));
+            });
+        }
+
+        private void walk(JsonNode node) {
+            if (node.isObject()) {
+                int index = objects.size();
+                objects.add(node);
+                Iterator<String> names = node.fieldNames();
+                while (names.hasNext()) add(names.next(), index);
+            }
+            for (JsonNode child : node) {
+                if (child.isContainerNode()) walk(child);
+            }
+        }
+
+        private void add(String name, int index) {
+            int n = counts.merge(name, 1, Integer::sum);
+            int[] p = positions.get(name);
+            if (p == null) positions.put(name, p = new int[4]);
+            else if (p.length < n) positions.put(name, p = Arrays.copyOf(p, p.length * 2));
+            p[n - 1] = index;
+        }
+
+        private ArrayNode scan(String field) {
+            ArrayNode out = JsonNodeFactory.instance.arrayNode(objects.size());
+            int[] hits = positions.get(field);
+            int next = 0;
+            for (int i = 0; i < objects.size(); i++) {
+                if (hits != null && next < hits.length && hits[next] == i) {
+                    out.add(objects.get(i).get(field));
+                    next++;
+                } else {
+                    out.add(NullNode.getInstance());
+                }
+            }
+            return out;
+        }
+    }
+}
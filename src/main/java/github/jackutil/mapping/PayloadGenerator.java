@@ -0,0 +1,387 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Generates randomized payloads from a schema produced by {@link SchemaExporter#exportPayloadSchema}.
+ * Values follow the schema's {@code enum}, {@code pattern}, {@code minimum}/{@code maximum}, {@code maxLength},
+ * {@code date-time} and {@code x-aml-hint: numeric} hints; a configurable share of fields is omitted (to exercise {@code fallback}) or
+ * replaced with a value that violates its constraint (to exercise {@code constraints}).
+ * The same seed and settings always produce the same sequence. Not thread-safe.
+ */
+public class PayloadGenerator {
+    private static final JsonNodeFactory F = JsonNodeFactory.instance;
+    private static final String ALNUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    // 2020-01-01T00:00:00Z .. 2030-01-01T00:00:00Z
+    private static final long MIN_EPOCH = 1_577_836_800L;
+    private static final long MAX_EPOCH = 1_893_456_000L;
+
+    private final JsonNode schema;
+    private final SplittableRandom random;
+    private final Map<String, Pattern> patterns = new HashMap<>();
+    private int minItems = 1;
+    private int maxItems = 5;
+    private double missingRate;
+    private double invalidRate;
+
+    public PayloadGenerator(JsonNode schema, long seed) {
+        this.schema = rootObject(schema);
+        this.random = new SplittableRandom(seed);
+    }
+
+    /** Array lengths are drawn uniformly from {@code [min, max]} (default 1..5). */
+    public PayloadGenerator arraySize(int min, int max) {
+        if (min < 0 || max < min) throw new IllegalArgumentException("Invalid array size range: " + min + ".." + max);
+        this.minItems = min;
+        this.maxItems = max;
+        return this;
+    }
+
+    /** Probability (0..1) that any field below the root is left out. */
+    public PayloadGenerator missingRate(double rate) {
+        this.missingRate = checkRate(rate);
+        return this;
+    }
+
+    /** Probability (0..1) that a constrained leaf gets a value its constraint rejects. */
+    public PayloadGenerator invalidRate(double rate) {
+        this.invalidRate = checkRate(rate);
+        return this;
+    }
+
+    public JsonNode next() {
+        return generate(schema);
+    }
+
+    /** Write {@code count} payloads as newline-delimited JSON; the stream is flushed but not closed. */
+    public void writeNdjson(OutputStream out, long count) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            gen.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            gen.setRootValueSeparator(null);
+            for (long i = 0; i < count; i++) {
+                mapper.writeTree(gen, next());
+                gen.writeRaw('\n');
+            }
+        }
+    }
+
+    private JsonNode generate(JsonNode node) {
+        String type = node.path("type").asText("string");
+        switch (type) {
+            case "object" -> {
+                ObjectNode obj = F.objectNode();
+                Iterator<Map.Entry<String, JsonNode>> it = node.path("properties").properties().iterator();
+                while (it.hasNext()) {
+                    Map.Entry<String, JsonNode> e = it.next();
+                    if (missingRate > 0 && random.nextDouble() < missingRate) continue;
+                    obj.set(e.getKey(), generate(e.getValue()));
+                }
+                return obj;
+            }
+            case "array" -> {
+                ArrayNode arr = F.arrayNode();
+                int size = minItems + random.nextInt(maxItems - minItems + 1);
+                JsonNode items = node.path("items");
+                for (int i = 0; i < size; i++) arr.add(generate(items));
+                return arr;
+            }
+            default -> {
+                boolean invalid = invalidRate > 0 && random.nextDouble() < invalidRate;
+                return invalid ? invalidLeaf(node) : validLeaf(node);
+            }
+        }
+    }
+
+    private JsonNode validLeaf(JsonNode node) {
+        if (node.path("enum").isArray() && !node.get("enum").isEmpty()) {
+            return node.get("enum").get(random.nextInt(node.get("enum").size()));
+        }
+        if (node.has("minimum") || node.has("maximum")) {
+            double max = node.has("maximum") ? node.get("maximum").asDouble() : node.path("minimum").asDouble() + 1000;
+            double min = node.has("minimum") ? node.get("minimum").asDouble() : Math.min(0, max - 1000);
+            if (max < min) return F.numberNode(min);
+            if (isIntegral(node.get("minimum")) && isIntegral(node.get("maximum"))) {
+                return F.numberNode((long) min + random.nextLong((long) max - (long) min + 1));
+            }
+            return F.numberNode(Math.round((min + random.nextDouble() * (max - min)) * 100) / 100.0);
+        }
+        if ("numeric".equals(node.path("x-aml-hint").asText())) {
+            return F.numberNode(Math.round(random.nextDouble() * 100_000) / 100.0);
+        }
+        if ("date-time".equals(node.path("format").asText())) {
+            return F.textNode(Instant.ofEpochSecond(MIN_EPOCH + random.nextLong(MAX_EPOCH - MIN_EPOCH)).toString());
+        }
+        int maxLength = node.path("maxLength").asInt(Integer.MAX_VALUE);
+        if (node.hasNonNull("pattern")) {
+            String s = fromPattern(node.get("pattern").asText());
+            if (s != null && s.length() <= maxLength) return F.textNode(s);
+        }
+        return F.textNode(maxLength <= 0 ? "" : randomString(1 + random.nextInt(Math.min(12, maxLength))));
+    }
+
+    private JsonNode invalidLeaf(JsonNode node) {
+        if (node.path("enum").isArray()) {
+            return F.textNode("INVALID_" + randomString(4));
+        }
+        if (node.has("minimum") || node.has("maximum")) {
+            double min = node.path("minimum").asDouble(0);
+            double max = node.path("maximum").asDouble(min);
+            double span = Math.max(1, max - min);
+            return F.numberNode(random.nextBoolean() && node.has("maximum") ? max + span : min - span);
+        }
+        if ("date-time".equals(node.path("format").asText())) {
+            return F.textNode("not-a-date");
+        }
+        if ("numeric".equals(node.path("x-aml-hint").asText())) {
+            return F.textNode("NaN-" + randomString(3));
+        }
+        if (node.has("maxLength")) {
+            return F.textNode(randomString(node.get("maxLength").asInt() + 1 + random.nextInt(5)));
+        }
+        if (node.hasNonNull("pattern")) {
+            // ' ' and '#' around a random word rarely satisfy a real-world pattern; retry otherwise
+            Pattern p = compiled(node.get("pattern").asText());
+            for (int i = 0; i < 5; i++) {
+                String s = " #" + randomString(3 + random.nextInt(5)) + "# ";
+                if (p == null || !p.matcher(s).matches()) return F.textNode(s);
+            }
+        }
+        return validLeaf(node); // nothing to violate
+    }
+
+    private String randomString(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(ALNUM.charAt(random.nextInt(ALNUM.length())));
+        return sb.toString();
+    }
+
+    // Generate a match for common patterns (literals, classes, escapes, groups, alternation, quantifiers);
+    // null when the pattern uses unsupported syntax or the attempt does not match
+    private String fromPattern(String regex) {
+        Pattern p = compiled(regex);
+        if (p == null) return null;
+        for (int attempt = 0; attempt < 3; attempt++) {
+            try {
+                StringBuilder sb = new StringBuilder();
+                new RegexWriter(regex, sb).alternation();
+                String s = sb.toString();
+                if (p.matcher(s).matches()) return s;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Pattern compiled(String regex) {
+        return patterns.computeIfAbsent(regex, r -> {
+            try {
+                return Pattern.compile(r);
+            } catch (Exception e) {
+                return null;
+            }
+        });
+    }
+
+    // SchemaExporter describes the payload root inside its top-level "properties" node
+    // ({ properties: { type: object, properties: {...}, required } }); plain object schemas are used as-is
+    private static JsonNode rootObject(JsonNode schema) {
+        JsonNode inner = schema.path("properties");
+        if ("object".equals(inner.path("type").asText()) && inner.path("properties").isObject()) return inner;
+        return schema;
+    }
+
+    private static boolean isIntegral(JsonNode n) {
+        return n == null || n.isIntegralNumber();
+    }
+
+    private static double checkRate(double rate) {
+        if (rate < 0 || rate > 1) throw new IllegalArgumentException("Rate must be within 0..1: " + rate);
+        return rate;
+    }
+
+    // Recursive-descent writer over the regex text; emits one random match while parsing
+    private final class RegexWriter {
+        private final String re;
+        private final StringBuilder out;
+        private int pos;
+
+        private RegexWriter(String re, StringBuilder out) {
+            this.re = re;
+            this.out = out;
+        }
+
+        private void alternation() {
+            // choose a branch up front, then write only that one
+            List<int[]> branches = new ArrayList<>();
+            int start = pos;
+            int depth = 0;
+            int end = pos;
+            for (; end < re.length(); end++) {
+                char c = re.charAt(end);
+                if (c == '\\') { end++; continue; }
+                if (c == '[') { end = classEnd(end); continue; }
+                if (c == '(') depth++;
+                else if (c == ')') { if (depth == 0) break; depth--; }
+                else if (c == '|' && depth == 0) { branches.add(new int[] {start, end}); start = end + 1; }
+            }
+            branches.add(new int[] {start, end});
+            int[] chosen = branches.get(random.nextInt(branches.size()));
+            pos = chosen[0];
+            sequence(chosen[1]);
+            pos = end;
+        }
+
+        private void sequence(int end) {
+            while (pos < end) {
+                char c = re.charAt(pos);
+                if (c == '^' || c == '$') { pos++; continue; }
+                int atomStart = pos;
+                int atomEnd = skipAtom();
+                int[] q = quantifier();
+                int reps = q[0] + (q[1] > q[0] ? random.nextInt(q[1] - q[0] + 1) : 0);
+                int after = pos;
+                for (int i = 0; i < reps; i++) {
+                    pos = atomStart;
+                    atom(atomEnd);
+                }
+                pos = after;
+            }
+        }
+
+        private int skipAtom() {
+            char c = re.charAt(pos);
+            if (c == '\\') pos += 2;
+            else if (c == '[') pos = classEnd(pos) + 1;
+            else if (c == '(') {
+                int depth = 0;
+                for (; pos < re.length(); pos++) {
+                    char d = re.charAt(pos);
+                    if (d == '\\') { pos++; continue; }
+                    if (d == '[') { pos = classEnd(pos); continue; }
+                    if (d == '(') depth++;
+                    else if (d == ')' && --depth == 0) break;
+                }
+                pos++;
+            } else pos++;
+            return pos;
+        }
+
+        private int[] quantifier() {
+            if (pos >= re.length()) return new int[] {1, 1};
+            char c = re.charAt(pos);
+            int[] q = switch (c) {
+                case '?' -> new int[] {0, 1};
+                case '*' -> new int[] {0, 3};
+                case '+' -> new int[] {1, 4};
+                case '{' -> {
+                    int close = re.indexOf('}', pos);
+                    if (close < 0) throw new IllegalArgumentException(re);
+                    String[] parts = re.substring(pos + 1, close).split(",", -1);
+                    int min = Integer.parseInt(parts[0].trim());
+                    int max = parts.length == 1 ? min : parts[1].isBlank() ? min + 3 : Integer.parseInt(parts[1].trim());
+                    pos = close;
+                    yield new int[] {min, max};
+                }
+                default -> null;
+            };
+            if (q == null) return new int[] {1, 1};
+            pos++;
+            if (pos < re.length() && (re.charAt(pos) == '?' || re.charAt(pos) == '+')) pos++; // lazy/possessive
+            return q;
+        }
+
+        private void atom(int end) {
+            char c = re.charAt(pos);
+            switch (c) {
+                case '\\' -> out.append(escape(re.charAt(pos + 1)));
+                case '[' -> out.append(charClass(pos + 1, end - 1));
+                case '(' -> {
+                    int inner = pos + 1;
+                    if (inner < re.length() && re.charAt(inner) == '?') {
+                        if (inner + 1 < re.length() && re.charAt(inner + 1) == ':') inner += 2;
+                        else throw new IllegalArgumentException(re); // lookaround, named groups, flags
+                    }
+                    pos = inner;
+                    alternation();
+                }
+                case '.' -> out.append(ALNUM.charAt(random.nextInt(ALNUM.length())));
+                default -> out.append(c);
+            }
+            pos = end;
+        }
+
+        private char escape(char e) {
+            return switch (e) {
+                case 'd' -> (char) ('0' + random.nextInt(10));
+                case 'w' -> ALNUM.charAt(random.nextInt(ALNUM.length()));
+                case 's' -> ' ';
+                case 'D', 'W', 'S' -> '-';
+                case 'b', 'B', 'A', 'z', 'Z', 'p', 'P', 'k', 'Q', 'E' -> throw new IllegalArgumentException("\\" + e);
+                default -> Character.isDigit(e) ? failBackref() : e;
+            };
+        }
+
+        private char failBackref() {
+            throw new IllegalArgumentException("backreference");
+        }
+
+        private char charClass(int from, int to) {
+            boolean negated = from < to && re.charAt(from) == '^';
+            if (negated) from++;
+            StringBuilder members = new StringBuilder();
+            for (int i = from; i < to; i++) {
+                char c = re.charAt(i);
+                if (c == '\\' && i + 1 < to) {
+                    char e = re.charAt(++i);
+                    switch (e) {
+                        case 'd' -> members.append("0123456789");
+                        case 'w' -> members.append(ALNUM).append('_');
+                        case 's' -> members.append(' ');
+                        default -> members.append(e);
+                    }
+                } else if (i + 2 < to && re.charAt(i + 1) == '-') {
+                    char last = re.charAt(i + 2);
+                    for (char r = c; r <= last; r++) members.append(r);
+                    i += 2;
+                } else {
+                    members.append(c);
+                }
+            }
+            if (!negated) {
+                if (members.isEmpty()) throw new IllegalArgumentException(re);
+                return members.charAt(random.nextInt(members.length()));
+            }
+            for (int i = 0; i < 20; i++) {
+                char candidate = ALNUM.charAt(random.nextInt(ALNUM.length()));
+                if (members.indexOf(String.valueOf(candidate)) < 0) return candidate;
+            }
+            throw new IllegalArgumentException(re);
+        }
+
+        // index of the ']' closing the class that starts at 'open'
+        private int classEnd(int open) {
+            int i = open + 1;
+            if (i < re.length() && re.charAt(i) == '^') i++;
+            if (i < re.length() && re.charAt(i) == ']') i++;
+            for (; i < re.length(); i++) {
+                char c = re.charAt(i);
+                if (c == '\\') { i++; continue; }
+                if (c == ']') return i;
+            }
+            throw new IllegalArgumentException(re);
+        }
+    }
+}
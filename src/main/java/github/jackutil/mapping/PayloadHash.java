@@ -0,0 +1,120 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Map;
+
+/**
+ * 128-bit non-cryptographic hash of a JSON tree (two murmur3-style lanes), computed by walking the tree
+ * instead of serializing it. Every node is prefixed with its type and containers with their size, so
+ * {@code "1"} and {@code 1} or {@code [[]]} and {@code [[],[]]} hash differently.
+ * <p>
+ * Object fields are hashed in document order, not sorted: deep scans and wildcards return values in that
+ * order, so two payloads that differ only in field order may map differently.
+ */
+final class PayloadHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+
+    private long h1;
+    private long h2;
+    private long length;
+
+    private PayloadHash(long seed) {
+        this.h1 = seed;
+        this.h2 = seed ^ 0x9e3779b97f4a7c15L;
+    }
+
+    record Value(long hi, long lo) {}
+
+    static Value of(JsonNode node) {
+        PayloadHash h = new PayloadHash(0x5bd1e995L);
+        h.node(node);
+        return h.finish();
+    }
+
+    private void node(JsonNode n) {
+        switch (n.getNodeType()) {
+            case OBJECT -> {
+                mix('O', n.size());
+                for (Map.Entry<String, JsonNode> e : n.properties()) {
+                    text(e.getKey());
+                    node(e.getValue());
+                }
+            }
+            case ARRAY -> {
+                mix('A', n.size());
+                for (int i = 0, size = n.size(); i < size; i++) node(n.get(i));
+            }
+            case STRING -> {
+                mix('S', 0);
+                text(n.textValue());
+            }
+            case NUMBER -> {
+                if (n.isIntegralNumber() && n.canConvertToLong()) {
+                    mix('I', n.longValue());
+                } else {
+                    // keeps 1.0 and 1.00 (BigDecimal) apart, as the transforms do
+                    mix('N', n.numberType().ordinal());
+                    text(n.asText());
+                }
+            }
+            case BOOLEAN -> mix(n.booleanValue() ? 'T' : 'F', 0);
+            case NULL, MISSING -> mix('Z', 0);
+            default -> {
+                mix('X', 0);
+                text(n.toString());
+            }
+        }
+    }
+
+    private void text(String s) {
+        int n = s.length();
+        mix('s', n);
+        int i = 0;
+        for (; i + 4 <= n; i += 4) {
+            block((long) s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32 | (long) s.charAt(i + 3) << 48);
+        }
+        long tail = 0;
+        for (int shift = 0; i < n; i++, shift += 16) tail |= (long) s.charAt(i) << shift;
+        if ((n & 3) != 0) block(tail);
+    }
+
+    private void mix(char tag, long value) {
+        block(tag);
+        block(value);
+    }
+
+    private void block(long k) {
+        length++;
+        long k1 = Long.rotateLeft(k * C1, 31) * C2;
+        h1 ^= k1;
+        h1 = Long.rotateLeft(h1, 27) + h2;
+        h1 = h1 * 5 + 0x52dce729;
+        long k2 = Long.rotateLeft(k * C2, 33) * C1;
+        h2 ^= k2;
+        h2 = Long.rotateLeft(h2, 31) + h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private Value finish() {
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        return new Value(h1, h2);
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
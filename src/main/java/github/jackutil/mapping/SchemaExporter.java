@@ -6,8 +6,6 @@ import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * Build a best-effort JSON Schema for the expected payload based on an AML config.
@@ -32,34 +30,82 @@ public class SchemaExporter {
         Map<String, Set<String>> requiredAt = new HashMap<>();
 
         Map<String, JsonNode> variables = new HashMap<>();
+        collectVariables(config, variables);
+        collectConfig(config, variables, properties, requiredAt);
+
+        // bundle: union of every entry's inputs (entry variables override the shared ones)
+        if (config.path("submodels").isArray()) {
+            for (JsonNode entry : config.get("submodels")) {
+                Map<String, JsonNode> entryVariables = new HashMap<>(variables);
+                collectVariables(entry, entryVariables);
+                collectConfig(entry, entryVariables, properties, requiredAt);
+            }
+        }
+
+        applyRequired(properties, requiredAt, "$");
+        return root;
+    }
+
+    private void collectVariables(JsonNode config, Map<String, JsonNode> variables) {
         if (config.has("variables") && config.get("variables").isObject()) {
             config.get("variables").properties().iterator().forEachRemaining(e -> variables.put(e.getKey(), e.getValue()));
         }
+    }
 
+    private void collectConfig(JsonNode config, Map<String, JsonNode> variables, ObjectNode properties, Map<String, Set<String>> requiredAt) {
         if (config.has("rules") && config.get("rules").isArray()) {
-            for (JsonNode rule : config.get("rules")) {
-                List<JsonNode> selectors = new ArrayList<>();
-                if (rule.has("source")) selectors.add(rule.get("source"));
-                if (rule.has("fallback") && rule.get("fallback").isArray()) rule.get("fallback").forEach(selectors::add);
-                if (rule.has("project") && rule.get("project").isObject()) rule.get("project").elements().forEachRemaining(selectors::add);
-
-                boolean hasFallbackNonJsonPath = hasNonJsonPathFallback(rule);
-
-                for (JsonNode sel : selectors) {
-                    List<String> jsonPaths = resolveJsonPaths(sel, variables, new HashSet<>());
-                    for (String jp : jsonPaths) {
-                        TypeHint hint = inferTypeHint(sel);
-                        addPath(properties, requiredAt, jp, hint, rule.get("constraints"));
-                        if (!hasFallbackNonJsonPath && isDirectSource(rule, sel, jp)) {
-                            markRequired(requiredAt, jp);
-                        }
+            collectRules(config.get("rules"), null, variables, properties, requiredAt);
+        }
+
+        // nameBased ids are derived from payload fields, so those fields are expected inputs too
+        JsonNode idStrategy = config.path("submodel").path("idStrategy");
+        if ("nameBased".equals(idStrategy.path("kind").asText(""))) {
+            for (JsonNode field : idStrategy.path("fields")) {
+                addPath(properties, requiredAt, field.asText(), TypeHint.UNKNOWN, null);
+                markRequired(requiredAt, field.asText());
+            }
+        }
+    }
+
+    private void collectRules(JsonNode rules, String basePath, Map<String, JsonNode> variables, ObjectNode properties, Map<String, Set<String>> requiredAt) {
+        for (JsonNode rule : rules) {
+            // forEach: nested selectors are relative to each selected element
+            if (rule.has("forEach")) {
+                for (String each : resolveJsonPaths(rule.get("forEach"), variables, new HashSet<>())) {
+                    String itemPath = rebase(basePath, each);
+                    if (!itemPath.endsWith("[*]")) itemPath = itemPath + "[*]";
+                    if (rule.path("rules").isArray()) collectRules(rule.get("rules"), itemPath, variables, properties, requiredAt);
+                }
+                continue;
+            }
+
+            List<JsonNode> selectors = new ArrayList<>();
+            if (rule.has("source")) selectors.add(rule.get("source"));
+            if (rule.has("fallback") && rule.get("fallback").isArray()) rule.get("fallback").forEach(selectors::add);
+            if (rule.has("project") && rule.get("project").isObject()) rule.get("project").elements().forEachRemaining(selectors::add);
+
+            boolean hasFallbackNonJsonPath = hasNonJsonPathFallback(rule);
+
+            for (JsonNode sel : selectors) {
+                List<String> jsonPaths = resolveJsonPaths(sel, variables, new HashSet<>());
+                for (String jp : jsonPaths) {
+                    TypeHint hint = inferTypeHint(sel);
+                    String path = rebase(basePath, jp);
+                    addPath(properties, requiredAt, path, hint, rule.get("constraints"));
+                    if (!hasFallbackNonJsonPath && isDirectSource(rule, sel, jp)) {
+                        markRequired(requiredAt, path);
                     }
                 }
             }
         }
+    }
 
-        applyRequired(properties, requiredAt, "$");
-        return root;
+    private String rebase(String basePath, String jsonPath) {
+        if (basePath == null) return jsonPath;
+        String rel = jsonPath.trim();
+        if (rel.startsWith("$")) rel = rel.substring(1);
+        if (!rel.isEmpty() && !rel.startsWith(".") && !rel.startsWith("[")) rel = "." + rel;
+        return basePath + rel;
     }
 
     private boolean hasNonJsonPathFallback(JsonNode rule) {
@@ -130,6 +176,9 @@ public class SchemaExporter {
             if (isLeaf) {
                 if (hint == TypeHint.DATE_TIME_STRING) {
                     currentObj.put("format", "date-time");
+                } else if (hint == TypeHint.NUMBER_OR_STRING) {
+                    // type stays "string" (numbers as strings are accepted); hint for generators and tooling
+                    currentObj.put("x-aml-hint", "numeric");
                 }
                 if (constraints != null && constraints.isArray()) {
                     applyConstraints(currentObj, constraints);
@@ -222,26 +271,22 @@ public class SchemaExporter {
         public String toString() { return kind == Kind.FIELD ? name : "*"; }
     }
 
+    // Field and array steps only: deep scans are read as direct children, filters/indexes as "any element"
     private List<PathToken> parseJsonPath(String path) {
         List<PathToken> tokens = new ArrayList<>();
         if (path == null || path.isBlank()) return tokens;
-        String p = path.trim();
-        if (p.startsWith("$")) { p = p.substring(1); if (p.startsWith(".")) p = p.substring(1); }
-        int i = 0; StringBuilder current = new StringBuilder(); List<String> segments = new ArrayList<>();
-        while (i < p.length()) { char c = p.charAt(i); if (c == '.') { segments.add(current.toString()); current.setLength(0); i++; continue; } current.append(c); i++; }
-        if (current.length() > 0) segments.add(current.toString());
-        Pattern segTok = Pattern.compile("([a-zA-Z_][a-zA-Z0-9_]*)|\\['([^']+)'\\]|\\[(\\d+|\\*)]|");
-        for (String seg : segments) {
-            if (seg.isEmpty()) continue;
-            Matcher m = segTok.matcher(seg);
-            boolean fieldEmitted = false;
-            while (m.find()) {
-                String f1 = m.group(1), f2 = m.group(2), arr = m.group(3);
-                if (f1 != null) { tokens.add(new PathToken(PathToken.Kind.FIELD, f1)); fieldEmitted = true; }
-                else if (f2 != null) { tokens.add(new PathToken(PathToken.Kind.FIELD, f2)); fieldEmitted = true; }
-                else if (arr != null) { tokens.add(new PathToken(PathToken.Kind.ARRAY, "*")); }
+        List<JsonPathTokenizer.Token> parsed;
+        try {
+            parsed = JsonPathTokenizer.tokenize(path);
+        } catch (IllegalArgumentException e) {
+            return tokens;
+        }
+        for (JsonPathTokenizer.Token t : parsed) {
+            switch (t.kind()) {
+                case FIELD -> tokens.add(new PathToken(PathToken.Kind.FIELD, t.text()));
+                case INDEX, WILDCARD, FILTER -> tokens.add(new PathToken(PathToken.Kind.ARRAY, "*"));
+                default -> {}
             }
-            if (!fieldEmitted && seg.equals("*")) tokens.add(new PathToken(PathToken.Kind.ARRAY, "*"));
         }
         return tokens;
     }
@@ -0,0 +1,72 @@
+package github.jackutil.mapping;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Id generators for the submodel {@code idStrategy} kinds.
+ * - uuidv7: time-ordered ids (RFC 9562) drawn from ThreadLocalRandom, so threads never share a SecureRandom.
+ * - nameBased: UUID v5 (SHA-1) over a namespace plus selected payload values; same input → same id.
+ */
+public final class SubmodelIds {
+    // Fixed namespace for AML name-based ids; never change it, or previously issued ids stop matching.
+    private static final UUID AML_NAMESPACE = UUID.fromString("6f1c6a52-3b8e-4c52-9d0e-5a3b0c7e2d41");
+    private static final char FIELD_SEPARATOR = '\u001F';
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available", e);
+        }
+    });
+
+    private SubmodelIds() {}
+
+    public static UUID uuidV7() {
+        return uuidV7(System.currentTimeMillis());
+    }
+
+    static UUID uuidV7(long epochMillis) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long msb = (epochMillis & 0xFFFFFFFFFFFFL) << 16;
+        msb |= 0x7000L | (rnd.nextInt() & 0x0FFFL);
+        long lsb = (rnd.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(msb, lsb);
+    }
+
+    public static UUID nameBased(String namespace, List<String> values) {
+        StringBuilder name = new StringBuilder(namespace == null ? "" : namespace);
+        for (String v : values) {
+            name.append(FIELD_SEPARATOR).append(v == null ? "" : v);
+        }
+        MessageDigest md = SHA1.get();
+        md.reset();
+        md.update(toBytes(AML_NAMESPACE));
+        byte[] hash = md.digest(name.toString().getBytes(StandardCharsets.UTF_8));
+
+        hash[6] &= 0x0f;
+        hash[6] |= 0x50; // version 5
+        hash[8] &= 0x3f;
+        hash[8] |= (byte) 0x80; // IETF variant
+        long msb = 0, lsb = 0;
+        for (int i = 0; i < 8; i++) msb = (msb << 8) | (hash[i] & 0xff);
+        for (int i = 8; i < 16; i++) lsb = (lsb << 8) | (hash[i] & 0xff);
+        return new UUID(msb, lsb);
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        byte[] out = new byte[16];
+        long msb = uuid.getMostSignificantBits();
+        long lsb = uuid.getLeastSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            out[i] = (byte) (msb >>> (56 - 8 * i));
+            out[8 + i] = (byte) (lsb >>> (56 - 8 * i));
+        }
+        return out;
+    }
+}
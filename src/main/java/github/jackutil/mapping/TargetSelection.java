@@ -0,0 +1,147 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * A set of target patterns ({@code Order/Id}, {@code Derived/*}) and the pruning of a rule list down to the
+ * rules that write them. Segments are split on {@code /}; {@code *} matches any run of characters within one
+ * segment. A pattern selects every target at or below the paths it matches, so {@code Derived/*} covers
+ * {@code Derived/A/B}.
+ * <p>
+ * A rule whose target lies above a pattern (target {@code Order} for {@code Order/Id}) writes the selected
+ * value as part of a larger one, so it is kept; for a {@code forEach} rule only the nested rules matching the
+ * rest of the pattern are kept. Rules keep their order, so overlapping writes resolve as in the full mapping.
+ */
+final class TargetSelection {
+    private final List<Segment[]> patterns;
+    /** Canonical form: sorted, de-duplicated patterns joined by comma; the cache key. */
+    final String key;
+
+    private TargetSelection(List<Segment[]> patterns, String key) {
+        this.patterns = patterns;
+        this.key = key;
+    }
+
+    /**
+     * @throws IllegalArgumentException when no pattern is given or a pattern is blank
+     */
+    static TargetSelection parse(Collection<String> patterns) {
+        Set<String> sorted = new TreeSet<>();
+        for (String p : patterns) {
+            String trimmed = p == null ? "" : p.trim();
+            if (trimmed.isEmpty()) throw new IllegalArgumentException("Empty target pattern");
+            sorted.add(trimmed);
+        }
+        if (sorted.isEmpty()) throw new IllegalArgumentException("No target patterns");
+        List<Segment[]> parsed = new ArrayList<>(sorted.size());
+        for (String p : sorted) parsed.add(segments(p));
+        return new TargetSelection(parsed, String.join(",", sorted));
+    }
+
+    private static Segment[] segments(String pattern) {
+        String[] parts = pattern.split("/");
+        Segment[] out = new Segment[parts.length];
+        for (int i = 0; i < parts.length; i++) out[i] = Segment.of(parts[i]);
+        return out;
+    }
+
+    /** @return the rules needed for the selected targets, in their original order */
+    List<CompiledRule> prune(List<CompiledRule> rules) {
+        return prune(rules, patterns);
+    }
+
+    private static List<CompiledRule> prune(List<CompiledRule> rules, List<Segment[]> patterns) {
+        List<CompiledRule> kept = new ArrayList<>();
+        if (rules == null) return kept;
+        for (CompiledRule rule : rules) {
+            if (rule.target == null) continue;
+            String[] target = rule.target.split("/");
+            boolean whole = false;
+            List<Segment[]> below = new ArrayList<>();
+            for (Segment[] p : patterns) {
+                int common = Math.min(p.length, target.length);
+                boolean matches = true;
+                for (int i = 0; i < common && matches; i++) matches = p[i].matches(target[i]);
+                if (!matches) continue;
+                if (p.length <= target.length) {
+                    whole = true;
+                    break;
+                }
+                // the pattern continues below this rule's target
+                Segment[] rest = new Segment[p.length - target.length];
+                System.arraycopy(p, target.length, rest, 0, rest.length);
+                below.add(rest);
+            }
+            if (whole) {
+                kept.add(rule);
+            } else if (!below.isEmpty()) {
+                if (rule.rules == null) {
+                    kept.add(rule); // writes the selected value inside a larger one
+                } else {
+                    List<CompiledRule> nested = prune(rule.rules, below);
+                    if (!nested.isEmpty()) kept.add(rule.withRules(nested));
+                }
+            }
+        }
+        return kept;
+    }
+
+    /**
+     * @return the entries of {@code variables} that {@code rules} refer to ({@code { var: name }} anywhere in
+     *         a rule, including predicates, fallbacks and transform arguments), directly or through other
+     *         variables; in declaration order
+     */
+    static ObjectNode referencedVariables(List<CompiledRule> rules, ObjectNode variables) {
+        ObjectNode out = JsonNodeFactory.instance.objectNode();
+        if (variables == null || variables.isEmpty()) return out;
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<JsonNode> pending = new ArrayDeque<>();
+        for (CompiledRule r : rules) pending.add(r.node);
+        while (!pending.isEmpty()) {
+            JsonNode node = pending.pop();
+            if (node.isObject()) {
+                JsonNode var = node.get("var");
+                if (var != null && var.isTextual() && seen.add(var.asText()) && variables.has(var.asText())) {
+                    pending.add(variables.get(var.asText()));
+                }
+            }
+            if (node.isContainerNode()) for (JsonNode child : node) pending.add(child);
+        }
+        for (Map.Entry<String, JsonNode> e : variables.properties()) {
+            if (seen.contains(e.getKey())) out.set(e.getKey(), e.getValue());
+        }
+        return out;
+    }
+
+    private record Segment(String literal, Pattern glob) {
+        static Segment of(String text) {
+            if (text.equals("*")) return new Segment(null, null);
+            if (!text.contains("*")) return new Segment(text, null);
+            String[] parts = text.split("\\*", -1);
+            StringBuilder regex = new StringBuilder();
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) regex.append(".*");
+                regex.append(Pattern.quote(parts[i]));
+            }
+            return new Segment(null, Pattern.compile(regex.toString()));
+        }
+
+        boolean matches(String segment) {
+            if (literal != null) return literal.equals(segment);
+            return glob == null || glob.matcher(segment).matches();
+        }
+    }
+}
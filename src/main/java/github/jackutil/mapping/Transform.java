@@ -0,0 +1,16 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One transform step, bound to its arguments when the config is compiled (see {@link TransformProvider}).
+ * Instances are shared by every payload mapped with the compiled config and must be thread-safe.
+ */
+@FunctionalInterface
+public interface Transform {
+    /**
+     * @param value the current value, never null ({@code NullNode} for missing values)
+     * @return the transformed value; null is treated as {@code NullNode}
+     */
+    JsonNode apply(JsonNode value, TransformContext ctx);
+}
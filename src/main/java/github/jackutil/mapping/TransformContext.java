@@ -0,0 +1,21 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/** Payload access for transforms that read more than their input value ({@code concat} parts, {@code format} args). */
+@FunctionalInterface
+public interface TransformContext {
+    /** Evaluate a selector ({@code jsonPath}, {@code constant} or {@code var}) against the current payload; never null. */
+    JsonNode select(JsonNode selector);
+
+    /**
+     * Summary of {@code array}; the engine computes it once per payload and array node, so several
+     * aggregates over the same jsonPath share one pass.
+     */
+    default ArraySummary summarize(JsonNode array) {
+        return ArraySummary.of(array);
+    }
+
+    /** Add a mapping error for the current rule (the transform still returns a value). */
+    default void report(String message) {}
+}
@@ -0,0 +1,24 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Set;
+
+/**
+ * Supplies transform ops. Providers are discovered with {@link java.util.ServiceLoader} (list the class in
+ * {@code META-INF/services/github.jackutil.mapping.TransformProvider}) or registered via {@link TransformRegistry#with}.
+ * <p>
+ * {@link #create} runs once per transform entry when a config is compiled: parse and validate arguments there
+ * and return a {@link Transform} that does only per-value work.
+ */
+public interface TransformProvider {
+    /** Op names handled by this provider (the {@code op} field of a transform entry). */
+    Set<String> ops();
+
+    /**
+     * @param op   one of {@link #ops()}
+     * @param spec the whole transform entry, e.g. {@code {op: "round", places: 2}}
+     * @throws IllegalArgumentException when the arguments are missing or invalid; reported as a config error
+     */
+    Transform create(String op, JsonNode spec);
+}
@@ -0,0 +1,70 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+/**
+ * Op name → {@link TransformProvider}. Built-in ops are registered first and win over providers that claim
+ * the same name; among providers the first registration wins. Immutable; {@link #with} returns a copy.
+ */
+public final class TransformRegistry {
+    private static volatile TransformRegistry defaults;
+
+    private final Map<String, TransformProvider> providers;
+
+    private TransformRegistry(Map<String, TransformProvider> providers) {
+        this.providers = Collections.unmodifiableMap(providers);
+    }
+
+    /** Built-in ops only. */
+    public static TransformRegistry builtins() {
+        return new TransformRegistry(new LinkedHashMap<>()).with(new BuiltinTransforms());
+    }
+
+    /** Built-in ops plus every provider found by {@link ServiceLoader}; loaded once per JVM. */
+    public static TransformRegistry defaults() {
+        TransformRegistry r = defaults;
+        if (r == null) {
+            synchronized (TransformRegistry.class) {
+                r = defaults;
+                if (r == null) {
+                    r = builtins();
+                    for (TransformProvider p : ServiceLoader.load(TransformProvider.class)) r = r.with(p);
+                    defaults = r;
+                }
+            }
+        }
+        return r;
+    }
+
+    public TransformRegistry with(TransformProvider provider) {
+        Map<String, TransformProvider> copy = new LinkedHashMap<>(providers);
+        for (String op : provider.ops()) copy.putIfAbsent(op, provider);
+        return new TransformRegistry(copy);
+    }
+
+    public Set<String> ops() {
+        return providers.keySet();
+    }
+
+    /**
+     * Bind one transform entry to its implementation.
+     * @throws IllegalArgumentException for an unknown op or invalid arguments
+     */
+    BoundTransform bind(JsonNode spec) {
+        String op = spec.path("op").asText("");
+        TransformProvider provider = providers.get(op);
+        if (provider == null) throw new IllegalArgumentException("Unknown transform op '" + op + "'");
+        Transform fn = provider.create(op, spec);
+        if (fn == null) throw new IllegalArgumentException("Provider returned no transform for op '" + op + "'");
+        return new BoundTransform(op, fn);
+    }
+
+    /** A compiled transform step; the op name labels metrics, JFR events and explain traces. */
+    record BoundTransform(String op, Transform fn) {}
+}
@@ -0,0 +1,196 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import github.jackutil.mapping.CompiledMapping;
+import github.jackutil.mapping.ErrorSummary;
+import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.MappingError;
+import github.jackutil.mapping.Transform;
+import github.jackutil.mapping.TransformProvider;
+import github.jackutil.mapping.TransformRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BackfillTest {
+    private static final String CONFIG = String.join("\n",
+            "apiVersion: aasx.map/v1",
+            "rules:",
+            "  - target: serial",
+            "    source: { jsonPath: \"$.serial\", transform: [ { op: probe } ] }");
+
+    /** Stands in for the process being killed. */
+    private static final class Crash extends Error {
+        private static final long serialVersionUID = 1L;
+    }
+
+    // Thrown while the sink writes the output, after the mapping: Backfill only guards the mapping itself
+    private static final JsonSerializable KILL = new JsonSerializable.Base() {
+        @Override
+        public void serialize(JsonGenerator gen, SerializerProvider serializers) {
+            throw new Crash();
+        }
+
+        @Override
+        public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) {
+            throw new Crash();
+        }
+    };
+
+    // serial CRASH kills the run, serial BOOM and OVERFLOW make the mapping throw
+    private static final TransformProvider PROBE = new TransformProvider() {
+        @Override
+        public Set<String> ops() {
+            return Set.of("probe");
+        }
+
+        @Override
+        public Transform create(String op, JsonNode spec) {
+            return (v, ctx) -> switch (v.asText()) {
+                case "CRASH" -> new POJONode(KILL);
+                case "BOOM" -> throw new IllegalStateException("boom");
+                case "OVERFLOW" -> throw new StackOverflowError();
+                default -> v;
+            };
+        }
+    };
+
+    private static final MappingEngine ENGINE = new MappingEngine(null, TransformRegistry.builtins().with(PROBE));
+    private static final CompiledMapping COMPILED;
+
+    static {
+        try {
+            COMPILED = ENGINE.compile(new ObjectMapper(new YAMLFactory()).readTree(CONFIG));
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static Backfill backfill(Path payloads, OutputSink sink, Path out, Path checkpoint, long intervalMillis) {
+        return new Backfill(ENGINE, COMPILED, payloads, sink, out, checkpoint, intervalMillis, new ErrorSummary(10));
+    }
+
+    // mapping payload {@code crash} kills the run
+    private static String payloads(int from, int to, int crash) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = from; i < to; i++) sb.append("{\"serial\":\"" + (i == crash ? "CRASH" : "SN-" + i) + "\"}").append('\n');
+        return sb.toString();
+    }
+
+    private static List<String> expected(int count) {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < count; i++) lines.add("{\"serial\":\"SN-" + i + "\"}");
+        return lines;
+    }
+
+    private static List<String> gzipLines(Path dir) throws Exception {
+        List<InputStream> files = new ArrayList<>();
+        for (Path p : Files.list(dir).filter(p -> p.toString().endsWith(".gz")).sorted().toList()) {
+            files.add(new GZIPInputStream(Files.newInputStream(p)));
+        }
+        try (InputStream in = new SequenceInputStream(Collections.enumeration(files))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    @Test
+    void resumesAfterACrashWithoutDuplicatingOrLosingOutputs() throws Exception {
+        Path dir = Files.createTempDirectory("aml-backfill");
+        Path input = Files.writeString(dir.resolve("payloads.ndjson"), payloads(0, 100, 60));
+        Path out = dir.resolve("results.ndjson");
+        Path checkpoint = dir.resolve("job.checkpoint");
+
+        Backfill crashed = backfill(input, new OutputSink(out, false, 0, 0, 0), out, checkpoint, 0);
+        assertThrows(Crash.class, crashed::run);
+        assertEquals(60, crashed.payloadsMapped);
+        // a write torn by the crash, past the last checkpoint
+        Files.writeString(out, "{\"serial\":\"SN-6", StandardOpenOption.APPEND);
+        Files.writeString(input, payloads(0, 100, -1));
+
+        OutputSink sink = new OutputSink(out, false, 0, 0, 0);
+        Backfill resumed = backfill(input, sink, out, checkpoint, 0);
+        assertTrue(resumed.run());
+
+        assertEquals(expected(100), Files.readAllLines(out));
+        assertEquals(60, resumed.resumedAt);
+        assertEquals(40, sink.stats().records());
+        assertFalse(backfill(input, new OutputSink(out, false, 0, 0, 0), out, checkpoint, 0).run(), "a completed run is not repeated");
+    }
+
+    @Test
+    void resumesCompressedRotatedOutputAcrossInputFiles() throws Exception {
+        Path dir = Files.createTempDirectory("aml-backfill");
+        Path inputs = Files.createDirectories(dir.resolve("in"));
+        Files.writeString(inputs.resolve("part-0.ndjson"), payloads(0, 25, -1));
+        Files.writeString(inputs.resolve("part-1.ndjson"), payloads(25, 50, 37));
+        Path outDir = Files.createDirectories(dir.resolve("out"));
+        Path out = outDir.resolve("results.ndjson");
+        Path checkpoint = dir.resolve("job.checkpoint");
+
+        OutputSink first = new OutputSink(out, true, 7, 0, 0);
+        assertThrows(Crash.class, backfill(inputs, first, out, checkpoint, 0)::run);
+        // output of the crashed run beyond the checkpoint: a later rotated file
+        Files.write(first.fileFor(6), new byte[]{1, 2, 3});
+        Files.writeString(inputs.resolve("part-1.ndjson"), payloads(25, 50, -1));
+
+        Backfill resumed = backfill(inputs, new OutputSink(out, true, 7, 0, 0), out, checkpoint, 0);
+        assertTrue(resumed.run());
+
+        assertEquals(37, resumed.resumedAt);
+        assertEquals(expected(50), gzipLines(outDir));
+        assertEquals(8, Files.list(outDir).count());
+    }
+
+    @Test
+    void countsBadLinesAndFailedMappingsAndMovesOn() throws Exception {
+        Path dir = Files.createTempDirectory("aml-backfill");
+        Path input = Files.writeString(dir.resolve("payloads.ndjson"), String.join("\n",
+                "{\"serial\":\"SN-0\"}", "{\"serial\":", "", "{\"serial\":\"BOOM\"}", "  ", "{\"serial\":\"OVERFLOW\"}",
+                "{\"serial\":\"SN-1\"}"));
+        Path out = dir.resolve("results.ndjson");
+        ErrorSummary errors = new ErrorSummary(10);
+
+        Backfill run = new Backfill(ENGINE, COMPILED, input, new OutputSink(out, false, 0, 0, 0), out, dir.resolve("job.checkpoint"), 0, errors);
+        assertTrue(run.run());
+
+        assertEquals(5, run.payloadsMapped, "blank lines are not payloads");
+        assertEquals(3, run.failed);
+        assertEquals(List.of("{\"serial\":\"SN-0\"}", "{}", "{}", "{}", "{\"serial\":\"SN-1\"}"), Files.readAllLines(out));
+        MappingError invalid = errors.samples(MappingError.Code.INVALID_PAYLOAD).get(0).error();
+        assertTrue(invalid.message().startsWith("Invalid payload: payloads.ndjson at byte 18: "), invalid.message());
+        assertEquals(2, errors.samples(MappingError.Code.MAPPING_FAILED).size());
+    }
+
+    @Test
+    void refusesACheckpointOfAnotherJob() throws Exception {
+        Path dir = Files.createTempDirectory("aml-backfill");
+        Path input = Files.writeString(dir.resolve("payloads.ndjson"), payloads(0, 3, -1));
+        Path checkpoint = dir.resolve("job.checkpoint");
+        Path out = dir.resolve("a.ndjson");
+        assertTrue(backfill(input, new OutputSink(out, false, 0, 0, 0), out, checkpoint, 1_000).run());
+
+        Path other = dir.resolve("b.ndjson");
+        assertThrows(IllegalArgumentException.class,
+                backfill(input, new OutputSink(other, false, 0, 0, 0), other, checkpoint, 0)::run);
+    }
+}
@@ -0,0 +1,49 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import github.jackutil.mapping.ConfigLoader;
+import github.jackutil.mapping.MappingEngine;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BenchTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void histogramPercentilesStayWithinBucketResolution() {
+        Bench.Histogram h = new Bench.Histogram();
+        for (long v = 1; v <= 100_000; v++) h.record(v * 1000);
+
+        assertEquals(100_000, h.count());
+        assertEquals(100_000_000, h.max());
+        assertEquals(50_000_000, h.percentile(0.50), 50_000_000 * 0.016);
+        assertEquals(99_000_000, h.percentile(0.99), 99_000_000 * 0.016);
+        assertEquals(99_900_000, h.percentile(0.999), 99_900_000 * 0.016);
+    }
+
+    @Test
+    void measuresAllIterationsAcrossThreads() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+
+        Bench.Report report = Bench.measure(engine, engine.compile(cfg), payload, 101, 3, 5);
+
+        assertEquals(101, report.latency().count());
+        assertTrue(report.throughput() > 0);
+        assertTrue(report.latency().percentile(0.5) <= report.latency().percentile(0.999));
+        JsonNode json = report.toJson();
+        assertEquals(3, json.get("threads").asInt());
+        assertTrue(json.path("latencyNanos").has("p999"));
+        assertTrue(report.toText().contains("throughput"));
+    }
+}
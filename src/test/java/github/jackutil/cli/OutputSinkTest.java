@@ -0,0 +1,82 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OutputSinkTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private static JsonNode record(int i) {
+        ObjectNode n = JSON.createObjectNode();
+        n.put("idShort", "Device");
+        n.put("serial", "SN-" + i);
+        n.putArray("tags").add("a").add("b");
+        return n;
+    }
+
+    private static List<String> lines(Path gz) throws Exception {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(gz))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    @Test
+    void rotatesCompressedFilesByRecordCount() throws Exception {
+        Path dir = Files.createTempDirectory("aml-sink");
+        OutputSink sink = new OutputSink(dir.resolve("results.ndjson"), true, 1_000, 0, 10);
+        try (sink) {
+            for (int i = 0; i < 2_500; i++) sink.write(record(i));
+        }
+
+        assertEquals(List.of(dir.resolve("results-00000.ndjson.gz"), dir.resolve("results-00001.ndjson.gz"),
+                dir.resolve("results-00002.ndjson.gz")), Files.list(dir).sorted().toList());
+        List<String> last = lines(dir.resolve("results-00002.ndjson.gz"));
+        assertEquals(500, last.size());
+        assertEquals(record(2_499), JSON.readTree(last.get(499)));
+        assertEquals(1_000, lines(dir.resolve("results-00001.ndjson.gz")).size());
+
+        OutputSink.Stats stats = sink.stats();
+        assertEquals(2_500, stats.records());
+        assertEquals(3, stats.files());
+        assertTrue(stats.diskBytes() < stats.bytes() / 3, stats.toText());
+        long onDisk = 0;
+        for (Path p : Files.list(dir).toList()) onDisk += Files.size(p);
+        assertEquals(onDisk, stats.diskBytes());
+    }
+
+    @Test
+    void rotatesByUncompressedBytesAndWritesPlainNdjsonToStreams() throws Exception {
+        Path dir = Files.createTempDirectory("aml-sink");
+        try (OutputSink sink = new OutputSink(dir.resolve("out.ndjson"), false, 0, 4_096, 0)) {
+            for (int i = 0; i < 1_000; i++) sink.write(record(i));
+        }
+        for (Path p : Files.list(dir).toList()) assertTrue(Files.size(p) < 4_096 + 100, p + " " + Files.size(p));
+        assertEquals(1_000, Files.list(dir).mapToLong(p -> {
+            try {
+                return Files.readAllLines(p).size();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }).sum());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputSink sink = new OutputSink(out)) {
+            sink.write(record(1));
+            sink.write(record(2));
+        }
+        assertEquals(record(1) + "\n" + record(2) + "\n", out.toString(StandardCharsets.UTF_8));
+    }
+}
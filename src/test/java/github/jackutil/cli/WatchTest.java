@@ -0,0 +1,170 @@
+package github.jackutil.cli;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import github.jackutil.mapping.MappingEngine;
+import github.jackutil.mapping.Transform;
+import github.jackutil.mapping.TransformProvider;
+import github.jackutil.mapping.TransformRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class WatchTest {
+    private static final String CONFIG = String.join("\n",
+            "apiVersion: aasx.map/v1",
+            "rules:",
+            "  - target: serial",
+            "    source: { jsonPath: \"$.serial\" }");
+
+    private static Watch watch(Path root, MappingEngine engine) throws Exception {
+        return new Watch(engine, engine.compile(new ObjectMapper(new YAMLFactory()).readTree(CONFIG)),
+                root.resolve("spool"), root.resolve("out"), root.resolve("done"), root.resolve("quarantine"), 2, false);
+    }
+
+    @Test
+    void mapsTheBacklogAndQuarantinesUnreadableFiles() throws Exception {
+        Path root = Files.createTempDirectory("aml-watch");
+        MappingEngine engine = new MappingEngine();
+        Watch watch = watch(root, engine);
+        Files.writeString(root.resolve("spool/a.json"), "{\"serial\":\"A1\"}");
+        Files.writeString(root.resolve("spool/a.txt"), "{\"serial\":\"A2\"}");
+        Files.writeString(root.resolve("spool/b.json"), "{\"serial\":");
+        Files.writeString(root.resolve("spool/.c.json.part"), "{}");
+
+        try (watch) {
+            watch.processExisting();
+        }
+
+        assertEquals("A1", new ObjectMapper().readTree(root.resolve("out/a.json.json").toFile()).get("serial").asText());
+        assertEquals("A2", new ObjectMapper().readTree(root.resolve("out/a.txt.json").toFile()).get("serial").asText());
+        assertTrue(Files.exists(root.resolve("done/a.json")));
+        assertTrue(Files.exists(root.resolve("quarantine/b.json")));
+        assertTrue(Files.readString(root.resolve("quarantine/b.json.errors.txt"), StandardCharsets.UTF_8).startsWith("Mapping failed"));
+        assertTrue(Files.exists(root.resolve("spool/.c.json.part")), "partial uploads are left alone");
+        assertFalse(Files.exists(root.resolve("spool/a.json")));
+        assertEquals(2, watch.mapped.get());
+        assertEquals(1, watch.quarantined.get());
+    }
+
+    @Test
+    void quarantinesAFileWhoseMappingThrowsAnError() throws Exception {
+        TransformProvider overflow = new TransformProvider() {
+            @Override
+            public Set<String> ops() {
+                return Set.of("overflow");
+            }
+
+            @Override
+            public Transform create(String op, JsonNode spec) {
+                return (v, ctx) -> {
+                    if ("DEEP".equals(v.asText())) throw new StackOverflowError();
+                    return v;
+                };
+            }
+        };
+        Path root = Files.createTempDirectory("aml-watch");
+        MappingEngine engine = new MappingEngine(null, TransformRegistry.builtins().with(overflow));
+        String config = CONFIG.replace("\"$.serial\" }", "\"$.serial\", transform: [ { op: overflow } ] }");
+        Watch watch = new Watch(engine, engine.compile(new ObjectMapper(new YAMLFactory()).readTree(config)),
+                root.resolve("spool"), root.resolve("out"), root.resolve("done"), root.resolve("quarantine"), 1, false);
+        Files.writeString(root.resolve("spool/a.json"), "{\"serial\":\"DEEP\"}");
+        Files.writeString(root.resolve("spool/b.json"), "{\"serial\":\"B1\"}");
+
+        try (watch) {
+            watch.processExisting();
+        }
+
+        assertTrue(Files.exists(root.resolve("quarantine/a.json")));
+        assertTrue(Files.readString(root.resolve("quarantine/a.json.errors.txt")).contains("StackOverflowError"));
+        assertFalse(Files.exists(root.resolve("spool/.processing/a.json")));
+        assertTrue(Files.readString(root.resolve("out/b.json.json")).contains("B1"));
+        assertEquals(1, watch.quarantined.get());
+        assertEquals(1, watch.mapped.get());
+    }
+
+    @Test
+    void restartMapsClaimedInputsAgainWhateverTheirTimestamps() throws Exception {
+        Path root = Files.createTempDirectory("aml-watch");
+        Watch watch = watch(root, new MappingEngine());
+        // a crash after the output of an older a.json was written, with a new a.json already claimed
+        Path claimed = Files.writeString(root.resolve("spool/.processing/a.json"), "{\"serial\":\"A1\"}");
+        Files.setLastModifiedTime(claimed, FileTime.from(1, TimeUnit.HOURS));
+        Files.writeString(root.resolve("out/a.json.json"), "{\"serial\":\"from before the crash\"}");
+        Files.writeString(root.resolve("out/.a.json.json123.tmp"), "{");
+        Files.writeString(root.resolve("spool/b.json"), "{\"serial\":\"B1\"}");
+
+        try (watch) {
+            watch.processExisting();
+        }
+
+        assertEquals(1, watch.recovered.get());
+        assertEquals(2, watch.mapped.get());
+        assertTrue(Files.readString(root.resolve("out/a.json.json")).contains("A1"));
+        assertTrue(Files.readString(root.resolve("out/b.json.json")).contains("B1"));
+        assertTrue(Files.exists(root.resolve("done/a.json")));
+        assertFalse(Files.exists(claimed));
+        assertFalse(Files.exists(root.resolve("out/.a.json.json123.tmp")));
+    }
+
+    @Test
+    void leavesTheInputClaimedWhenItsOutputCannotBeWritten() throws Exception {
+        Path root = Files.createTempDirectory("aml-watch");
+        Watch watch = watch(root, new MappingEngine());
+        // a non-empty directory where the output should go: replacing it fails
+        Files.createDirectories(root.resolve("out/a.json.json"));
+        Files.writeString(root.resolve("out/a.json.json/keep"), "");
+        Files.writeString(root.resolve("spool/a.json"), "{\"serial\":\"A1\"}");
+
+        try (watch) {
+            watch.processExisting();
+        }
+
+        assertTrue(Files.exists(root.resolve("spool/.processing/a.json")), "left for the next start");
+        assertFalse(Files.exists(root.resolve("quarantine/a.json")));
+        assertEquals(0, watch.mapped.get());
+        assertEquals(0, watch.quarantined.get());
+
+        Files.delete(root.resolve("out/a.json.json/keep"));
+        Files.delete(root.resolve("out/a.json.json"));
+        Watch restarted = watch(root, new MappingEngine());
+        try (restarted) {
+            restarted.processExisting();
+        }
+        assertEquals(1, restarted.recovered.get());
+        assertTrue(Files.readString(root.resolve("out/a.json.json")).contains("A1"));
+    }
+
+    @Test
+    void picksUpFilesThatArriveWhileWatching() throws Exception {
+        Path root = Files.createTempDirectory("aml-watch");
+        Watch watch = watch(root, new MappingEngine());
+        Thread watcher = new Thread(() -> {
+            try {
+                watch.watch();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        watcher.start();
+        try {
+            Path tmp = Files.writeString(root.resolve("spool/.x.tmp"), "{\"serial\":\"X9\"}");
+            Files.move(tmp, root.resolve("spool/x.json"));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+            while (!Files.exists(root.resolve("done/x.json")) && System.nanoTime() < deadline) Thread.sleep(20);
+        } finally {
+            watch.close();
+            watcher.join();
+        }
+        assertTrue(Files.readString(root.resolve("out/x.json.json")).contains("X9"));
+    }
+}
@@ -0,0 +1,134 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompiledMappingRegistryTest {
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static JsonNode config(String uploadId, int lookupEntries) throws IOException {
+        StringBuilder table = new StringBuilder();
+        for (int i = 0; i < lookupEntries; i++) table.append(i == 0 ? "" : ", ").append("k").append(i).append(": v").append(i);
+        return YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "model: { uploadId: \"" + uploadId + "\" }",
+                "rules:",
+                "  - target: code",
+                "    source: { jsonPath: \"$.code\", transform: [ { op: lookup, table: { " + table + " } } ] }"));
+    }
+
+    @Test
+    void concurrentRequestsShareOneCompileAndMapWithTheTenantsConfig() throws Exception {
+        InMemoryMappingMetrics metrics = new InMemoryMappingMetrics();
+        MappingEngine engine = new MappingEngine(metrics);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        CompiledMappingRegistry registry = new CompiledMappingRegistry(engine, id -> {
+            loads.incrementAndGet();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return config(id, 3);
+        }, 1 << 20);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<CompiledMapping>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) futures.add(pool.submit(() -> registry.get("tenant-a")));
+            Thread.sleep(100);
+            release.countDown();
+            CompiledMapping first = futures.get(0).get();
+            for (Future<CompiledMapping> f : futures) assertSame(first, f.get());
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals("v2", registry.map("tenant-a", new ObjectMapper().readTree("{\"code\":\"k2\"}")).getOutput().get("code").asText());
+        CompiledMappingRegistry.Stats stats = registry.stats();
+        assertEquals(1, stats.compiles());
+        assertEquals(8, stats.misses());
+        assertEquals(1, stats.hits());
+        assertEquals(1, metrics.planCompiles());
+        assertEquals(1, metrics.planCacheHits());
+        assertTrue(metrics.toPrometheus().contains("aml_plan_cache_requests_total{result=\"miss\"} 8"));
+    }
+
+    @Test
+    void evictsByWeightNotCount() throws Exception {
+        InMemoryMappingMetrics metrics = new InMemoryMappingMetrics();
+        MappingEngine engine = new MappingEngine(metrics);
+        long small = engine.compile(config("s0", 1)).estimatedBytes();
+        long large = engine.compile(config("big", 2_000)).estimatedBytes();
+        assertTrue(large > 50 * small, small + " vs " + large);
+
+        CompiledMappingRegistry registry = new CompiledMappingRegistry(engine,
+                id -> config(id, id.equals("big") ? 2_000 : 1), large + 5 * small);
+        for (int i = 0; i < 10; i++) registry.get("s" + i);
+        assertEquals(0, registry.stats().evictions());
+
+        registry.get("s0"); // most recently used, survives
+        registry.get("big");
+        CompiledMappingRegistry.Stats stats = registry.stats();
+        assertTrue(stats.evictions() > 0 && stats.evictions() < 10, stats.toString());
+        assertTrue(stats.bytes() <= large + 5 * small);
+        assertEquals(stats.evictions(), metrics.planEvictions());
+
+        long compiles = stats.compiles();
+        registry.get("s0");
+        assertEquals(compiles, registry.stats().compiles());
+    }
+
+    @Test
+    void unknownOrMismatchedUploadsFailAndAreRetried() throws Exception {
+        Path dir = Files.createTempDirectory("aml-tenants");
+        Files.writeString(dir.resolve("t1.yaml"), YAML.writeValueAsString(config("t1", 1)));
+        Files.writeString(dir.resolve("t2.yaml"), YAML.writeValueAsString(config("other", 1)));
+        CompiledMappingRegistry registry = new CompiledMappingRegistry(new MappingEngine(),
+                CompiledMappingRegistry.ConfigSource.directory(dir), 1 << 20);
+
+        assertEquals("t1", registry.get("t1").getUploadId());
+        assertThrows(IllegalArgumentException.class, () -> registry.get("missing"));
+        assertThrows(IllegalArgumentException.class, () -> registry.get("../t1"));
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> registry.get("t2"));
+        assertTrue(e.getMessage().contains("declares model.uploadId 'other'"), e.getMessage());
+
+        Files.writeString(dir.resolve("t2.yaml"), YAML.writeValueAsString(config("t2", 1)));
+        assertEquals("t2", registry.get("t2").getUploadId());
+
+        CompiledMapping before = registry.get("t1");
+        registry.invalidate("t1");
+        assertNotSame(before, registry.get("t1"));
+    }
+
+    @Test
+    void aCompileThatThrowsAnErrorReleasesTheUploadId() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompiledMappingRegistry registry = new CompiledMappingRegistry(new MappingEngine(), id -> {
+            if (loads.incrementAndGet() == 1) throw new StackOverflowError();
+            return config(id, 1);
+        }, 1 << 20);
+
+        assertThrows(StackOverflowError.class, () -> registry.get("a"));
+        assertEquals("a", registry.get("a").getUploadId());
+        assertEquals(2, loads.get());
+    }
+}
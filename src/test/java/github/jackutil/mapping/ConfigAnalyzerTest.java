@@ -0,0 +1,115 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigAnalyzerTest {
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static final String CONFIG = String.join("\n",
+            "apiVersion: aasx.map/v1",
+            "variables:",
+            "  serial: { jsonPath: \"$..serialNumber\" }",
+            "  unused: { jsonPath: \"$.never\" }",
+            "rules:",
+            "  - target: a",
+            "    source: { var: serial }",
+            "  - target: b",
+            "    when: { any: [ { jsonPath: \"$.items[?(@.kind == 'x')].kind\", equals: x } ] }",
+            "    source: { jsonPath: \"$.items[*].id\" }",
+            "  - target: a",
+            "    source: { jsonPath: \"$.items[*].id\" }",
+            "  - target: c",
+            "    source: { jsonPath: \"$.broken[\" }",
+            "  - target: d",
+            "    source: { var: missing }");
+
+    private static ConfigAnalysis.Finding find(ConfigAnalysis analysis, String code) {
+        return analysis.getFindings().stream().filter(f -> f.code().equals(code)).findFirst()
+                .orElseThrow(() -> new AssertionError("No " + code + " in " + analysis.getFindings()));
+    }
+
+    @Test
+    void flagsExpensiveAndSuspiciousSelectors() throws Exception {
+        ConfigAnalysis analysis = new ConfigAnalyzer().analyze(YAML.readTree(CONFIG));
+
+        assertEquals("rules[0].source (var serial)", find(analysis, "DEEP_SCAN").location());
+        assertEquals("rules[1].when.any[0]", find(analysis, "FILTER_IN_PREDICATE").location());
+        assertEquals("rules[1].source", find(analysis, "DUPLICATE_PATH").location());
+        assertEquals("rules[2]", find(analysis, "DUPLICATE_TARGET").location());
+        assertEquals("variables.unused", find(analysis, "UNUSED_VARIABLE").location());
+        assertEquals("rules[3].source", find(analysis, "INVALID_PATH").location());
+        assertEquals("rules[4].source", find(analysis, "UNKNOWN_VARIABLE").location());
+        assertTrue(analysis.hasErrors());
+
+        assertTrue(analysis.getSelectors().stream().anyMatch(s -> s.kind().equals("WILDCARD")));
+        assertEquals(analysis.getFindings().size(), analysis.toJson().get("findings").size());
+    }
+
+    @Test
+    void estimatesCostAndEnforcesBudget() throws Exception {
+        JsonNode config = YAML.readTree(CONFIG);
+        double cost = new ConfigAnalyzer(10, 500).analyze(config).getEstimatedCost();
+        // the deep scan dominates; a smaller assumed payload makes it cheaper
+        assertTrue(cost > 500);
+        assertTrue(new ConfigAnalyzer(10, 100).analyze(config).getEstimatedCost() < cost);
+
+        ConfigAnalysis analysis = new ConfigAnalyzer().analyze(config);
+        analysis.requireWithinBudget(cost);
+        assertThrows(IllegalArgumentException.class, () -> analysis.requireWithinBudget(cost - 1));
+    }
+
+    @Test
+    void forEachBodiesAreChargedPerElement() throws Exception {
+        JsonNode config = YAML.readTree(String.join("\n",
+                "rules:",
+                "  - target: items",
+                "    forEach: { jsonPath: \"$.items[*]\" }",
+                "    rules:",
+                "      - { target: id, source: { jsonPath: \"$.id\" } }"));
+        ConfigAnalysis small = new ConfigAnalyzer(2, 500).analyze(config);
+        ConfigAnalysis large = new ConfigAnalyzer(20, 500).analyze(config);
+        assertEquals(20.0, large.getSelectors().get(1).evaluations());
+        assertTrue(large.getEstimatedCost() > small.getEstimatedCost());
+    }
+
+    @Test
+    void plainDeepScansShareOneWalkPerPayload() throws Exception {
+        ConfigAnalysis one = new ConfigAnalyzer(10, 500).analyze(YAML.readTree(String.join("\n",
+                "rules:",
+                "  - { target: a, source: { jsonPath: \"$..serialNumber\" } }")));
+        ConfigAnalysis three = new ConfigAnalyzer(10, 500).analyze(YAML.readTree(String.join("\n",
+                "rules:",
+                "  - { target: a, source: { jsonPath: \"$..serialNumber\" } }",
+                "  - { target: b, source: { jsonPath: \"$..partId\" } }",
+                "  - { target: c, source: { jsonPath: \"$..part.batch\" } }")));
+
+        // $..partId is an index lookup; $..part.batch is not a plain scan and walks the payload again
+        assertEquals(10.0, three.getSelectors().get(1).cost());
+        assertTrue(three.getSelectors().get(2).cost() >= 500);
+        assertEquals(one.getEstimatedCost() + 10 + three.getSelectors().get(2).cost(), three.getEstimatedCost());
+
+        List<ConfigAnalysis.Finding> scans = three.getFindings().stream().filter(f -> f.code().equals("DEEP_SCAN")).toList();
+        assertEquals(List.of(ConfigAnalysis.Severity.WARNING, ConfigAnalysis.Severity.INFO, ConfigAnalysis.Severity.WARNING),
+                scans.stream().map(ConfigAnalysis.Finding::severity).toList());
+        assertTrue(scans.get(1).message().contains("rules[0].source"), scans.get(1).message());
+    }
+
+    @Test
+    void tokenizesJaywaySyntax() {
+        List<JsonPathTokenizer.Token> tokens = JsonPathTokenizer.tokenize("$..a['b.c'][0][?(@.x == ']')].*.length()");
+        assertEquals(List.of(
+                JsonPathTokenizer.Kind.DEEP_SCAN, JsonPathTokenizer.Kind.FIELD, JsonPathTokenizer.Kind.FIELD,
+                JsonPathTokenizer.Kind.INDEX, JsonPathTokenizer.Kind.FILTER, JsonPathTokenizer.Kind.WILDCARD,
+                JsonPathTokenizer.Kind.FUNCTION), tokens.stream().map(JsonPathTokenizer.Token::kind).toList());
+        assertEquals("b.c", tokens.get(2).text());
+        assertThrows(IllegalArgumentException.class, () -> JsonPathTokenizer.tokenize("$.a["));
+    }
+}
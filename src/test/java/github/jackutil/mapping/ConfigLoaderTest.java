@@ -1,11 +1,16 @@
 package github.jackutil.mapping;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
 import org.junit.jupiter.api.Test;
 
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,5 +33,65 @@ public class ConfigLoaderTest {
         JsonNode payload = ConfigLoader.readJson(resourcePath("payload.json"));
         assertTrue(payload.has("line"));
     }
-}
 
+    @Test
+    void mappedReadMatchesHeapRead() throws Exception {
+        Path payload = resourcePath("batch-children.payload.json");
+        assertEquals(ConfigLoader.readJson(payload), ConfigLoader.readJson(payload, 0));
+
+        // windows much smaller than the file, so reads cross window boundaries
+        try (FileChannel channel = FileChannel.open(payload, StandardOpenOption.READ);
+             InputStream in = new MappedInputStream(channel, 7)) {
+            assertArrayEquals(Files.readAllBytes(payload), in.readAllBytes());
+        }
+    }
+
+    @Test
+    void rejectsIncludeCyclesButNotRepeatedIncludes() throws Exception {
+        Path dir = Files.createTempDirectory("aml-include");
+        Files.writeString(dir.resolve("part.yaml"), "submodel: { idShort: Part }\nrules: []\n");
+        Files.writeString(dir.resolve("self.yaml"), "apiVersion: aasx.map/v1\nsubmodels: [ { include: self.yaml } ]\n");
+        Files.writeString(dir.resolve("a.yaml"), "apiVersion: aasx.map/v1\nsubmodels: [ { include: part.yaml }, { include: b.yaml } ]\n");
+        Files.writeString(dir.resolve("b.yaml"), "apiVersion: aasx.map/v1\nsubmodels: [ { include: ./a.yaml } ]\n");
+        Files.writeString(dir.resolve("twice.yaml"), "apiVersion: aasx.map/v1\nsubmodels: [ { include: part.yaml }, { include: part.yaml } ]\n");
+
+        IllegalArgumentException self = assertThrows(IllegalArgumentException.class, () -> ConfigLoader.readConfig(dir.resolve("self.yaml")));
+        assertEquals("Bundle include cycle: self.yaml -> self.yaml", self.getMessage());
+        IllegalArgumentException ab = assertThrows(IllegalArgumentException.class, () -> ConfigLoader.readConfig(dir.resolve("a.yaml")));
+        assertEquals("Bundle include cycle: a.yaml -> b.yaml -> a.yaml", ab.getMessage());
+        assertEquals(2, ConfigLoader.readConfig(dir.resolve("twice.yaml")).get("submodels").size());
+    }
+
+    @Test
+    void flattensIncludedBundlesIntoTheParent() throws Exception {
+        Path dir = Files.createTempDirectory("aml-include");
+        Files.writeString(dir.resolve("inner.yaml"), String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "variables: { serial: { jsonPath: \"$.serial\" }, lot: { jsonPath: \"$.lot\" } }",
+                "submodels:",
+                "  - submodel: { idShort: Part }",
+                "    rules: [ { target: Serial, source: { var: serial } } ]",
+                "  - submodel: { idShort: Lot }",
+                "    variables: { lot: { constant: \"L-own\" } }",
+                "    rules: [ { target: Lot, source: { var: lot } } ]",
+                ""));
+        Files.writeString(dir.resolve("outer.yaml"), String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "submodels:",
+                "  - include: inner.yaml",
+                "  - submodel: { idShort: Other }",
+                "    rules: [ { target: X, source: { constant: 1 } } ]",
+                ""));
+
+        JsonNode bundle = ConfigLoader.readConfig(dir.resolve("outer.yaml"));
+        assertEquals(3, bundle.get("submodels").size());
+
+        MappingResult result = new MappingEngine().map(bundle, new ObjectMapper().readTree(
+                "{\"serial\":\"SN-1\",\"lot\":\"L-payload\"}"));
+        assertTrue(result.getErrors().isEmpty(), result.getErrors().toString());
+        JsonNode submodels = result.getOutput().get("submodels");
+        assertEquals(3, submodels.size());
+        assertEquals("SN-1", submodels.get(0).get("submodelElements").get(0).get("value").asText());
+        assertEquals("L-own", submodels.get(1).get("submodelElements").get(0).get("value").asText());
+    }
+}
@@ -0,0 +1,69 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConfigRouterTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    private ObjectNode withDiscriminator(String resource, String... values) throws Exception {
+        ObjectNode cfg = (ObjectNode) ConfigLoader.readConfig(resourcePath(resource));
+        ObjectNode d = cfg.putObject("discriminator");
+        d.put("jsonPath", "$.type");
+        if (values.length == 1) d.put("equals", values[0]);
+        else for (String v : values) d.withArray("values").add(v);
+        return cfg;
+    }
+
+    @Test
+    void routesByDiscriminatorValue() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping serialPart = engine.compile(withDiscriminator("cx-serial-part.config.yaml", "serialPart"));
+        CompiledMapping batch = engine.compile(withDiscriminator("cx-batch-3.0.0.config.yaml", "batch", "lot"));
+        ConfigRouter router = new ConfigRouter(engine, List.of(serialPart, batch));
+
+        ObjectNode payload = (ObjectNode) ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+        payload.put("type", "serialPart");
+        assertEquals(List.of(serialPart), router.route(payload));
+
+        payload.put("type", "lot");
+        assertEquals(List.of(batch), router.route(payload));
+
+        payload.put("type", "unknown");
+        assertTrue(router.route(payload).isEmpty());
+        payload.remove("type");
+        assertTrue(router.map(payload).isEmpty());
+    }
+
+    @Test
+    void catchAllConfigsMatchEveryMessageInRegistrationOrder() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping catchAll = engine.compile(ConfigLoader.readConfig(resourcePath("config.yaml")));
+        CompiledMapping serialPart = engine.compile(withDiscriminator("cx-serial-part.config.yaml", "serialPart"));
+        ConfigRouter router = new ConfigRouter(engine, List.of(catchAll, serialPart));
+
+        ObjectNode payload = (ObjectNode) ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+        payload.put("type", "serialPart");
+        List<MappingResult> results = router.map(payload);
+
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).getOutput().has("submodelElements"), "plain config first");
+        JsonNode sm = results.get(1).getOutput();
+        assertEquals("SerialPart", sm.get("idShort").asText());
+
+        payload.put("type", "other");
+        assertEquals(List.of(catchAll), router.route(payload));
+    }
+}
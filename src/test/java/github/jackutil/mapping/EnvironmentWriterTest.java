@@ -0,0 +1,58 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.JsonDeserializer;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class EnvironmentWriterTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void streamsSubmodelsAndBundlesIntoOneEnvironment() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping single = engine.compile(ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml")));
+        CompiledMapping bundle = engine.compile(ConfigLoader.readConfig(resourcePath("device-aspects.bundle.yaml")));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (EnvironmentWriter writer = new EnvironmentWriter(out)) {
+            for (int i = 0; i < 50; i++) writer.add(engine.map(single, payload).getOutput());
+            writer.add(engine.map(bundle, payload).getOutput());
+            assertEquals(52, writer.submodels());
+        }
+
+        Environment env = new JsonDeserializer().read(out.toString(StandardCharsets.UTF_8), Environment.class);
+        assertEquals(52, env.getSubmodels().size());
+        assertEquals("SerialPart", env.getSubmodels().get(0).getIdShort());
+        assertEquals("PartLot", env.getSubmodels().get(51).getIdShort());
+    }
+
+    @Test
+    void emptyEnvironmentIsValidAndPlainOutputsAreRejected() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        EnvironmentWriter writer = new EnvironmentWriter(out, true);
+        MappingEngine engine = new MappingEngine();
+        JsonNode plain = engine.map(ConfigLoader.readConfig(resourcePath("config.yaml")),
+                ConfigLoader.readJson(resourcePath("payload.json"))).getOutput();
+
+        assertThrows(IllegalArgumentException.class, () -> writer.add(plain));
+        writer.close();
+        assertThrows(IllegalStateException.class, () -> writer.add(plain));
+
+        Environment env = new JsonDeserializer().read(out.toString(StandardCharsets.UTF_8), Environment.class);
+        assertTrue(env.getSubmodels() == null || env.getSubmodels().isEmpty());
+    }
+}
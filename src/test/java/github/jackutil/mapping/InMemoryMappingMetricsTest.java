@@ -0,0 +1,71 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class InMemoryMappingMetricsTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void countsRulesTransformsAndConstraintFailures() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("batch-children.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("batch-children.payload.json"));
+
+        InMemoryMappingMetrics metrics = new InMemoryMappingMetrics();
+        MappingEngine engine = new MappingEngine(metrics);
+        CompiledMapping compiled = engine.compile(cfg);
+        engine.map(compiled, payload);
+        engine.map(compiled, payload);
+
+        assertEquals(2, metrics.ruleEvaluations("batchId"));
+        assertEquals(2, metrics.ruleEvaluations("childItems"));
+        assertEquals(6, metrics.ruleEvaluations("serialNumber"), "nested rules count once per element");
+        assertEquals(6, metrics.transformCount("trim"));
+        assertEquals(2, metrics.constraintFailures("serialNumber"));
+        assertTrue(metrics.jsonPathReads() > 0);
+
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE aml_rule_evaluations_total counter"));
+        assertTrue(text.contains("aml_rule_evaluations_total{target=\"serialNumber\"} 6"));
+        assertTrue(text.contains("aml_constraint_failures_total{target=\"serialNumber\",kind=\"maxLength\"} 2"));
+        assertTrue(text.contains("aml_transform_total{op=\"toNumber\"} 6"));
+    }
+
+    @Test
+    void countsAFallbackOnlyWhenItProducesAValue() throws Exception {
+        JsonNode cfg = JSON.readTree("{\"apiVersion\":\"aasx.map/v1\",\"rules\":["
+                + "{\"target\":\"lot\",\"source\":{\"jsonPath\":\"$.lot\"},\"fallback\":[{\"jsonPath\":\"$.batch\"},{\"jsonPath\":\"$.charge\"}]}]}");
+        InMemoryMappingMetrics metrics = new InMemoryMappingMetrics();
+        MappingEngine engine = new MappingEngine(metrics);
+        CompiledMapping compiled = engine.compile(cfg);
+
+        engine.map(compiled, JSON.readTree("{\"lot\":\"L1\"}"));
+        engine.map(compiled, JSON.readTree("{}"));
+        assertEquals(0, metrics.fallbackHits("lot"), "no fallback gave a value");
+        engine.map(compiled, JSON.readTree("{\"charge\":\"C7\"}"));
+        assertEquals(1, metrics.fallbackHits("lot"));
+    }
+
+    @Test
+    void defaultEngineRecordsNothing() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("edge-cases.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("edge-cases.payload.json"));
+
+        assertFalse(MappingMetrics.NOOP.enabled());
+        MappingResult res = new MappingEngine(null).map(cfg, payload);
+        assertNotNull(res.getOutput());
+    }
+}
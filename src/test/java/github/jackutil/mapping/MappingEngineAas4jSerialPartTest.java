@@ -1,11 +1,15 @@
 package github.jackutil.mapping;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import org.junit.jupiter.api.Test;
 
 import java.net.URL;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -36,5 +40,41 @@ public class MappingEngineAas4jSerialPartTest {
         assertTrue(hasSerial, "serialNumber element present");
     }
 
+    @Test
+    void compiledConfigIsReusableAcrossPayloads() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(cfg);
+        ObjectNode first = engine.map(compiled, payload).getOutput();
+        ObjectNode second = engine.map(compiled, payload).getOutput();
+        ObjectNode oneShot = engine.map(cfg, payload).getOutput();
+
+        // ids are random (uuidv4); everything else must be identical
+        first.remove("id");
+        second.remove("id");
+        oneShot.remove("id");
+        assertEquals(oneShot, first);
+        assertEquals(first, second);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void deprecatedBuildMatchesACompiledHeader() throws Exception {
+        ObjectNode header = (ObjectNode) new ObjectMapper().readTree(String.join("\n",
+                "{\"idShort\": \"SerialPart\",",
+                " \"idStrategy\": {\"kind\": \"explicit\", \"id\": \"urn:example:1\"}}"));
+        ObjectNode meta = (ObjectNode) new ObjectMapper().readTree("{\"valueType\": \"string\", \"semanticId\": \"urn:example:serial\"}");
+        JsonNode values = new ObjectMapper().readTree("{\"partInfo\": {\"serialNumber\": \"SN-1\"}}");
+
+        ObjectNode legacy = new Aas4jSubmodelFactory().build(header, Map.of("partInfo/serialNumber", meta), values);
+
+        ObjectNode compiledHeader = header.deepCopy();
+        compiledHeader.putArray("initialElements").addObject().put("path", "partInfo/serialNumber").setAll(meta);
+        assertEquals(new Aas4jSubmodelFactory(compiledHeader).build(values, List.of()), legacy);
+        assertTrue(legacy.toString().contains("urn:example:serial"));
+    }
+
     // old JSON-walking helpers removed; using AAS4J deserializer for sturdiness
 }
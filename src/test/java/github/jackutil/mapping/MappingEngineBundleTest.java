@@ -0,0 +1,56 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.JsonDeserializer;
+import org.eclipse.digitaltwin.aas4j.v3.model.Environment;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingEngineBundleTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void mapsAllAspectsIntoOneEnvironment() throws Exception {
+        JsonNode bundle = ConfigLoader.readConfig(resourcePath("device-aspects.bundle.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(bundle);
+        assertTrue(compiled.isBundle());
+
+        MappingResult res = engine.map(compiled, payload);
+        Environment env = new JsonDeserializer().read(res.getOutput().toString(), Environment.class);
+
+        assertEquals(2, env.getSubmodels().size());
+        assertEquals("SerialPart", env.getSubmodels().get(0).getIdShort());
+        assertEquals("PartLot", env.getSubmodels().get(1).getIdShort());
+
+        // errors are attributed to the entry that produced them
+        assertEquals(1, res.getErrors().size());
+        assertTrue(res.getErrors().get(0).startsWith("[PartLot_v1] Constraint failed at 'lotId'"));
+    }
+
+    @Test
+    void entriesWithoutSubmodelHeaderAreReported() throws Exception {
+        ObjectNode bundle = (ObjectNode) ConfigLoader.readConfig(resourcePath("device-aspects.bundle.yaml"));
+        ((ArrayNode) bundle.get("submodels")).add(ConfigLoader.readConfig(resourcePath("config.yaml")));
+
+        CompiledMapping compiled = new MappingEngine().compile(bundle);
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+        MappingResult res = new MappingEngine().map(compiled, payload);
+
+        assertEquals(2, res.getOutput().get("submodels").size());
+        assertTrue(res.getErrors().stream().anyMatch(e -> e.contains("has no submodel header")));
+    }
+}
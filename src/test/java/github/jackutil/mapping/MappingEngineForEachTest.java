@@ -0,0 +1,96 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.eclipse.digitaltwin.aas4j.v3.dataformat.json.JsonDeserializer;
+import org.eclipse.digitaltwin.aas4j.v3.model.Submodel;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementCollection;
+import org.eclipse.digitaltwin.aas4j.v3.model.SubmodelElementList;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingEngineForEachTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void fansOutArrayIntoPlainObjects() throws Exception {
+        ObjectNode cfg = (ObjectNode) ConfigLoader.readConfig(resourcePath("batch-children.config.yaml"));
+        cfg.remove("submodel");
+        JsonNode payload = ConfigLoader.readJson(resourcePath("batch-children.payload.json"));
+
+        MappingResult res = new MappingEngine().map(cfg, payload);
+        JsonNode items = res.getOutput().get("childItems");
+
+        assertEquals(3, items.size());
+        assertEquals("SN-0001", items.get(0).get("serialNumber").asText());
+        assertEquals(5, items.get(1).at("/quantity/value").asInt());
+        assertFalse(items.get(2).has("serialNumber"), "constraint rejects the long serial");
+        assertEquals(1, res.getErrors().size());
+        assertTrue(res.getErrors().get(0).contains("childItems[2]/serialNumber"));
+    }
+
+    @Test
+    void emitsSubmodelElementList() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("batch-children.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("batch-children.payload.json"));
+
+        JsonNode sm = new MappingEngine().map(cfg, payload).getOutput();
+        Submodel submodel = new JsonDeserializer().read(sm.toString(), Submodel.class);
+
+        SubmodelElementList list = (SubmodelElementList) submodel.getSubmodelElements().stream()
+                .filter(e -> "childItems".equals(e.getIdShort()))
+                .findFirst().orElseThrow();
+        assertEquals(3, list.getValue().size());
+        assertNotNull(list.getSemanticId());
+        SubmodelElementCollection first = (SubmodelElementCollection) list.getValue().get(0);
+        assertNull(first.getIdShort(), "list items carry no idShort");
+        assertTrue(first.getValue().stream().anyMatch(e -> "serialNumber".equals(e.getIdShort())));
+    }
+
+    @Test
+    void missingArrayYieldsEmptyList() throws Exception {
+        ObjectNode cfg = (ObjectNode) ConfigLoader.readConfig(resourcePath("batch-children.config.yaml"));
+        cfg.remove("submodel");
+        JsonNode payload = ConfigLoader.readJson(resourcePath("payload.json"));
+
+        JsonNode items = new MappingEngine().map(cfg, payload).getOutput().get("childItems");
+        assertTrue(items.isArray());
+        assertEquals(0, items.size());
+    }
+
+    @Test
+    void variablesInsideTheBodyReadFromThePayloadRoot() throws Exception {
+        JsonNode cfg = new ObjectMapper(new YAMLFactory()).readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "variables:",
+                "  batchId: { jsonPath: \"$.batch.id\" }",
+                "  lot: { var: batchId }",
+                "rules:",
+                "  - target: batchId",
+                "    source: { var: batchId }",
+                "  - target: childItems",
+                "    forEach: { jsonPath: \"$.batch.children[*]\" }",
+                "    rules:",
+                "      - { target: serialNumber, source: { jsonPath: \"$.serial\" } }",
+                "      - { target: parentBatch, source: { var: lot } }"));
+        JsonNode payload = new ObjectMapper().readTree(
+                "{\"batch\":{\"id\":\"B-7\",\"children\":[{\"serial\":\"S1\"},{\"serial\":\"S2\",\"batch\":{\"id\":\"inner\"}}]}}");
+
+        JsonNode out = new MappingEngine().map(cfg, payload).getOutput();
+
+        assertEquals("B-7", out.get("batchId").asText());
+        for (JsonNode item : out.get("childItems")) assertEquals("B-7", item.get("parentBatch").asText(), item.toString());
+        assertEquals("S2", out.get("childItems").get(1).get("serialNumber").asText());
+    }
+}
@@ -0,0 +1,112 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingEngineParallelRulesTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static final JsonNode PAYLOAD;
+
+    static {
+        try {
+            PAYLOAD = JSON.readTree("{\"kind\":\"pump\",\"values\":[3,1,4,1,5],\"temp\":\"250\","
+                    + "\"parts\":[{\"serial\":\"P1\",\"qty\":2},{\"serial\":\"P2\",\"qty\":7}],\"meta\":{\"serial\":\"M1\"}}");
+        } catch (Exception e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Every rule shape in rotation, with targets that overlap (same key, scalar replaced by an object)
+    private static JsonNode bigConfig(int rules) throws Exception {
+        List<String> lines = new ArrayList<>(List.of(
+                "apiVersion: aasx.map/v1",
+                "variables:",
+                "  kind: { jsonPath: \"$.kind\" }",
+                "rules:"));
+        for (int i = 0; i < rules; i++) {
+            String target = "g" + (i % 7) + "/f" + (i % 50);
+            switch (i % 6) {
+                case 0 -> lines.add("  - { target: " + target + ", source: { var: kind } }");
+                case 1 -> lines.add("  - { target: " + target + ", source: { jsonPath: \"$.values\", transform: [ { op: sum } ] } }");
+                case 2 -> lines.add("  - { target: " + target + ", source: { jsonPath: \"$.temp\", transform: [ { op: toNumber } ] },"
+                        + " constraints: [ { kind: range, min: 0, max: " + (i % 12 == 2 ? 100 : 1000) + " } ] }");
+                case 3 -> lines.add("  - { target: " + target + ", source: { jsonPath: \"$..serial\" } }");
+                case 4 -> lines.add("  - { target: g" + (i % 7) + ", when: { all: [ { jsonPath: \"$.kind\", equals: pump } ] },"
+                        + " source: { constant: " + i + " } }");
+                default -> lines.add("  - { target: " + target + "/items, forEach: { jsonPath: \"$.parts\" }, rules: ["
+                        + " { target: s, source: { jsonPath: \"$.serial\" } }, { target: q, source: { jsonPath: \"$.qty\" } } ] }");
+            }
+        }
+        return YAML.readTree(String.join("\n", lines));
+    }
+
+    @Test
+    void parallelMappingMatchesSequentialOutputKeyOrderAndErrors() throws Exception {
+        JsonNode config = bigConfig(600);
+        MappingEngine sequential = new MappingEngine();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MappingEngine parallel = new MappingEngine(null, null, pool, 64);
+            MappingResult expected = sequential.map(sequential.compile(config), PAYLOAD);
+            CompiledMapping compiled = parallel.compile(config);
+            for (int run = 0; run < 20; run++) {
+                MappingResult actual = parallel.map(compiled, PAYLOAD);
+                // toString, not equals: key order must match too
+                assertEquals(expected.getOutput().toString(), actual.getOutput().toString());
+                assertEquals(expected.getErrors(), actual.getErrors());
+            }
+            assertFalse(expected.getErrors().isEmpty());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void smallConfigsAndTracedMappingsStayOnTheCallingThread() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        TransformProvider recordThread = new TransformProvider() {
+            @Override
+            public Set<String> ops() {
+                return Set.of("recordThread");
+            }
+
+            @Override
+            public Transform create(String op, JsonNode spec) {
+                return (v, ctx) -> {
+                    threads.add(Thread.currentThread());
+                    return v;
+                };
+            }
+        };
+        List<String> lines = new ArrayList<>(List.of("apiVersion: aasx.map/v1", "rules:"));
+        for (int i = 0; i < 200; i++) lines.add("  - { target: t" + i + ", source: { constant: " + i + ", transform: [ { op: recordThread } ] } }");
+        JsonNode big = YAML.readTree(String.join("\n", lines));
+        JsonNode small = YAML.readTree(String.join("\n", lines.subList(0, 12)));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            MappingEngine engine = new MappingEngine(null, TransformRegistry.builtins().with(recordThread), pool, 100);
+            engine.map(engine.compile(small), PAYLOAD);
+            engine.map(engine.compile(big), PAYLOAD, new MappingTrace());
+            assertEquals(Set.of(Thread.currentThread()), threads);
+
+            engine.map(engine.compile(big), PAYLOAD);
+            assertFalse(threads.stream().allMatch(t -> t == Thread.currentThread()));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
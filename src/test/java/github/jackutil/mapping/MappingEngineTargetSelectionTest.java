@@ -0,0 +1,111 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingEngineTargetSelectionTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static JsonNode config() throws Exception {
+        return YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "variables:",
+                "  kind: { jsonPath: \"$.kind\" }",
+                "  label: { jsonPath: \"$.name\", transform: [ { op: concat, separator: \"-\", parts: [ { jsonPath: \"$.name\" }, { var: kind } ] } ] }",
+                "  unused: { jsonPath: \"$.other\" }",
+                "rules:",
+                "  - { target: Order/Id, source: { jsonPath: \"$.id\" } }",
+                "  - { target: Order/Kind, when: { all: [ { jsonPath: \"$.kind\", equals: pump } ] }, source: { var: kind } }",
+                "  - { target: Derived/Label, source: { var: label } }",
+                "  - { target: Derived/Total, source: { jsonPath: \"$.values\", transform: [ { op: sum } ] } }",
+                "  - { target: Parts, forEach: { jsonPath: \"$.parts\" }, rules: [",
+                "      { target: Serial, source: { jsonPath: \"$.serial\" } },",
+                "      { target: Qty, source: { jsonPath: \"$.qty\" } } ] }"));
+    }
+
+    private static JsonNode payload() throws Exception {
+        return JSON.readTree("{\"id\":\"O-1\",\"kind\":\"pump\",\"name\":\"P\",\"values\":[1,2,3],"
+                + "\"parts\":[{\"serial\":\"S1\",\"qty\":2},{\"serial\":\"S2\",\"qty\":5}]}");
+    }
+
+    @Test
+    void selectedTargetsMatchTheFullMappingAndNothingElseIsWritten() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping full = engine.compile(config());
+        JsonNode expected = engine.map(full, payload()).getOutput();
+
+        JsonNode out = engine.map(full.select(List.of("Order/Id", "Derived/*")), payload()).getOutput();
+
+        assertEquals(expected.at("/Order/Id"), out.at("/Order/Id"));
+        assertEquals(expected.get("Derived"), out.get("Derived"));
+        assertFalse(out.get("Order").has("Kind"));
+        assertFalse(out.has("Parts"));
+    }
+
+    @Test
+    void keepsOnlyTheVariablesTheSelectedRulesUseTransitively() throws Exception {
+        CompiledMapping full = new MappingEngine().compile(config());
+
+        CompiledMapping label = full.select(List.of("Derived/Label"));
+        List<String> names = new ArrayList<>();
+        label.variables.fieldNames().forEachRemaining(names::add);
+        assertEquals(List.of("kind", "label"), names);
+        assertEquals(1, label.rules.size());
+
+        assertTrue(full.select(List.of("Order/Id")).variables.isEmpty());
+    }
+
+    @Test
+    void forEachKeepsOnlyMatchingNestedRules() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping full = engine.compile(config());
+
+        JsonNode out = engine.map(full.select(List.of("Parts/Serial")), payload()).getOutput();
+
+        assertEquals(JSON.readTree("{\"Parts\":[{\"Serial\":\"S1\"},{\"Serial\":\"S2\"}]}"), out);
+    }
+
+    @Test
+    void keepsWhenPredicatesAndRulesWritingAParentTarget() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping full = engine.compile(config());
+
+        JsonNode kind = engine.map(full.select(List.of("Order/Kind")), payload()).getOutput();
+        assertEquals("pump", kind.at("/Order/Kind").asText());
+        JsonNode other = engine.map(full.select(List.of("Order/Kind")), JSON.readTree("{\"kind\":\"valve\"}")).getOutput();
+        assertTrue(other.at("/Order/Kind").isMissingNode());
+
+        // the whole forEach list is needed for anything below it
+        assertEquals(1, full.select(List.of("Parts")).rules.size());
+        assertEquals(2, full.select(List.of("Parts")).rules.get(0).rules.size());
+        assertEquals(2, full.select(List.of("Order")).rules.size());
+    }
+
+    @Test
+    void prunedPlansAreCachedPerSelectionRegardlessOfOrder() throws Exception {
+        CompiledMapping full = new MappingEngine().compile(config());
+
+        CompiledMapping first = full.select(List.of("Order/Id", "Derived/*"));
+        assertSame(first, full.select(List.of(" Derived/*", "Order/Id")));
+        assertNotSame(first, full.select(List.of("Order/Id")));
+        assertNotEquals(full.getConfig(), first.getConfig());
+    }
+
+    @Test
+    void rejectsSelectionsThatMatchNoTarget() throws Exception {
+        CompiledMapping full = new MappingEngine().compile(config());
+
+        assertThrows(IllegalArgumentException.class, () -> full.select(List.of("Missing/*")));
+        assertThrows(IllegalArgumentException.class, () -> full.select(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> full.select(List.of("Order/Id", " ")));
+    }
+}
@@ -0,0 +1,131 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingErrorTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static CompiledMapping compiled() throws Exception {
+        return new MappingEngine().compile(YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - { target: Weight, source: { jsonPath: \"$.weight\" }, constraints: [ { kind: range, min: 0, max: 100 } ] }",
+                "  - { target: Avg, source: { jsonPath: \"$.samples\", transform: [ { op: avg, nonNumeric: report } ] } }",
+                "  - { target: Parts, forEach: { jsonPath: \"$.parts\" }, rules: [",
+                "      { target: Qty, source: { jsonPath: \"$.qty\" }, constraints: [ { kind: range, min: 1, max: 9 } ] } ] }",
+                "  - { source: { constant: 1 } }")));
+    }
+
+    private static JsonNode payload(int weight) throws Exception {
+        return JSON.readTree("{\"weight\":" + weight + ",\"samples\":[1,\"x\",3],\"parts\":[{\"qty\":2},{\"qty\":0},{\"qty\":12}]}");
+    }
+
+    @Test
+    void errorsCarryCodeRuleTargetAndDetailAndRenderTheSameText() throws Exception {
+        MappingResult res = new MappingEngine().map(compiled(), payload(500));
+
+        List<MappingError> errors = res.getMappingErrors();
+        assertEquals(5, errors.size());
+        MappingError weight = errors.get(0);
+        assertEquals(MappingError.Code.CONSTRAINT, weight.code());
+        assertEquals(0, weight.ruleIndex());
+        assertEquals("rules[0]", weight.rule());
+        assertEquals("Weight", weight.target());
+        assertEquals("range", weight.detail());
+
+        MappingError avg = errors.get(1);
+        assertEquals(MappingError.Code.TRANSFORM, avg.code());
+        assertEquals("avg", avg.detail());
+
+        MappingError qty = errors.get(3);
+        assertEquals("rules[2].rules[0]", qty.rule());
+        assertEquals("Qty", qty.target());
+        assertEquals("Parts[2]/Qty", qty.path());
+        assertEquals(MappingError.Code.INVALID_RULE, errors.get(4).code());
+        assertEquals(3, errors.get(4).ruleIndex());
+
+        assertEquals(List.of(
+                "Constraint failed at 'Weight': range",
+                "Transform 'avg' at 'Avg': 1 non-numeric entries skipped",
+                "Constraint failed at 'Parts[1]/Qty': range",
+                "Constraint failed at 'Parts[2]/Qty': range",
+                "Rule missing target"), res.getErrors());
+    }
+
+    @Test
+    void resultsWithoutErrorsShareTheConfigsErrorList() throws Exception {
+        CompiledMapping compiled = new MappingEngine().compile(YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - { target: Weight, source: { jsonPath: \"$.weight\" } }")));
+        MappingEngine engine = new MappingEngine();
+
+        MappingResult first = engine.map(compiled, payload(5));
+        assertFalse(first.hasErrors());
+        assertSame(first.getMappingErrors(), engine.map(compiled, payload(6)).getMappingErrors());
+        assertEquals(List.of(), first.getErrors());
+    }
+
+    @Test
+    void summaryKeepsTheFirstErrorsPerCodeAndCountsTheRestPerRule() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = compiled();
+        ErrorSummary summary = new ErrorSummary(2);
+
+        List<MappingError> sampled = summary.add(engine.map(compiled, payload(500)));
+        for (int i = 0; i < 99; i++) summary.add(engine.map(compiled, payload(500 + i)));
+
+        assertEquals(4, sampled.size(), "two constraint errors, the transform error and the invalid rule");
+        assertEquals(100, summary.payloads());
+        assertEquals(100, summary.payloadsWithErrors());
+        assertEquals(500, summary.errors());
+        assertEquals(Long.valueOf(300), summary.counts().get(MappingError.Code.CONSTRAINT));
+        assertEquals(2, summary.samples(MappingError.Code.CONSTRAINT).size());
+        assertEquals(0, summary.samples(MappingError.Code.CONSTRAINT).get(1).payload());
+
+        List<ErrorSummary.Count> byRule = summary.byRule();
+        assertEquals(4, byRule.size(), "keyed by rule, not by element index or payload value");
+        assertEquals(new ErrorSummary.Count(MappingError.Code.CONSTRAINT, null, "rules[2].rules[0]", "Qty", "range", 200), byRule.get(0));
+        String text = summary.toText(10);
+        assertTrue(text.startsWith("500 errors in 100 of 100 payloads\n"), text);
+        assertTrue(text.contains("    rules[2].rules[0] Qty (range): 200\n"), text);
+    }
+
+    @Test
+    void manyBadPayloadsDoNotCrowdOutTheRuleCounts() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = compiled();
+        ErrorSummary summary = new ErrorSummary(0);
+
+        for (int i = 0; i < ErrorSummary.MAX_KEYS + 500; i++) {
+            summary.add(MappingResult.invalidPayload("payloads.ndjson at byte " + i * 20L + ": Unexpected end-of-input"));
+            summary.add(MappingResult.failed(new IllegalStateException("bad serial SN-" + i)));
+        }
+        summary.add(engine.map(compiled, payload(500)));
+
+        List<ErrorSummary.Count> byRule = summary.byRule();
+        assertEquals(6, byRule.size(), "one key per code and exception class, then the four rule keys");
+        assertTrue(byRule.contains(new ErrorSummary.Count(MappingError.Code.INVALID_PAYLOAD, null, null, null, null, 1500)), byRule.toString());
+        assertTrue(byRule.contains(new ErrorSummary.Count(MappingError.Code.MAPPING_FAILED, null, null, null,
+                IllegalStateException.class.getName(), 1500)), byRule.toString());
+        assertTrue(byRule.contains(new ErrorSummary.Count(MappingError.Code.CONSTRAINT, null, "rules[0]", "Weight", "range", 1)), byRule.toString());
+        assertTrue(summary.toText(10).contains("    rules[2].rules[0] Qty (range): 2\n"));
+    }
+
+    @Test
+    void stringErrorsOfTheConstructorStayAsGiven() {
+        MappingResult res = new MappingResult(JSON.createObjectNode(), List.of("custom"));
+
+        assertEquals(List.of("custom"), res.getErrors());
+        assertEquals(MappingError.Code.OTHER, res.getMappingErrors().get(0).code());
+    }
+}
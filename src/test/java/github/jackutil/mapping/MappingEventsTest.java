@@ -0,0 +1,59 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingEventsTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void recordsMappingPhases() throws Exception {
+        Path file = Files.createTempFile("aml", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name : List.of("ConfigCompile", "PayloadParse", "RuleEvaluation", "SubmodelBuild", "Serialization")) {
+                recording.enable("github.jackutil.aml." + name).withThreshold(java.time.Duration.ZERO);
+            }
+            recording.start();
+
+            JsonNode cfg = ConfigLoader.readConfig(resourcePath("edge-cases.config.yaml"));
+            JsonNode payload = ConfigLoader.readJson(resourcePath("edge-cases.payload.json"));
+            MappingEngine engine = new MappingEngine();
+            engine.map(cfg, payload);
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.deleteIfExists(file);
+
+        assertTrue(has(events, "ConfigCompile"));
+        assertTrue(has(events, "PayloadParse"));
+        assertTrue(has(events, "SubmodelBuild"));
+        assertTrue(has(events, "Serialization"));
+        RecordedEvent rule = events.stream()
+                .filter(e -> e.getEventType().getName().endsWith("RuleEvaluation"))
+                .filter(e -> "Process/TemperatureC".equals(e.getString("target")))
+                .findFirst().orElseThrow();
+        assertEquals("trim>toNumber>round", rule.getString("ops"));
+    }
+
+    private static boolean has(List<RecordedEvent> events, String name) {
+        return events.stream().anyMatch(e -> e.getEventType().getName().equals("github.jackutil.aml." + name));
+    }
+}
@@ -0,0 +1,277 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingProcessorTest {
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    // "bad" values throw inside the transform, standing in for any per-payload failure; "crash" throws an Error
+    private static final TransformProvider FAIL_ON_BAD = new TransformProvider() {
+        @Override
+        public Set<String> ops() {
+            return Set.of("failOnBad");
+        }
+
+        @Override
+        public Transform create(String op, JsonNode spec) {
+            return (v, ctx) -> {
+                if ("bad".equals(v.asText())) throw new IllegalStateException("bad payload");
+                if ("crash".equals(v.asText())) throw new StackOverflowError("crash");
+                return v;
+            };
+        }
+    };
+
+    private static MappingEngine engine() {
+        return new MappingEngine(null, TransformRegistry.builtins().with(FAIL_ON_BAD));
+    }
+
+    private static CompiledMapping compile(MappingEngine engine) throws Exception {
+        return engine.compile(YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: n",
+                "    source: { jsonPath: \"$.n\", transform: [ { op: failOnBad } ] }")));
+    }
+
+    private static JsonNode payload(Object n) {
+        return JsonNodeFactory.instance.objectNode().put("n", String.valueOf(n));
+    }
+
+    /** Emits 0, 1, 2, ... up to {@code count} items, only as requested; records demand and cancellation. */
+    private static final class CountingPublisher implements Flow.Publisher<JsonNode> {
+        private final long count;
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private long next;
+
+        private CountingPublisher(long count) {
+            this.count = count;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super JsonNode> subscriber) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public synchronized void request(long n) {
+                    requested.addAndGet(n);
+                    for (long i = 0; i < n && next < count && !cancelled.get(); i++) {
+                        // advanced first: onNext may request more on this thread, re-entering here
+                        long item = next++;
+                        subscriber.onNext(payload(item == 5 ? "bad" : item == 7 ? "crash" : item));
+                    }
+                    if (next == count && !cancelled.get()) {
+                        next++;
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    cancelled.set(true);
+                }
+            });
+        }
+    }
+
+    private static class Collector implements Flow.Subscriber<MappingResult> {
+        private final List<MappingResult> results = new CopyOnWriteArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final long initialRequest;
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+
+        private Collector(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialRequest);
+        }
+
+        @Override
+        public void onNext(MappingResult item) {
+            results.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            finished.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            finished.countDown();
+        }
+    }
+
+    @Test
+    void mapsInOrderWithParallelismAndKeepsGoingAfterABadPayload() throws Exception {
+        MappingEngine engine = engine();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            MappingProcessor processor = new MappingProcessor(engine, compile(engine), pool, 4, 8, true);
+            CountingPublisher source = new CountingPublisher(200);
+            Collector sink = new Collector(Long.MAX_VALUE);
+            processor.subscribe(sink);
+            source.subscribe(processor);
+
+            assertTrue(sink.finished.await(10, TimeUnit.SECONDS));
+            assertNull(sink.error);
+            assertEquals(200, sink.results.size());
+            for (int i = 0; i < 200; i++) {
+                MappingResult r = sink.results.get(i);
+                if (i == 5) {
+                    assertTrue(r.getErrors().get(0).contains("bad payload"), r.getErrors().toString());
+                } else if (i == 7) {
+                    assertTrue(r.getErrors().get(0).contains("StackOverflowError"), r.getErrors().toString());
+                } else {
+                    assertEquals(String.valueOf(i), r.getOutput().get("n").asText());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowSubscriberBoundsUpstreamDemandToPrefetch() throws Exception {
+        MappingEngine engine = engine();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            MappingProcessor processor = new MappingProcessor(engine, compile(engine), pool, 2, 4, false);
+            CountingPublisher source = new CountingPublisher(1_000);
+            Collector sink = new Collector(1);
+            processor.subscribe(sink);
+            source.subscribe(processor);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sink.results.isEmpty() && System.nanoTime() < deadline) Thread.sleep(5);
+            Thread.sleep(100);
+            assertEquals(1, sink.results.size());
+            // one delivered, the rest of the prefetch window mapped and waiting; nothing more was read
+            assertEquals(4, source.requested.get());
+
+            sink.subscription.request(2);
+            deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (sink.results.size() < 3 && System.nanoTime() < deadline) Thread.sleep(5);
+            Thread.sleep(50);
+            assertEquals(3, sink.results.size());
+            // replenished in batches once three quarters of the window were consumed
+            assertEquals(7, source.requested.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancellationStopsDeliveryAndCancelsUpstream() throws Exception {
+        MappingEngine engine = engine();
+        MappingProcessor processor = new MappingProcessor(engine, compile(engine), Runnable::run, 1, 16, true);
+        CountingPublisher source = new CountingPublisher(1_000_000);
+        Flow.Subscriber<MappingResult> cancelAfterThree = new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+            private int seen;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(MappingResult item) {
+                if (++seen == 3) subscription.cancel();
+                assertTrue(seen <= 3, "delivered after cancel");
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                fail("unexpected " + throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                fail("cancelled stream must not complete");
+            }
+        };
+        processor.subscribe(cancelAfterThree);
+        source.subscribe(processor);
+
+        assertTrue(source.cancelled.get());
+        assertTrue(source.requested.get() <= 16, "requested " + source.requested.get());
+
+        Collector second = new Collector(1);
+        processor.subscribe(second);
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test
+    void anInvalidRequestIsSignalledAfterTheOnNextInProgress() throws Exception {
+        MappingEngine engine = engine();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            MappingProcessor processor = new MappingProcessor(engine, compile(engine), pool, 2, 8, true);
+            CountDownLatch delivering = new CountDownLatch(1);
+            CountDownLatch invalidRequested = new CountDownLatch(1);
+            AtomicBoolean inOnNext = new AtomicBoolean();
+            AtomicBoolean overlapped = new AtomicBoolean();
+            Collector sink = new Collector(Long.MAX_VALUE) {
+                @Override
+                public void onNext(MappingResult item) {
+                    inOnNext.set(true);
+                    delivering.countDown();
+                    try {
+                        invalidRequested.await(5, TimeUnit.SECONDS);
+                        Thread.sleep(50); // a request(0) signalling onError itself would do so now
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    super.onNext(item);
+                    inOnNext.set(false);
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    if (inOnNext.get()) overlapped.set(true);
+                    super.onError(throwable);
+                }
+            };
+            CountingPublisher source = new CountingPublisher(1_000);
+            processor.subscribe(sink);
+            source.subscribe(processor);
+
+            assertTrue(delivering.await(5, TimeUnit.SECONDS));
+            sink.subscription.request(0);
+            invalidRequested.countDown();
+
+            assertTrue(sink.finished.await(5, TimeUnit.SECONDS));
+            assertFalse(overlapped.get(), "onError while onNext was running");
+            assertTrue(sink.error instanceof IllegalArgumentException, String.valueOf(sink.error));
+            assertTrue(source.cancelled.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
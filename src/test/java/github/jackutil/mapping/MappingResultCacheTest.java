@@ -0,0 +1,112 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingResultCacheTest {
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static final String CONFIG = String.join("\n",
+            "apiVersion: aasx.map/v1",
+            "submodel:",
+            "  idShort: Device",
+            "  idStrategy: { kind: nameBased, fields: [ \"$.serial\" ] }",
+            "rules:",
+            "  - target: Serial",
+            "    source: { jsonPath: \"$.serial\" }",
+            "  - target: Temp",
+            "    source: { jsonPath: \"$.temp\", transform: [ { op: toNumber } ] }");
+
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void repeatedPayloadsHitAndCallersGetTheirOwnCopy() throws Exception {
+        InMemoryMappingMetrics metrics = new InMemoryMappingMetrics();
+        MappingEngine engine = new MappingEngine(metrics);
+        CompiledMapping compiled = engine.compile(YAML.readTree(CONFIG));
+        MappingResultCache cache = new MappingResultCache(engine, 100, 1 << 20);
+
+        MappingResult first = cache.map(compiled, JSON.readTree("{\"serial\":\"A1\",\"temp\":\"21.5\"}"));
+        first.getOutput().put("id", "tampered");
+        MappingResult second = cache.map(compiled, JSON.readTree("{\"serial\":\"A1\",\"temp\":\"21.5\"}"));
+        MappingResult third = cache.map(compiled, JSON.readTree("{\"serial\":\"A1\",\"temp\":\"21.5\"}"));
+
+        assertEquals(engine.map(compiled, JSON.readTree("{\"serial\":\"A1\",\"temp\":\"21.5\"}")).getOutput(), second.getOutput());
+        assertNotSame(second.getOutput(), third.getOutput());
+        assertEquals(new MappingResultCache.Stats(2, 1, 0, 1, cache.stats().bytes()), cache.stats());
+        assertEquals(2, metrics.resultCacheHits());
+
+        // a string "21.5" and a number 21.5 are different payloads
+        cache.map(compiled, JSON.readTree("{\"serial\":\"A1\",\"temp\":21.5}"));
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void differentConfigsDoNotShareResults() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping a = engine.compile(YAML.readTree(CONFIG));
+        CompiledMapping b = engine.compile(YAML.readTree(CONFIG.replace("idShort: Device", "idShort: Other")));
+        MappingResultCache cache = new MappingResultCache(engine, 100, 1 << 20);
+        JsonNode payload = JSON.readTree("{\"serial\":\"A1\"}");
+
+        assertEquals("Device", cache.map(a, payload).getOutput().get("idShort").asText());
+        assertEquals("Other", cache.map(b, payload).getOutput().get("idShort").asText());
+        assertEquals(2, cache.stats().misses());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedBeyondTheEntryBound() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(YAML.readTree(CONFIG));
+        MappingResultCache cache = new MappingResultCache(engine, 2, 1 << 20);
+
+        cache.map(compiled, JSON.readTree("{\"serial\":\"1\"}"));
+        cache.map(compiled, JSON.readTree("{\"serial\":\"2\"}"));
+        cache.map(compiled, JSON.readTree("{\"serial\":\"1\"}")); // hit; "2" is now the eldest
+        cache.map(compiled, JSON.readTree("{\"serial\":\"3\"}"));
+        cache.map(compiled, JSON.readTree("{\"serial\":\"1\"}")); // still cached
+
+        MappingResultCache.Stats stats = cache.stats();
+        assertEquals(2, stats.hits());
+        assertEquals(1, stats.evictions());
+        assertEquals(2, stats.entries());
+    }
+
+    @Test
+    void doesNotStoreResultsWhoseIdFieldIsMissing() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(YAML.readTree(CONFIG));
+        MappingResultCache cache = new MappingResultCache(engine, 10, 1 << 20);
+        JsonNode payload = JSON.readTree("{\"temp\":\"21.5\"}");
+
+        String first = cache.map(compiled, payload).getOutput().get("id").asText();
+        String second = cache.map(compiled, payload).getOutput().get("id").asText();
+
+        assertNotEquals(first, second);
+        assertEquals(0, cache.stats().entries());
+    }
+
+    @Test
+    void refusesConfigsWithRandomIds() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml")));
+        MappingResultCache cache = new MappingResultCache(engine, 10, 1 << 20);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> cache.map(compiled, ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"))));
+        assertTrue(e.getMessage().contains("uuidv4"), e.getMessage());
+    }
+}
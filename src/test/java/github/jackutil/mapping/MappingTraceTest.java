@@ -0,0 +1,72 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MappingTraceTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    private static JsonNode rule(JsonNode trace, String target) {
+        for (JsonNode r : trace.get("rules")) {
+            if (target.equals(r.path("target").asText())) return r;
+        }
+        fail("No trace entry for " + target);
+        return null;
+    }
+
+    @Test
+    void tracesSourcesTransformsAndConstraints() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("edge-cases.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("edge-cases.payload.json"));
+
+        MappingEngine engine = new MappingEngine();
+        MappingTrace trace = new MappingTrace();
+        MappingResult traced = engine.map(engine.compile(cfg), payload, trace);
+        ObjectNode json = trace.toJson();
+
+        JsonNode temp = rule(json, "Process/TemperatureC");
+        assertEquals("source", temp.get("producedBy").asText());
+        JsonNode steps = temp.get("steps");
+        assertEquals("source", steps.get(0).get("stage").asText());
+        assertEquals("tempC", steps.get(0).at("/selector/var").asText());
+        assertEquals("trim", steps.get(1).get("op").asText());
+        assertEquals("round", steps.get(3).get("op").asText());
+        assertEquals(temp.get("result"), steps.get(3).get("value"));
+        assertTrue(temp.get("nanos").asLong() >= 0);
+        assertTrue(json.get("totalRuleNanos").asLong() >= temp.get("nanos").asLong());
+        // only the stage whose value is used counts; fallback[0] is empty too
+        assertEquals("fallback[1]", rule(json, "Speed/Normalized").get("producedBy").asText());
+        assertEquals("none", rule(json, "Unsafe/CycledVar").get("producedBy").asText());
+
+        // tracing must not change the mapping itself
+        MappingResult plain = engine.map(cfg, payload);
+        assertEquals(plain.getErrors(), traced.getErrors());
+    }
+
+    @Test
+    void tracesForEachItemsAndRejections() throws Exception {
+        JsonNode cfg = ConfigLoader.readConfig(resourcePath("batch-children.config.yaml"));
+        JsonNode payload = ConfigLoader.readJson(resourcePath("batch-children.payload.json"));
+
+        MappingTrace trace = new MappingTrace();
+        new MappingEngine().map(new MappingEngine().compile(cfg), payload, trace);
+        ObjectNode json = trace.toJson();
+
+        assertEquals(3, rule(json, "childItems").get("items").asInt());
+        JsonNode rejected = rule(json, "childItems[2]/serialNumber");
+        assertEquals("maxLength", rejected.get("rejectedBy").asText());
+        assertFalse(rejected.has("result"));
+        assertEquals("SN-0001", rule(json, "childItems[0]/serialNumber").get("result").asText());
+    }
+}
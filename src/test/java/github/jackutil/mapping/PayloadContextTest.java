@@ -0,0 +1,97 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.jayway.jsonpath.JsonPath;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadContextTest {
+    private static final List<String> NAMES = List.of("x", "y", "serialNumber", "id");
+
+    @Test
+    void deepScanIndexMatchesJayway() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        JsonNode doc = new ObjectMapper().readTree(
+                "{\"x\":0,\"a\":{\"b\":1},\"c\":[{\"x\":1},{\"y\":2},[{\"x\":3}]],\"d\":{\"x\":{\"x\":4,\"e\":{}}},\"q\":{\"x\":null}}");
+        JsonNode indexed = new PayloadContext(doc, engine, new JsonPaths()).read("$..x");
+
+        assertEquals("[0,null,1,null,3,{\"x\":4,\"e\":{}},4,null,null]", indexed.toString());
+        assertEquals(engine.readPath(doc, JsonPath.compile("$..x")), indexed);
+    }
+
+    @Test
+    void deepScanIndexMatchesJaywayOnRandomTrees() {
+        MappingEngine engine = new MappingEngine();
+        SplittableRandom random = new SplittableRandom(11);
+        for (int round = 0; round < 200; round++) {
+            JsonNode doc = random.nextBoolean() ? object(random, 0) : array(random, 0);
+            PayloadContext ctx = new PayloadContext(doc, engine, new JsonPaths());
+            for (String path : List.of("$..x", "$..serialNumber", "$..['y']", "$..missing")) {
+                assertEquals(engine.readPath(doc, JsonPath.compile(path)), ctx.read(path), path + " on " + doc);
+            }
+        }
+    }
+
+    @Test
+    void onlyPlainDeepScansUseTheIndex() {
+        assertEquals("serialNumber", JsonPaths.deepScanField("$..serialNumber"));
+        assertEquals("a b", JsonPaths.deepScanField("$..['a b']"));
+        assertNull(JsonPaths.deepScanField("$..part.serialNumber"));
+        assertNull(JsonPaths.deepScanField("$..*"));
+        assertNull(JsonPaths.deepScanField("$.a..b"));
+        assertNull(JsonPaths.deepScanField("$.serialNumber"));
+    }
+
+    @Test
+    void parsedPathsBelongToThePlanAndCountInItsSize() throws Exception {
+        CompiledMapping compiled = new MappingEngine().compile(new ObjectMapper(new YAMLFactory()).readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "variables: { lot: { jsonPath: \"$.lot\" } }",
+                "rules:",
+                "  - { target: Serial, source: { jsonPath: \"$..serial\" } }",
+                "  - { target: Lot, source: { var: lot }, fallback: [ { jsonPath: \"$.batch\" } ] }")));
+
+        assertEquals(3, compiled.paths.size());
+        assertSame(compiled.paths, compiled.select(List.of("Lot")).paths);
+        assertTrue(compiled.paths.estimatedBytes() > 0);
+        assertTrue(compiled.estimatedBytes() > compiled.paths.estimatedBytes());
+
+        new MappingEngine().map(compiled, new ObjectMapper().readTree("{\"serial\":\"SN-1\"}"));
+        assertEquals(3, compiled.paths.size(), "mapping parses nothing the config does not name");
+    }
+
+    private static ObjectNode object(SplittableRandom random, int depth) {
+        ObjectNode o = JsonNodeFactory.instance.objectNode();
+        int fields = random.nextInt(4);
+        for (int i = 0; i < fields; i++) o.set(NAMES.get(random.nextInt(NAMES.size())), value(random, depth + 1));
+        return o;
+    }
+
+    private static ArrayNode array(SplittableRandom random, int depth) {
+        ArrayNode a = JsonNodeFactory.instance.arrayNode();
+        int items = random.nextInt(4);
+        for (int i = 0; i < items; i++) a.add(value(random, depth + 1));
+        return a;
+    }
+
+    private static JsonNode value(SplittableRandom random, int depth) {
+        int kind = depth > 4 ? random.nextInt(3) : random.nextInt(5);
+        return switch (kind) {
+            case 0 -> JsonNodeFactory.instance.numberNode(random.nextInt(100));
+            case 1 -> JsonNodeFactory.instance.textNode("v" + random.nextInt(10));
+            case 2 -> JsonNodeFactory.instance.nullNode();
+            case 3 -> object(random, depth);
+            default -> array(random, depth);
+        };
+    }
+}
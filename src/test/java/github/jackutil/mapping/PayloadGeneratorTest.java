@@ -0,0 +1,69 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PayloadGeneratorTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    private JsonNode schema(String config) throws Exception {
+        return new SchemaExporter().exportPayloadSchema(ConfigLoader.readConfig(resourcePath(config)));
+    }
+
+    @Test
+    void sameSeedProducesSamePayloads() throws Exception {
+        JsonNode schema = schema("edge-cases.config.yaml");
+        PayloadGenerator a = new PayloadGenerator(schema, 7).missingRate(0.2).invalidRate(0.2);
+        PayloadGenerator b = new PayloadGenerator(schema, 7).missingRate(0.2).invalidRate(0.2);
+        for (int i = 0; i < 20; i++) assertEquals(a.next(), b.next());
+        assertNotEquals(new PayloadGenerator(schema, 8).next(), new PayloadGenerator(schema, 7).next());
+    }
+
+    @Test
+    void generatedValuesSatisfyConstraints() throws Exception {
+        PayloadGenerator gen = new PayloadGenerator(schema("cx-serial-part.config.yaml"), 1);
+        Pattern bpnl = Pattern.compile("^BPNL[0-9A-Z]{12}$");
+        for (int i = 0; i < 50; i++) {
+            JsonNode payload = gen.next();
+            MappingResult res = new MappingEngine().map(ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml")), payload);
+            assertTrue(res.getErrors().stream().noneMatch(e -> e.startsWith("Constraint failed")), res.getErrors().toString());
+            assertTrue(bpnl.matcher(payload.at("/part/manufacturer/bpn").asText()).matches(), payload.toString());
+        }
+    }
+
+    @Test
+    void invalidAndMissingRatesExerciseConstraintsAndFallbacks() throws Exception {
+        JsonNode schema = schema("edge-cases.config.yaml");
+        JsonNode config = ConfigLoader.readConfig(resourcePath("edge-cases.config.yaml"));
+
+        MappingResult invalid = new MappingEngine().map(config, new PayloadGenerator(schema, 3).invalidRate(1).next());
+        assertTrue(invalid.getErrors().stream().anyMatch(e -> e.startsWith("Constraint failed")));
+
+        assertTrue(new PayloadGenerator(schema, 3).missingRate(1).next().isEmpty());
+    }
+
+    @Test
+    void writesNdjson() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PayloadGenerator(schema("cx-batch-3.0.0.config.yaml"), 5).arraySize(2, 2).writeNdjson(out, 10);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(10, lines.length);
+        ObjectMapper mapper = new ObjectMapper();
+        for (String line : lines) assertTrue(mapper.readTree(line).isObject());
+    }
+}
@@ -0,0 +1,78 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SubmodelIdsTest {
+    private Path resourcePath(String name) throws Exception {
+        URL url = getClass().getResource("/examples/" + name);
+        assertNotNull(url, "Missing test resource: " + name);
+        return Path.of(url.toURI());
+    }
+
+    @Test
+    void uuidV7IsTimeOrdered() {
+        UUID earlier = SubmodelIds.uuidV7(1_700_000_000_000L);
+        UUID later = SubmodelIds.uuidV7(1_700_000_000_001L);
+        assertEquals(7, earlier.version());
+        assertEquals(2, earlier.variant());
+        assertTrue(earlier.toString().compareTo(later.toString()) < 0, "ids sort by creation time");
+    }
+
+    @Test
+    void nameBasedIsStableAndScopedByNamespace() {
+        UUID a = SubmodelIds.nameBased("urn:ns", List.of("SN-1", "BPNL1"));
+        assertEquals(a, SubmodelIds.nameBased("urn:ns", List.of("SN-1", "BPNL1")));
+        assertEquals(5, a.version());
+        assertNotEquals(a, SubmodelIds.nameBased("urn:other", List.of("SN-1", "BPNL1")));
+        // field boundaries matter: ("ab","c") must not collide with ("a","bc")
+        assertNotEquals(SubmodelIds.nameBased("urn:ns", List.of("ab", "c")), SubmodelIds.nameBased("urn:ns", List.of("a", "bc")));
+    }
+
+    @Test
+    void engineDerivesSameIdForSamePart() throws Exception {
+        ObjectNode cfg = (ObjectNode) ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml"));
+        ObjectNode idStrategy = ((ObjectNode) cfg.get("submodel")).putObject("idStrategy");
+        idStrategy.put("kind", "nameBased");
+        idStrategy.putArray("fields").add("$.part.serial").add("$.part.manufacturer.bpn");
+        JsonNode payload = ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+
+        MappingEngine engine = new MappingEngine();
+        String first = engine.map(cfg, payload).getOutput().get("id").asText();
+        String second = engine.map(cfg, payload).getOutput().get("id").asText();
+
+        assertTrue(first.startsWith("urn:uuid:"));
+        assertEquals(first, second);
+    }
+
+    @Test
+    void payloadsWithoutTheIdFieldsDoNotShareAnId() throws Exception {
+        ObjectNode cfg = (ObjectNode) ConfigLoader.readConfig(resourcePath("cx-serial-part.config.yaml"));
+        ObjectNode idStrategy = ((ObjectNode) cfg.get("submodel")).putObject("idStrategy");
+        idStrategy.put("kind", "nameBased");
+        idStrategy.putArray("fields").add("$.part.serial");
+        ObjectNode payload = (ObjectNode) ConfigLoader.readJson(resourcePath("cx-serial-part.payload.json"));
+        ((ObjectNode) payload.get("part")).remove("serial");
+        ObjectNode other = payload.deepCopy();
+        ((ObjectNode) other.get("part")).putNull("serial");
+
+        MappingEngine engine = new MappingEngine();
+        MappingResult first = engine.map(cfg, payload);
+        MappingResult second = engine.map(cfg, other);
+
+        assertNotEquals(first.getOutput().get("id").asText(), second.getOutput().get("id").asText());
+        for (MappingResult r : List.of(first, second)) {
+            assertTrue(r.getMappingErrors().stream().anyMatch(e -> e.code() == MappingError.Code.ID_FIELD
+                    && "$.part.serial".equals(e.detail())), r.getErrors().toString());
+        }
+    }
+}
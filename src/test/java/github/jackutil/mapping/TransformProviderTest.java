@@ -0,0 +1,228 @@
+package github.jackutil.mapping;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransformProviderTest {
+    private static final ObjectMapper YAML = new ObjectMapper(new YAMLFactory());
+
+    private static final String CONFIG = String.join("\n",
+            "apiVersion: aasx.map/v1",
+            "rules:",
+            "  - target: serial",
+            "    source: { jsonPath: \"$.serial\", transform: [ { op: pad, length: 6, char: \"0\" } ] }",
+            "  - target: label",
+            "    source: { jsonPath: \"$.temp\" }",
+            "    transform: [ { op: format, pattern: \"%.1f %s\", args: [ { constant: \"C\" } ] } ]",
+            "  - target: fixed",
+            "    source: { jsonPath: \"$.serial\" }",
+            "    transform: [ { op: format, pattern: \"SN-%05d\" } ]",
+            "  - target: digest",
+            "    source: { jsonPath: \"$.name\", transform: [ { op: hash, algorithm: md5 } ] }",
+            "  - target: encoded",
+            "    source: { jsonPath: \"$.name\", transform: [ { op: base64 }, { op: base64, mode: decode } ] }",
+            "  - target: code",
+            "    source: { jsonPath: \"$.code\" }",
+            "    transform: [ { op: lookup, table: { A: Alpha } }, { op: concat, parts: [ { jsonPath: \"$.name\" }, \"-\", { jsonPath: \"$.serial\" } ] } ]");
+
+    private static final String PAYLOAD = "{\"serial\":\"42\",\"temp\":\"21.46\",\"name\":\"pump\",\"code\":\"A\"}";
+
+    @Test
+    void mapsBuiltInAndNewOps() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        MappingResult res = engine.map(engine.compile(YAML.readTree(CONFIG)), new ObjectMapper().readTree(PAYLOAD));
+        JsonNode out = res.getOutput();
+
+        assertTrue(res.getErrors().isEmpty(), res.getErrors().toString());
+        assertEquals("000042", out.get("serial").asText());
+        assertEquals("21.5 C", out.get("label").asText());
+        assertEquals("SN-00042", out.get("fixed").asText());
+        assertEquals("cf82720db122ae41719df5b05503b749", out.get("digest").asText());
+        assertEquals("pump", out.get("encoded").asText());
+        assertEquals("pump-42", out.get("code").asText());
+    }
+
+    @Test
+    void reportsUnknownOpsAndBadArgumentsOnceAtCompileTime() throws Exception {
+        JsonNode cfg = YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: a",
+                "    source: { jsonPath: \"$.name\" }",
+                "    transform: [ { op: shout }, { op: regexExtract, pattern: \"(\" }, { op: trim } ]"));
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(cfg);
+        assertEquals(2, compiled.configErrors.size());
+        assertTrue(compiled.configErrors.get(0).contains("rules[0].transform[0]"), compiled.configErrors.get(0));
+        assertTrue(compiled.configErrors.get(1).contains("rules[0].transform[1]"), compiled.configErrors.get(1));
+
+        // the invalid steps give null instead of passing the value on
+        MappingResult res = engine.map(compiled, new ObjectMapper().readTree("{\"name\":\" pump \"}"));
+        assertTrue(res.getOutput().get("a").isNull());
+        assertEquals(2, res.getErrors().size());
+    }
+
+    @Test
+    void anInvalidStepNeverPassesTheRawValueThrough() throws Exception {
+        JsonNode cfg = YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: zoned",
+                "    source: { jsonPath: \"$.at\", transform: [ { op: toZoned, zone: \"Mars/Base\" } ] }",
+                "  - target: code",
+                "    source: { jsonPath: \"$.name\" }",
+                "    transform: [ { op: regexExtract, pattern: \"[a-\" } ]",
+                "    fallback: [ { constant: \"none\" } ]",
+                "  - target: valid",
+                "    source: { jsonPath: \"$.at\", transform: [ { op: toZoned, zone: \"Europe/Berlin\" } ] }"));
+        MappingEngine engine = new MappingEngine();
+        CompiledMapping compiled = engine.compile(cfg);
+        assertEquals(2, compiled.configErrors.size(), compiled.configErrors.toString());
+
+        JsonNode out = engine.map(compiled, new ObjectMapper().readTree("{\"at\":\"2024-01-01T00:00:00Z\",\"name\":\"pump-7\"}")).getOutput();
+        assertTrue(out.get("zoned").isNull(), out.toString());
+        assertFalse(out.path("code").asText("").contains("pump"), out.toString());
+        assertEquals("2024-01-01T01:00+01:00", out.get("valid").asText());
+    }
+
+    @Test
+    void customProviderIsBoundOncePerTransformEntry() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        TransformProvider upper = new TransformProvider() {
+            @Override
+            public Set<String> ops() {
+                return Set.of("upper", "trim");
+            }
+
+            @Override
+            public Transform create(String op, JsonNode spec) {
+                created.incrementAndGet();
+                String suffix = spec.path("suffix").asText("");
+                return (v, ctx) -> JsonNodeFactory.instance.textNode(v.asText().toUpperCase(Locale.ROOT) + suffix);
+            }
+        };
+        TransformRegistry registry = TransformRegistry.builtins().with(upper);
+        assertTrue(registry.ops().contains("upper"));
+
+        JsonNode cfg = YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: a",
+                "    source: { jsonPath: \"$.name\" }",
+                "    transform: [ { op: trim }, { op: upper, suffix: \"!\" } ]"));
+        MappingEngine engine = new MappingEngine(null, registry);
+        CompiledMapping compiled = engine.compile(cfg);
+        for (int i = 0; i < 3; i++) {
+            MappingResult res = engine.map(compiled, new ObjectMapper().readTree("{\"name\":\" pump \"}"));
+            // built-in trim wins over the provider's claim on the same name
+            assertEquals("PUMP!", res.getOutput().get("a").asText());
+        }
+        assertEquals(1, created.get());
+
+        // without the provider the op is unknown
+        assertEquals(1, new MappingEngine().compile(cfg).configErrors.size());
+    }
+
+    @Test
+    void aggregatesShareOneSummaryPerArray() throws Exception {
+        List<ArraySummary> seen = new ArrayList<>();
+        TransformProvider probe = new TransformProvider() {
+            @Override
+            public Set<String> ops() {
+                return Set.of("probe");
+            }
+
+            @Override
+            public Transform create(String op, JsonNode spec) {
+                return (v, ctx) -> {
+                    seen.add(ctx.summarize(v));
+                    return v;
+                };
+            }
+        };
+        JsonNode cfg = YAML.readTree(String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: sum",
+                "    source: { jsonPath: \"$.samples[*].v\", transform: [ { op: sum } ] }",
+                "  - target: avg",
+                "    source: { jsonPath: \"$.samples[*].v\", transform: [ { op: probe }, { op: avg, nonNumeric: report } ] }",
+                "  - target: min",
+                "    source: { jsonPath: \"$.samples[*].v\", transform: [ { op: probe }, { op: min } ] }",
+                "  - target: max",
+                "    source: { jsonPath: \"$.samples[*].v\", transform: [ { op: max } ] }",
+                "  - target: count",
+                "    source: { jsonPath: \"$.samples[*].v\", transform: [ { op: count } ] }",
+                "  - target: codes",
+                "    source: { jsonPath: \"$.samples[*].code\", transform: [ { op: distinct }, { op: count } ] }",
+                "  - target: none",
+                "    source: { jsonPath: \"$.missing\", transform: [ { op: sum } ] }"));
+        JsonNode payload = new ObjectMapper().readTree("{\"samples\":["
+                + "{\"v\":4,\"code\":\"A\"},{\"v\":\"6\",\"code\":\"B\"},{\"v\":-3,\"code\":\"A\"},"
+                + "{\"v\":\"n/a\",\"code\":\"A\"},{\"v\":null,\"code\":null}]}");
+
+        MappingEngine engine = new MappingEngine(null, TransformRegistry.builtins().with(probe));
+        MappingResult res = engine.map(engine.compile(cfg), payload);
+        JsonNode out = res.getOutput();
+
+        assertEquals(7L, out.get("sum").asLong());
+        assertTrue(out.get("sum").isIntegralNumber());
+        assertEquals(7.0 / 3, out.get("avg").asDouble(), 1e-9);
+        assertEquals(-3L, out.get("min").asLong());
+        assertEquals(6L, out.get("max").asLong());
+        assertEquals(4L, out.get("count").asLong());
+        assertEquals(2L, out.get("codes").asLong());
+        assertTrue(out.get("none").isNull());
+
+        // one summary for every rule reading $.samples[*].v
+        assertEquals(2, seen.size());
+        assertSame(seen.get(0), seen.get(1));
+        assertEquals(List.of("Transform 'avg' at 'avg': 2 non-numeric entries skipped"), res.getErrors());
+    }
+
+    @Test
+    void countCountsMixedEntriesAndRejectsNonNumeric() throws Exception {
+        MappingEngine engine = new MappingEngine();
+        String rules = String.join("\n",
+                "apiVersion: aasx.map/v1",
+                "rules:",
+                "  - target: count",
+                "    source: { jsonPath: \"$.samples\", transform: [ { op: count%s } ] }");
+        JsonNode payload = new ObjectMapper().readTree("{\"samples\":[4,\"n/a\",null,{}]}");
+
+        MappingResult res = engine.map(engine.compile(YAML.readTree(String.format(rules, ""))), payload);
+        assertEquals(3L, res.getOutput().get("count").asLong());
+        assertEquals(List.of(), res.getErrors());
+
+        CompiledMapping reported = engine.compile(YAML.readTree(String.format(rules, ", nonNumeric: report")));
+        assertEquals(1, reported.configErrors.size());
+        assertTrue(reported.configErrors.get(0).contains("count: nonNumeric does not apply"), reported.configErrors.toString());
+    }
+
+    @Test
+    void summaryFallsBackToDoublesForFractionsAndOverflow() throws Exception {
+        ObjectMapper json = new ObjectMapper();
+        ArraySummary fractions = ArraySummary.of(json.readTree("[1, \"2.5\", \"1e1\", true, \"12f\", {}]"));
+        assertEquals(4, fractions.count());
+        assertEquals(2, fractions.nonNumeric());
+        assertEquals(14.5, fractions.sum().asDouble(), 1e-9);
+        assertEquals(1.0, fractions.min().asDouble(), 1e-9);
+
+        ArraySummary overflow = ArraySummary.of(json.readTree("[" + Long.MAX_VALUE + ", 1]"));
+        assertFalse(overflow.sum().isIntegralNumber());
+        assertEquals(0, ArraySummary.of(json.readTree("[]")).sum().asInt());
+        assertTrue(ArraySummary.of(json.readTree("[]")).avg().isNull());
+    }
+}